@@ -0,0 +1,58 @@
+#!/usr/bin/env python3
+# Generates src/jmh/resources/traffic.txt, the synthetic IRC traffic used as
+# benchmarks input: python3 src/jmh/generate-traffic.py src/jmh/resources/traffic.txt
+#
+# Every nick, host, channel and network name is made up, and messages are
+# random words. Only the mix of commands and the shape of the lines mimic a
+# busy network.
+import random
+import sys
+random.seed(42)
+nicks=["alice","bob","carol","dave","erin","frank","grace","heidi","ivan","judy","mallory","niaj","olivia","peggy","rupert","sybil","trent","victor","walter","yvonne","Zed_","quux","foobar","bazinga","nullptr","tinker","pixel","octo","kestrel","Moss"]
+hosts=["user/{n}","{n}.users.example.net","2001:db8::{i}","cpe-{i}-{j}.example.net","ip{i}.ip-{j}-{k}.example.org","gateway/web/x-{l}","static.{i}.{j}.{k}.clients.example.com"]
+words="the a to and is it that of you in for on this with but not have be are just so if i it's what was can like do we no yes ok lol now server plugin build update plugin module config error stack trace version latest why does when will there how work fixed broken merge pull request commit branch release test jenkins maven gradle java thread memory leak lag tps chunk entity world player inventory event handler permission".split()
+chans=["#lobby","#dev","#help","#ops","#alix"]
+def prefix(n):
+    h=random.choice(hosts).format(n=n.lower(),i=random.randint(1,254),j=random.randint(1,254),k=random.randint(1,254),l=''.join(random.choice('abcdefghijklmnop') for _ in range(6)))
+    u=("~" if random.random()<0.4 else "")+n[:9].lower()
+    return f"{n}!{u}@{h}"
+prefixes={n:prefix(n) for n in nicks}
+def msg():
+    return ' '.join(random.choice(words) for _ in range(random.randint(1,18)))
+srv="irc.example.net"
+out=[f":{srv} NOTICE * :*** Looking up your hostname...",f":{srv} NOTICE * :*** Found your hostname",
+f":{srv} 001 AlixBot :Welcome to the ExampleNet Internet Relay Chat Network AlixBot",
+f":{srv} 002 AlixBot :Your host is {srv}[127.0.0.1/6667], running version charybdis-3.3.0",
+f":{srv} 003 AlixBot :This server was created Sat Mar 8 2014 at 15:17:48 GMT",
+f":{srv} 004 AlixBot {srv} charybdis-3.3.0 DQRSZagiloswz CFILPQTbcefgijklmnopqrstvz bkloveqjfI",
+f":{srv} 005 AlixBot CHANTYPES=# EXCEPTS INVEX CHANMODES=eIbq,k,flj,CFLPQTcgimnprstz CHANLIMIT=#:50 PREFIX=(ov)@+ MAXLIST=bqeI:100 MODES=4 NETWORK=ExampleNet KNOCK STATUSMSG=@+ CALLERID=g :are supported by this server",
+f":{srv} 005 AlixBot CASEMAPPING=rfc1459 CHARSET=ascii NICKLEN=30 CHANNELLEN=50 TOPICLEN=390 ETRACE CPRIVMSG CNOTICE DEAF=D MONITOR=100 FNC TARGMAX=NAMES:1,LIST:1,KICK:1,WHOIS:1,PRIVMSG:4,NOTICE:4,ACCEPT:,MONITOR: :are supported by this server",
+f":{srv} 251 AlixBot :There are 121 users and 11062 invisible on 14 servers",
+f":{srv} 375 AlixBot :- {srv} Message of the Day - "]
+for i in range(12):
+    out.append(f":{srv} 372 AlixBot :- {msg()}")
+out.append(f":{srv} 376 AlixBot :End of /MOTD command.")
+out.append(f":AlixBot MODE AlixBot :+i")
+for c in chans:
+    out.append(f":AlixBot!~alixbot@alix.example.org JOIN {c}")
+    out.append(f":{srv} 332 AlixBot {c} :{msg()}")
+    out.append(f":{srv} 333 AlixBot {c} alice!~alice@user/alice 1394293068")
+    ns=' '.join(random.choice(['','+','@'])+n for n in random.sample(nicks,20))
+    out.append(f":{srv} 353 AlixBot = {c} :{ns}")
+    out.append(f":{srv} 366 AlixBot {c} :End of /NAMES list.")
+while len(out)<1000:
+    r=random.random(); n=random.choice(nicks); c=random.choice(chans)
+    if r<0.70: out.append(f":{prefixes[n]} PRIVMSG {c} :{msg()}")
+    elif r<0.74: out.append(f":{prefixes[n]} PRIVMSG {c} :!{random.choice(['ping','seen','git','time'])} {msg()}")
+    elif r<0.79: out.append(f":{prefixes[n]} JOIN {c}" if random.random()<0.7 else f":{prefixes[n]} JOIN :{c}")
+    elif r<0.83: out.append(f":{prefixes[n]} PART {c}" + ("" if random.random()<0.5 else f" :{msg()}"))
+    elif r<0.87: out.append(f":{prefixes[n]} QUIT :" + random.choice(["Ping timeout: 240 seconds","Quit: Leaving","*.net *.split","Remote host closed the connection",msg()]))
+    elif r<0.90: out.append(f":{prefixes[n]} NOTICE {c} :{msg()}")
+    elif r<0.92: out.append(f":{prefixes[n]} MODE {c} +{random.choice('ov')} {random.choice(nicks)}")
+    elif r<0.94:
+        new=n+"_"
+        out.append(f":{prefixes[n]} NICK :{new}")
+    elif r<0.96: out.append(f"PING :{srv}")
+    elif r<0.98: out.append(f":{prefixes[n]} PRIVMSG AlixBot :\x01VERSION\x01")
+    else: out.append(f":{prefixes[n]} KICK {c} {random.choice(nicks)} :{msg()}")
+open(sys.argv[1] if len(sys.argv) > 1 else 'traffic.txt','w').write('\n'.join(out)+'\n')
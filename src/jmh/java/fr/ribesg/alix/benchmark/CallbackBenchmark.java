@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.benchmark;
+
+import fr.ribesg.alix.api.EventManager;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.callback.Callback;
+import fr.ribesg.alix.api.enums.Command;
+import fr.ribesg.alix.api.enums.Reply;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Callback#listensTo(String)} over the commands of
+ * synthetic traffic, for a Callback listening to NAMES replies like
+ * {@link fr.ribesg.alix.internal.callback.NamesCallback}, and the dispatch
+ * of this traffic to an amount of pending Callbacks listening to other
+ * codes.
+ *
+ * @author Ribesg
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=bench-log4j.properties")
+public class CallbackBenchmark {
+
+   @Param({"1", "10", "100"})
+   public int pendingCallbacks;
+
+   private Callback              callback;
+   private String[]              commands;
+   private ReceivedPacketEvent[] events;
+   private List<Callback>        pending;
+   private int                   index;
+
+   @Setup
+   public void setup() {
+      this.callback = new Callback(Reply.RPL_NAMREPLY.getIntCodeAsString(), Reply.RPL_ENDOFNAMES.getIntCodeAsString(), Command.PING.name()) {
+
+         @Override
+         public boolean onReceivedPacket(final ReceivedPacketEvent event) {
+            return false;
+         }
+      };
+      final List<String> traffic = Traffic.lines();
+      this.commands = traffic.stream()
+                             .map(IrcPacket::parseMessage)
+                             .map(IrcPacket::getRawCommandString)
+                             .toArray(String[]::new);
+
+      final Server server = new Server(null, "bench", "localhost", 6667);
+      this.events = traffic.stream()
+                           .map(line -> new ReceivedPacketEvent(server, IrcPacket.parseMessage(line)))
+                           .toArray(ReceivedPacketEvent[]::new);
+      this.pending = new ArrayList<>();
+      for (int i = 0; i < this.pendingCallbacks; i++) {
+         final Callback pendingCallback = new Callback(Long.MAX_VALUE / 2, "X" + i) {
+
+            @Override
+            public boolean onReceivedPacket(final ReceivedPacketEvent event) {
+               return false;
+            }
+         };
+         EventManager.register(pendingCallback);
+         this.pending.add(pendingCallback);
+      }
+   }
+
+   @TearDown
+   public void tearDown() {
+      this.pending.forEach(EventManager::unregister);
+   }
+
+   @Benchmark
+   public boolean listensTo() {
+      final int i = this.index;
+      this.index = i + 1 == this.commands.length ? 0 : i + 1;
+      return this.callback.listensTo(this.commands[i]);
+   }
+
+   @Benchmark
+   public void dispatch() {
+      final int i = this.index;
+      this.index = i + 1 == this.events.length ? 0 : i + 1;
+      EventManager.call(this.events[i]);
+   }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.benchmark;
+
+import fr.ribesg.alix.api.Channel;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.Source;
+import fr.ribesg.alix.api.bot.command.Command;
+import fr.ribesg.alix.api.bot.command.CommandManager;
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CommandManager#exec(Server, Channel, Source, String, boolean)}
+ * with the bot commands found in the synthetic traffic.
+ *
+ * @author Ribesg
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=bench-log4j.properties")
+public class CommandManagerBenchmark {
+
+   private static final Server DUMMY_SERVER = new Server(null, null, null, 0);
+
+   private CommandManager manager;
+   private Source         user;
+   private String[]       messages;
+   private int            index;
+
+   @Setup
+   public void setup() {
+      this.manager = new CommandManager("!", Collections.singleton("Ribesg"));
+      for (final String name : new String[] {"ping", "seen", "git", "time"}) {
+         this.manager.registerCommand(new Command(name, new String[] {"Does nothing"}) {
+
+            @Override
+            public boolean exec(final Server server, final Channel channel, final Source user, final String primaryArgument, final String[] args) {
+               return true;
+            }
+         });
+      }
+      this.user = new Source(DUMMY_SERVER, "Ribesg", "Ribesg", "ribesg.fr");
+      this.messages = Traffic.lines().stream()
+                             .map(IrcPacket::parseMessage)
+                             .filter(p -> fr.ribesg.alix.api.enums.Command.PRIVMSG.name().equals(p.getRawCommandString()))
+                             .map(IrcPacket::getTrail)
+                             .filter(this.manager::isCommand)
+                             .toArray(String[]::new);
+   }
+
+   @Benchmark
+   public boolean exec() {
+      final int i = this.index;
+      this.index = i + 1 == this.messages.length ? 0 : i + 1;
+      return this.manager.exec(DUMMY_SERVER, null, this.user, this.messages[i], false);
+   }
+}
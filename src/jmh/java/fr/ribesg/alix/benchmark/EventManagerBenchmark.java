@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.benchmark;
+
+import fr.ribesg.alix.api.EventManager;
+import fr.ribesg.alix.api.event.Event;
+import fr.ribesg.alix.api.event.EventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link EventManager#call(Event)} with 1, 10 and 100 handlers
+ * registered for the called Event.
+ *
+ * @author Ribesg
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=bench-log4j.properties")
+public class EventManagerBenchmark {
+
+   public static class BenchEvent extends Event {}
+
+   public static class BenchHandler {
+
+      public int calls;
+
+      @EventHandler
+      public void onBenchEvent(final BenchEvent event) {
+         this.calls++;
+      }
+   }
+
+   @Param({"1", "10", "100"})
+   public int handlers;
+
+   private BenchHandler[] registered;
+   private BenchEvent     event;
+
+   @Setup
+   public void setup() {
+      this.registered = new BenchHandler[this.handlers];
+      for (int i = 0; i < this.handlers; i++) {
+         this.registered[i] = new BenchHandler();
+         EventManager.register(this.registered[i]);
+      }
+      this.event = new BenchEvent();
+   }
+
+   @TearDown
+   public void tearDown() {
+      for (final BenchHandler handler : this.registered) {
+         EventManager.unregister(handler, true);
+      }
+   }
+
+   @Benchmark
+   public BenchEvent call() {
+      EventManager.call(this.event);
+      return this.event;
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.benchmark;
+
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.Source;
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks IrcPacket parsing and serialization over synthetic traffic.
+ * <p>
+ * Each invocation handles the next line of the synthetic traffic, so
+ * results are an average over the whole traffic.
+ *
+ * @author Ribesg
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=bench-log4j.properties")
+public class ParserBenchmark {
+
+   private static final Server DUMMY_SERVER = new Server(null, null, null, 0);
+
+   private String[]    lines;
+   private byte[][]    bytes;
+   private String[]    prefixes;
+   private IrcPacket[] packets;
+
+   private int lineIndex;
+   private int prefixIndex;
+
+   @Setup
+   public void setup() {
+      final List<String> traffic = Traffic.lines();
+      this.lines = traffic.toArray(new String[traffic.size()]);
+      this.bytes = new byte[this.lines.length][];
+      this.packets = new IrcPacket[this.lines.length];
+      for (int i = 0; i < this.lines.length; i++) {
+         this.bytes[i] = this.lines[i].getBytes(StandardCharsets.UTF_8);
+         this.packets[i] = IrcPacket.parseMessage(this.lines[i]);
+      }
+      this.prefixes = traffic.stream()
+                             .map(IrcPacket::parseMessage)
+                             .map(IrcPacket::getPrefix)
+                             .filter(p -> p != null)
+                             .toArray(String[]::new);
+   }
+
+   private int nextLine() {
+      final int i = this.lineIndex;
+      this.lineIndex = i + 1 == this.lines.length ? 0 : i + 1;
+      return i;
+   }
+
+   private String nextPrefix() {
+      final int i = this.prefixIndex;
+      this.prefixIndex = i + 1 == this.prefixes.length ? 0 : i + 1;
+      return this.prefixes[i];
+   }
+
+   @Benchmark
+   public IrcPacket parseMessage() {
+      return IrcPacket.parseMessage(this.lines[this.nextLine()]);
+   }
+
+   @Benchmark
+   public IrcPacket parseMessageBytes() {
+      final byte[] line = this.bytes[this.nextLine()];
+      return IrcPacket.parseMessage(line, 0, line.length);
+   }
+
+   @Benchmark
+   public Source parsePrefix() {
+      return IrcPacket.parsePrefix(DUMMY_SERVER, this.nextPrefix());
+   }
+
+   @Benchmark
+   public Source getPrefixAsSource() {
+      return DUMMY_SERVER.getSourceCache().get(this.nextPrefix());
+   }
+
+   @Benchmark
+   public String getRawMessage() {
+      return this.packets[this.nextLine()].getRawMessage();
+   }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.benchmark;
+
+import fr.ribesg.alix.api.EventManager;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.event.EventHandler;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.internal.PacketPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the path of a received line, from its bytes to a
+ * ReceivedPacketEvent handled by an EventHandler only looking at its
+ * command, with and without {@link Server#setPacketPooling(boolean)}.
+ * <p>
+ * Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is the amount of
+ * bytes allocated per received line.
+ *
+ * @author Ribesg
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=bench-log4j.properties")
+public class ReceivedPacketBenchmark {
+
+   private static final Server DUMMY_SERVER = new Server(null, "dummy", "localhost", 0);
+
+   public static class CommandHandler {
+
+      public int privmsgs;
+
+      @EventHandler(ignoreConsumed = false)
+      public void onReceivedPacket(final ReceivedPacketEvent event) {
+         if ("PRIVMSG".equals(event.getPacket().getRawCommandString())) {
+            this.privmsgs++;
+         }
+      }
+   }
+
+   @Param({"false", "true"})
+   public boolean pooling;
+
+   private byte[][]       lines;
+   private PacketPool     pool;
+   private CommandHandler handler;
+
+   private int lineIndex;
+
+   @Setup
+   public void setup() {
+      final List<String> traffic = Traffic.lines();
+      this.lines = new byte[traffic.size()][];
+      for (int i = 0; i < this.lines.length; i++) {
+         this.lines[i] = traffic.get(i).getBytes(StandardCharsets.UTF_8);
+      }
+      this.pool = new PacketPool(DUMMY_SERVER, 64);
+      this.handler = new CommandHandler();
+      EventManager.register(this.handler);
+   }
+
+   @TearDown
+   public void tearDown() {
+      EventManager.unregister(this.handler, true);
+   }
+
+   private byte[] nextLine() {
+      final int i = this.lineIndex;
+      this.lineIndex = i + 1 == this.lines.length ? 0 : i + 1;
+      return this.lines[i];
+   }
+
+   @Benchmark
+   public ReceivedPacketEvent receive() {
+      final byte[] line = this.nextLine();
+      final ReceivedPacketEvent event;
+      if (this.pooling) {
+         event = this.pool.acquire(line, 0, line.length);
+      } else {
+         event = new ReceivedPacketEvent(DUMMY_SERVER, IrcPacket.parseMessage(line, 0, line.length));
+      }
+      EventManager.call(event);
+      event.release();
+      return event;
+   }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic IRC traffic used as benchmarks input.
+ * <p>
+ * The lines are generated by {@code src/jmh/generate-traffic.py} to mimic
+ * the mix of commands of a busy network with a few channels joined:
+ * connection burst, MOTD, NAMES, then mostly PRIVMSG with some JOIN, PART,
+ * QUIT, NICK, MODE, KICK and PING. Nicks, hosts and channels are made up,
+ * and messages are random words, so results say nothing about real
+ * message contents.
+ *
+ * @author Ribesg
+ */
+public final class Traffic {
+
+   /**
+    * Name of the resource holding the synthetic traffic
+    */
+   private static final String RESOURCE = "/traffic.txt";
+
+   /**
+    * Loads the synthetic traffic.
+    *
+    * @return every line of the synthetic traffic, without line terminator
+    */
+   public static List<String> lines() {
+      final List<String> lines = new ArrayList<>();
+      try (final InputStream is = Traffic.class.getResourceAsStream(RESOURCE);
+           final BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+         String line;
+         while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+               lines.add(line);
+            }
+         }
+      } catch (final IOException e) {
+         throw new UncheckedIOException("Failed to load " + RESOURCE, e);
+      }
+      return lines;
+   }
+
+   private Traffic() {}
+}
@@ -268,7 +268,6 @@ public class Channel extends Receiver {
       if (event.getChannel() == this) {
          Channel.this.updateUsers();
          // TODO Other things to update like topic and modes
-         event.consume();
       }
    }
 
@@ -7,8 +7,10 @@
 package fr.ribesg.alix.api;
 import fr.ribesg.alix.Tools;
 import fr.ribesg.alix.api.bot.command.CommandManager;
+import fr.ribesg.alix.api.event.EventExecutor;
 import fr.ribesg.alix.api.message.NickIrcPacket;
 import fr.ribesg.alix.internal.bot.PingPongTask;
+import fr.ribesg.alix.internal.thread.VirtualThreads;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -26,33 +28,96 @@ import java.util.concurrent.TimeUnit;
 public abstract class Client {
 
    /**
-    * The Client's thread pool. This thread pool is used for every single
-    * asynchronous need of the Client. You can, and you are encouraged to
-    * use it.
-    * <p>
-    * The Cached implementation of the ExecutorService has been chosen
-    * because of the high amount of short-living thread that Alix will
-    * create. In fact, most received IRC Packets will create a new Task.
+    * System property enabling virtual Threads on startup, see
+    * {@link #setVirtualThreads(boolean)}
+    */
+   public static final String VIRTUAL_THREADS_PROPERTY = "alix.virtualThreads";
+
+   /**
+    * The Client's thread pool. This thread pool is used for every
+    * asynchronous need of the Client which is not an Event. You can, and
+    * you are encouraged to use it.
     *
     * @see java.util.concurrent.ExecutorService
     */
-   private static final ExecutorService THREAD_POOL = Executors.newCachedThreadPool();
+   private static volatile ExecutorService threadPool = Executors.newCachedThreadPool();
 
    /**
-    * The Client's thread pool. This thread pool is used for every single
-    * asynchronous need of the Client. You can, and you are encouraged to
-    * use it.
-    * <p>
-    * The Cached implementation of the ExecutorService has been chosen
-    * because of the high amount of short-living thread that Alix will
-    * create. In fact, most received IRC Packets will create a new Task.
+    * The Client's Event executor. Events created from received IRC Packets
+    * are called on it, in order for each Channel, user or Server.
+    */
+   private static final EventExecutor EVENT_EXECUTOR = new EventExecutor("Events", Runtime.getRuntime().availableProcessors());
+
+   static {
+      if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+         if (VirtualThreads.isSupported()) {
+            setVirtualThreads(true);
+         } else {
+            Log.warn("Virtual Threads require Java 21 or later, ignoring " + VIRTUAL_THREADS_PROPERTY);
+         }
+      }
+   }
+
+   /**
+    * The Client's thread pool. This thread pool is used for every
+    * asynchronous need of the Client which is not an Event. You can, and
+    * you are encouraged to use it.
     *
-    * @return a cached thread pool
+    * @return a cached thread pool, or a virtual Thread per task executor,
+    * see {@link #setVirtualThreads(boolean)}
     *
     * @see java.util.concurrent.ExecutorService
     */
    public static ExecutorService getThreadPool() {
-      return THREAD_POOL;
+      return threadPool;
+   }
+
+   /**
+    * The Client's Event executor. Events created from received IRC Packets
+    * are called on it: in order for each Channel, user or Server, and in
+    * parallel on a bounded amount of Threads otherwise. Its limits can be
+    * configured.
+    *
+    * @return the Event executor
+    */
+   public static EventExecutor getEventExecutor() {
+      return EVENT_EXECUTOR;
+   }
+
+   /**
+    * @return true if Events, Commands and tasks of the thread pool run on
+    * virtual Threads, false otherwise
+    */
+   public static boolean isVirtualThreads() {
+      return EVENT_EXECUTOR.isVirtualThreads();
+   }
+
+   /**
+    * Sets if Events, and so Commands, and tasks of the thread pool run on
+    * virtual Threads instead of platform Threads. This suits Clients doing
+    * a lot of blocking work, like web requests in Commands: a blocked
+    * virtual Thread costs a few KB instead of a whole platform Thread.
+    * Events are still called in order for each Channel, user or Server.
+    * <p>
+    * This requires Java 21 or later. It can also be enabled on startup
+    * with the {@link #VIRTUAL_THREADS_PROPERTY} system property.
+    * <p>
+    * Default: false
+    *
+    * @param virtualThreads if virtual Threads should be used
+    *
+    * @throws UnsupportedOperationException if virtual Threads are not
+    *                                       supported by this Java version
+    */
+   public static synchronized void setVirtualThreads(final boolean virtualThreads) {
+      if (virtualThreads == isVirtualThreads()) {
+         return;
+      }
+      EVENT_EXECUTOR.setVirtualThreads(virtualThreads);
+      final ExecutorService previous = threadPool;
+      threadPool = virtualThreads ? VirtualThreads.newExecutor("Pool") : Executors.newCachedThreadPool();
+      // Already submitted tasks still run
+      previous.shutdown();
    }
 
    /**
@@ -105,6 +170,7 @@ public abstract class Client {
     */
    public void kill() {
       Log.debug("Killing Client...");
+      servers.forEach(Server::cancelReconnect);
       servers.stream().filter(Server::isConnected).forEach(server -> {
          Log.debug("- Disconnecting from " + server.getUrl() + ":" + server.getPort() + "...");
          server.disconnect();
@@ -121,9 +187,12 @@ public abstract class Client {
          this.pingPongTask.join();
       } catch (final InterruptedException ignored) {}
 
-      THREAD_POOL.shutdown();
+      EVENT_EXECUTOR.shutdown();
+      final ExecutorService threadPool = Client.threadPool;
+      threadPool.shutdown();
       try {
-         THREAD_POOL.awaitTermination(5, TimeUnit.SECONDS);
+         EVENT_EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+         threadPool.awaitTermination(5, TimeUnit.SECONDS);
       } catch (InterruptedException e) {
          Runtime.getRuntime().halt(1);
       }
@@ -3,54 +3,166 @@ package fr.ribesg.alix.api;
 import fr.ribesg.alix.api.callback.Callback;
 import fr.ribesg.alix.api.event.Event;
 import fr.ribesg.alix.api.event.EventHandler;
+import fr.ribesg.alix.api.event.EventHandlerExecution;
 import fr.ribesg.alix.api.event.EventHandlerPriority;
 import fr.ribesg.alix.api.event.InvalidEventHandlerException;
 import fr.ribesg.alix.api.event.ReceivedPacketEvent;
-import fr.ribesg.alix.internal.thread.AbstractRepeatingThread;
+import fr.ribesg.alix.internal.thread.HashedTimerWheel;
+import fr.ribesg.alix.internal.thread.Watchdog;
+import org.apache.log4j.Level;
 import org.jsoup.helper.Validate;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manages Events. Yeah.
+ * <p>
+ * An EventHandler listening to an Event class also receives every Event
+ * extending this class. The handlers of each concrete Event class are
+ * resolved once into a flat array ordered by priority, which is cached
+ * until a handler is registered or unregistered. Those arrays are never
+ * modified. EventHandler methods are compiled to direct invokers when
+ * registered, so calling an Event does not involve any reflection.
+ * <p>
+ * Handlers ignoring consumed Events are not invoked at all once an Event
+ * has been consumed, see {@link #getSkippedInvocationCount()}.
+ * <p>
+ * Callbacks are indexed by listened code, so a received packet only
+ * reaches the Callbacks listening to its command and the Callbacks
+ * listening to every packet. Callbacks are called after the
+ * EventHandlers of the same priority. Their timeouts are scheduled on a
+ * {@link HashedTimerWheel} when they are registered, and cancelled as soon
+ * as they are unregistered.
+ * <p>
+ * EventHandlers are invoked by the Thread calling the Event, or later on
+ * another Thread, depending on their {@link EventHandlerExecution}. Every
+ * invocation is watched: EventHandlers running for longer than the
+ * latency budget are reported while they run, see
+ * {@link #setLatencyBudget(long)}.
  */
 public class EventManager {
 
    /**
-    * This little private Class is used to be able to store Object instances
-    * and associated EventHandler methods in pairs.
+    * Directly invokes an EventHandler method on its instance, see
+    * {@link #compile(Object, Method)}.
     */
-   private class ObjectMethod {
+   /* package */ interface EventInvoker {
+
+      /**
+       * Invokes the EventHandler method.
+       *
+       * @param event the Event
+       *
+       * @throws Throwable anything thrown by the EventHandler
+       */
+      void invoke(final Event event) throws Throwable;
+   }
+
+   /**
+    * This little private Class is used to store registered EventHandlers.
+    */
+   private static final class RegisteredHandler {
+
+      /**
+       * Registration order, used to order handlers of a same priority
+       */
+      private final long sequence;
 
       /**
        * Object instance
        */
-      public final Object instance;
+      private final Object instance;
+
+      /**
+       * Priority of this handler
+       */
+      private final EventHandlerPriority priority;
+
+      /**
+       * If this handler ignores consumed Events
+       */
+      private final boolean ignoreConsumed;
+
+      /**
+       * On which Thread this handler is invoked
+       */
+      private final EventHandlerExecution execution;
 
       /**
        * EventHandler method
        */
-      public final Method method;
+      private final Method method;
 
       /**
-       * Builds an ObjectMethod pair.
-       *
-       * @param instance an Object instance
-       * @param method   a Method declared by the instance's Class
+       * EventHandler invoker
        */
-      private ObjectMethod(final Object instance, final Method method) {
+      private final EventInvoker invoker;
+
+      private RegisteredHandler(final long sequence, final Object instance, final EventHandler annotation, final Method method, final EventInvoker invoker) {
+         this.sequence = sequence;
          this.instance = instance;
+         this.priority = annotation.priority();
+         this.ignoreConsumed = annotation.ignoreConsumed();
+         this.execution = annotation.execution();
          this.method = method;
+         this.invoker = invoker;
+      }
+
+      @Override
+      public String toString() {
+         return "EventHandler '" + this.method.getDeclaringClass().getName() + '.' + this.method.getName() + "(...)'";
       }
    }
 
+   /**
+    * Pending Callbacks of a priority, indexed by listened code. Arrays
+    * stored in this index are never modified.
+    */
+   private static final class CallbackIndex {
+
+      /**
+       * Callbacks listening to each code, in registration order
+       */
+      private final Map<String, Callback[]> byCode = new ConcurrentHashMap<>();
+
+      /**
+       * Callbacks listening to every code, in registration order
+       */
+      private volatile Callback[] wildcard = NO_CALLBACKS;
+   }
+
+   /**
+    * Factories of compiled invokers, by EventHandler method, so that every
+    * instance of a class share the same invoker class
+    */
+   private static final Map<Method, MethodHandle> INVOKER_FACTORIES = new ConcurrentHashMap<>();
+
+   private static final Callback[] NO_CALLBACKS = new Callback[0];
+
+   private static final EventHandlerPriority[] PRIORITIES = EventHandlerPriority.values();
+
+   /**
+    * Default latency budget of EventHandlers, in milliseconds
+    */
+   public static final long DEFAULT_LATENCY_BUDGET = 500;
+
    /**
     * The EventManager instance
     */
@@ -97,7 +209,7 @@ public class EventManager {
     *                           registered
     */
    public static void unregister(final Object instance, final boolean ignoreUnregistered) {
-      getInstance()._unRegisterHandlers(instance, true);
+      getInstance()._unRegisterHandlers(instance, ignoreUnregistered);
    }
 
    /**
@@ -134,76 +246,147 @@ public class EventManager {
    }
 
    /**
-    * A Map to store all the EventHandlers
+    * Gets the amount of handler invocations saved because the Event was
+    * already consumed and the handler ignores consumed Events.
+    *
+    * @return the amount of skipped handler invocations
     */
-   private final Map<Class<? extends Event>, Map<EventHandlerPriority, Queue<ObjectMethod>>> handlers;
+   public static long getSkippedInvocationCount() {
+      return getInstance().skippedInvocations.sum();
+   }
 
    /**
-    * {@link Callback#onReceivedPacket(fr.ribesg.alix.api.event.ReceivedPacketEvent)}
+    * Gets the amount of handler invocations which took longer than the
+    * latency budget.
+    *
+    * @return the amount of slow handler invocations
     */
-   private final Method callbackHandler;
+   public static long getSlowInvocationCount() {
+      return getInstance().slowInvocations.sum();
+   }
+
+   /**
+    * Gets the time after which a running EventHandler is reported.
+    *
+    * @return the latency budget, in milliseconds
+    */
+   public static long getLatencyBudget() {
+      return TimeUnit.NANOSECONDS.toMillis(getInstance().watchdog.getBudget());
+   }
+
+   /**
+    * Sets the time after which a running EventHandler is reported, with
+    * the stack trace of its Thread at the DEBUG level. INLINE EventHandlers
+    * of {@link ReceivedPacketEvent} should stay well within this budget, as
+    * they delay every packet received after it.
+    * <p>
+    * Default: {@link #DEFAULT_LATENCY_BUDGET}
+    *
+    * @param latencyBudget the latency budget, in milliseconds
+    */
+   public static void setLatencyBudget(final long latencyBudget) {
+      if (latencyBudget <= 0) {
+         throw new IllegalArgumentException("Invalid latency budget: " + latencyBudget);
+      }
+      getInstance().watchdog.setBudget(latencyBudget);
+   }
+
+   private static final RegisteredHandler[] NO_HANDLERS = new RegisteredHandler[0];
+
+   private static final Comparator<RegisteredHandler> HANDLER_ORDER =
+      Comparator.<RegisteredHandler, EventHandlerPriority>comparing(h -> h.priority).thenComparingLong(h -> h.sequence);
+
+   /**
+    * Handlers listening to each Event class, ordered by priority. Arrays
+    * stored in this Map are never modified.
+    */
+   private final Map<Class<? extends Event>, RegisteredHandler[]> handlers;
+
+   /**
+    * Handlers of each concrete Event class, including handlers listening
+    * to its super classes, ordered by priority. Arrays stored in this Map
+    * are never modified. Entries are removed when the handlers of one of
+    * the Event class or of its super classes change.
+    */
+   private final Map<Class<? extends Event>, RegisteredHandler[]> resolvedHandlers;
+
+   /**
+    * Pending Callbacks, indexed by priority ordinal
+    */
+   private final CallbackIndex[] callbacks;
+
+   /**
+    * Timeouts of pending Callbacks
+    */
+   private final Map<Callback, HashedTimerWheel.Timeout> timeouts;
+
+   /**
+    * Runs Callbacks timeouts
+    */
+   private final HashedTimerWheel timeoutWheel;
+
+   /**
+    * Amount of handler invocations skipped because of consumed Events
+    */
+   private final LongAdder skippedInvocations;
+
+   /**
+    * Amount of handler invocations which took longer than the latency
+    * budget
+    */
+   private final LongAdder slowInvocations;
+
+   /**
+    * Reports handlers running for longer than the latency budget
+    */
+   private final Watchdog watchdog;
+
+   /**
+    * Registration counter
+    */
+   private long sequence;
 
    /**
     * Builds the EventManager instance
     */
    private EventManager() {
       this.handlers = new ConcurrentHashMap<>();
-      try {
-         this.callbackHandler = Callback.class.getDeclaredMethod("onReceivedPacket", ReceivedPacketEvent.class);
-      } catch (final NoSuchMethodException e) {
-         Log.error("Failed to initialize EventManager.callbackHandler", e);
-         throw new RuntimeException("Failed to initialize EventManager.callbackHandler", e);
+      this.resolvedHandlers = new ConcurrentHashMap<>();
+      this.callbacks = new CallbackIndex[PRIORITIES.length];
+      for (int i = 0; i < PRIORITIES.length; i++) {
+         this.callbacks[i] = new CallbackIndex();
       }
-
-      new AbstractRepeatingThread("Cb-Cleaner", 2_500) {
-
-         @Override
-         protected void work() throws InterruptedException {
-            EventManager.this.cleanCallbacks();
-         }
-      }.start();
+      this.skippedInvocations = new LongAdder();
+      this.slowInvocations = new LongAdder();
+      this.watchdog = new Watchdog("EH-Watchdog", 50, DEFAULT_LATENCY_BUDGET);
+      this.timeouts = new IdentityHashMap<>();
+      this.timeoutWheel = new HashedTimerWheel("Cb-Timeouts", 100, TimeUnit.MILLISECONDS, 512);
    }
 
    /**
-    * Iterates over all handlers and check timeout states of Callback.
+    * Unregisters a Callback which timed out, then calls its
+    * {@link Callback#onTimeout()} method if it is still enabled.
     *
-    * FIXME Callbacks timeout could be handled better than that...
-    */
-   private void cleanCallbacks() {
-      final Iterator<Entry<Class<? extends Event>, Map<EventHandlerPriority, Queue<ObjectMethod>>>> it1 = this.handlers.entrySet().iterator();
-      while (it1.hasNext()) {
-         final Entry<Class<? extends Event>, Map<EventHandlerPriority, Queue<ObjectMethod>>> e1 = it1.next();
-         final Iterator<Entry<EventHandlerPriority, Queue<ObjectMethod>>> it2 = e1.getValue().entrySet().iterator();
-         while (it2.hasNext()) {
-            final Entry<EventHandlerPriority, Queue<ObjectMethod>> e2 = it2.next();
-            final Iterator<ObjectMethod> it3 = e2.getValue().iterator();
-            while (it3.hasNext()) {
-               final ObjectMethod om = it3.next();
-               if (om.method == this.callbackHandler) {
-                  final Callback callback = (Callback) om.instance;
-                  if (callback.getTimeoutDate() < System.currentTimeMillis()) {
-                     try {
-                        if (callback.isEnabled()) {
-                           callback.onTimeout();
-                        }
-                     } catch (final Throwable t) {
-                        Log.error("Callback onTimeout call threw an error: " + t.getMessage(), t);
-                     }
-                     it3.remove();
-                  }
-               }
-            }
-            if (e2.getValue().isEmpty()) {
-               it2.remove();
-            }
+    * @param callback the Callback
+    */
+   private void timeout(final Callback callback) {
+      synchronized (this) {
+         if (!this.timeouts.containsKey(callback)) {
+            return;
          }
-         if (e1.getValue().isEmpty()) {
-            it1.remove();
+         this._unregisterCallback(callback);
+      }
+      if (callback.isEnabled()) {
+         callback.disable();
+         try {
+            callback.onTimeout();
+         } catch (final Throwable t) {
+            Log.error("Callback onTimeout call threw an error: " + t.getMessage(), t);
          }
       }
    }
 
-   @SuppressWarnings("unchecked SuspiciousMethodCalls")
+   @SuppressWarnings("unchecked")
    private void _registerHandlers(final Object handlersHolder) {
       Validate.notNull(handlersHolder, "handlersHolder can't be null");
       EventHandler eh;
@@ -216,17 +399,10 @@ public class EventManager {
             } else if (!Modifier.isPublic(m.getModifiers())) {
                throw new InvalidEventHandlerException(m, "Not public");
             } else {
-               Map<EventHandlerPriority, Queue<ObjectMethod>> eventHandlers = this.handlers.get(parameterType);
-               if (eventHandlers == null) {
-                  eventHandlers = new ConcurrentHashMap<>();
-                  this.handlers.put((Class<? extends Event>) parameterType, eventHandlers);
-               }
-               Queue<ObjectMethod> priorityHandlers = eventHandlers.get(eh.priority());
-               if (priorityHandlers == null) {
-                  priorityHandlers = new ConcurrentLinkedQueue<>();
-                  eventHandlers.put(eh.priority(), priorityHandlers);
+               final EventInvoker invoker = compile(handlersHolder, m);
+               synchronized (this) {
+                  this.add((Class<? extends Event>) parameterType, new RegisteredHandler(this.sequence++, handlersHolder, eh, m, invoker));
                }
-               priorityHandlers.add(new ObjectMethod(handlersHolder, m));
                handlerRegistered = true;
             }
          }
@@ -236,37 +412,14 @@ public class EventManager {
       }
    }
 
-   @SuppressWarnings("SuspiciousMethodCalls")
-   private void _unRegisterHandlers(final Object handlersHolder, final boolean ignoreUnregistered) {
+   private synchronized void _unRegisterHandlers(final Object handlersHolder, final boolean ignoreUnregistered) {
       Validate.notNull(handlersHolder, "handlersHolder can't be null");
-      EventHandler eh;
-      Class<?> parameterType;
       boolean registeredHandlerFound = ignoreUnregistered;
-      for (final Method m : handlersHolder.getClass().getMethods()) {
-         if (m.isAccessible() && (eh = m.getAnnotation(EventHandler.class)) != null) {
-            if (m.getParameterCount() != 1 || !Event.class.isAssignableFrom((parameterType = m.getParameterTypes()[0]))) {
-               throw new InvalidEventHandlerException(m, "Invalid parameter count or type");
-            } else {
-               Map<EventHandlerPriority, Queue<ObjectMethod>> eventHandlers = this.handlers.get(parameterType);
-               if (eventHandlers != null) {
-                  Queue<ObjectMethod> priorityHandlers = eventHandlers.get(eh.priority());
-                  if (priorityHandlers != null) {
-                     final Iterator<ObjectMethod> it = priorityHandlers.iterator();
-                     while (it.hasNext()) {
-                        if (it.next().instance == handlersHolder) {
-                           it.remove();
-                           registeredHandlerFound = true;
-                           break;
-                        }
-                     }
-                     if (priorityHandlers.isEmpty()) {
-                        eventHandlers.remove(eh.priority());
-                     }
-                  }
-                  if (eventHandlers.isEmpty()) {
-                     this.handlers.remove(parameterType);
-                  }
-               }
+      for (final Map.Entry<Class<? extends Event>, RegisteredHandler[]> e : this.handlers.entrySet()) {
+         for (final RegisteredHandler handler : e.getValue()) {
+            if (handler.instance == handlersHolder) {
+               this.remove(e.getKey(), handler);
+               registeredHandlerFound = true;
             }
          }
       }
@@ -275,83 +428,366 @@ public class EventManager {
       }
    }
 
-   private void _registerCallback(final Callback callback) {
+   private synchronized void _registerCallback(final Callback callback) {
       Validate.notNull(callback, "callback can't be null");
-      Map<EventHandlerPriority, Queue<ObjectMethod>> eventHandlers = this.handlers.get(ReceivedPacketEvent.class);
-      if (eventHandlers == null) {
-         eventHandlers = new ConcurrentHashMap<>();
-         this.handlers.put(ReceivedPacketEvent.class, eventHandlers);
+      if (this.timeouts.containsKey(callback)) {
+         return;
       }
-      Queue<ObjectMethod> priorityHandlers = eventHandlers.get(callback.getPriority());
-      if (priorityHandlers == null) {
-         priorityHandlers = new ConcurrentLinkedQueue<>();
-         eventHandlers.put(callback.getPriority(), priorityHandlers);
+      final long delay = callback.getTimeoutDate() - System.currentTimeMillis();
+      this.timeouts.put(callback, this.timeoutWheel.schedule(() -> this.timeout(callback), delay, TimeUnit.MILLISECONDS));
+      final CallbackIndex index = this.callbacks[callback.getPriority().ordinal()];
+      final Set<String> codes = callback.getListenedCodes();
+      if (codes == null) {
+         index.wildcard = append(index.wildcard, callback);
+      } else {
+         for (final String code : codes) {
+            final Callback[] bucket = index.byCode.get(code);
+            index.byCode.put(code, bucket == null ? new Callback[] {callback} : append(bucket, callback));
+         }
       }
-      priorityHandlers.add(new ObjectMethod(callback, this.callbackHandler));
    }
 
-   private void _unregisterCallback(final Callback callback) {
+   private synchronized void _unregisterCallback(final Callback callback) {
       Validate.notNull(callback, "callback can't be null");
-      Map<EventHandlerPriority, Queue<ObjectMethod>> eventHandlers = this.handlers.get(ReceivedPacketEvent.class);
-      if (eventHandlers != null) {
-         Queue<ObjectMethod> priorityHandlers = eventHandlers.get(callback.getPriority());
-         if (priorityHandlers != null) {
-            final Iterator<ObjectMethod> it = priorityHandlers.iterator();
-            while (it.hasNext()) {
-               if (it.next().instance == callback) {
-                  it.remove();
-                  break;
+      final HashedTimerWheel.Timeout timeout = this.timeouts.remove(callback);
+      if (timeout == null) {
+         return;
+      }
+      timeout.cancel();
+      final CallbackIndex index = this.callbacks[callback.getPriority().ordinal()];
+      final Set<String> codes = callback.getListenedCodes();
+      if (codes == null) {
+         index.wildcard = without(index.wildcard, callback);
+      } else {
+         for (final String code : codes) {
+            final Callback[] bucket = index.byCode.get(code);
+            if (bucket != null) {
+               final Callback[] newBucket = without(bucket, callback);
+               if (newBucket.length == 0) {
+                  index.byCode.remove(code);
+               } else if (newBucket != bucket) {
+                  index.byCode.put(code, newBucket);
                }
             }
-            if (priorityHandlers.isEmpty()) {
-               eventHandlers.remove(callback.getPriority());
+         }
+      }
+   }
+
+   private static Callback[] append(final Callback[] bucket, final Callback callback) {
+      final Callback[] newBucket = Arrays.copyOf(bucket, bucket.length + 1);
+      newBucket[bucket.length] = callback;
+      return newBucket;
+   }
+
+   /**
+    * @return a copy of the bucket without the provided Callback, or the
+    * bucket itself if it does not contain the Callback
+    */
+   private static Callback[] without(final Callback[] bucket, final Callback callback) {
+      for (int i = 0; i < bucket.length; i++) {
+         if (bucket[i] == callback) {
+            if (bucket.length == 1) {
+               return NO_CALLBACKS;
             }
+            final Callback[] newBucket = Arrays.copyOf(bucket, bucket.length - 1);
+            System.arraycopy(bucket, i + 1, newBucket, i, bucket.length - i - 1);
+            return newBucket;
          }
-         if (eventHandlers.isEmpty()) {
-            this.handlers.remove(ReceivedPacketEvent.class);
+      }
+      return bucket;
+   }
+
+   /**
+    * Adds a handler to the handlers of an Event class, after every handler
+    * of the same or of a higher priority.
+    *
+    * @param clazz   the Event class
+    * @param handler the handler
+    */
+   private synchronized void add(final Class<? extends Event> clazz, final RegisteredHandler handler) {
+      final RegisteredHandler[] table = this.handlers.get(clazz);
+      if (table == null) {
+         this.handlers.put(clazz, new RegisteredHandler[] {handler});
+      } else {
+         int index = table.length;
+         while (index > 0 && table[index - 1].priority.compareTo(handler.priority) > 0) {
+            index--;
          }
+         final RegisteredHandler[] newTable = new RegisteredHandler[table.length + 1];
+         System.arraycopy(table, 0, newTable, 0, index);
+         newTable[index] = handler;
+         System.arraycopy(table, index, newTable, index + 1, table.length - index);
+         this.handlers.put(clazz, newTable);
       }
+      this.invalidate(clazz);
    }
 
-   private void _call(final Event event) {
-      Log.debug("Handling event " + event);
-      final Class<? extends Event> clazz = event.getClass();
-      final Map<EventHandlerPriority, Queue<ObjectMethod>> eventHandlers = this.handlers.get(clazz);
-      if (eventHandlers != null) {
-         for (final EventHandlerPriority priority : EventHandlerPriority.values()) {
-            final Queue<ObjectMethod> priorityHandlers = eventHandlers.get(priority);
-            if (priorityHandlers != null) {
-               final Iterator<ObjectMethod> it = priorityHandlers.iterator();
-               while (it.hasNext()) {
-                  final ObjectMethod om = it.next();
-                  if (om.method == this.callbackHandler) {
-                     final Callback callback = (Callback) om.instance;
-                     final ReceivedPacketEvent packetEvent = (ReceivedPacketEvent) event;
-                     if (!callback.isEnabled()) {
-                        it.remove();
-                     } else if (callback.listensTo(packetEvent.getPacket().getRawCommandString())) {
-                        try {
-                           if ((boolean) this.callbackHandler.invoke(callback, packetEvent)) {
-                              callback.disable();
-                              it.remove();
-                           }
-                        } catch (final Throwable t) {
-                           Log.error("Callback invokation failed on packet '" + packetEvent.getPacket().toString() + "': " + t.getMessage(), t);
-                           it.remove();
-                        }
-                     }
-                  } else {
-                     try {
-                        om.method.invoke(om.instance, event);
-                     } catch (final Throwable t) {
-                        Log.error("EventHandler '" + om.method.getDeclaringClass().getName() + '.' + om.method.getName() + "(...)' invokation failed: " + t.getMessage(), t);
-                     }
-                  }
+   /**
+    * Removes a handler from the handlers of an Event class, if present.
+    *
+    * @param clazz   the Event class
+    * @param handler the handler
+    */
+   private synchronized void remove(final Class<? extends Event> clazz, final RegisteredHandler handler) {
+      final RegisteredHandler[] table = this.handlers.get(clazz);
+      if (table != null) {
+         for (int i = 0; i < table.length; i++) {
+            if (table[i] == handler) {
+               if (table.length == 1) {
+                  this.handlers.remove(clazz);
+               } else {
+                  final RegisteredHandler[] newTable = Arrays.copyOf(table, table.length - 1);
+                  System.arraycopy(table, i + 1, newTable, i, table.length - i - 1);
+                  this.handlers.put(clazz, newTable);
                }
+               this.invalidate(clazz);
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * Forgets the resolved handlers of every Event class extending the
+    * provided Event class.
+    *
+    * @param clazz the Event class
+    */
+   private synchronized void invalidate(final Class<? extends Event> clazz) {
+      this.resolvedHandlers.keySet().removeIf(clazz::isAssignableFrom);
+   }
+
+   /**
+    * Gets the handlers of an Event class, including handlers listening to
+    * its super classes.
+    *
+    * @param clazz the Event class
+    *
+    * @return the handlers of the Event class, ordered by priority
+    */
+   private RegisteredHandler[] getHandlers(final Class<? extends Event> clazz) {
+      final RegisteredHandler[] table = this.resolvedHandlers.get(clazz);
+      return table != null ? table : this.resolve(clazz);
+   }
+
+   private synchronized RegisteredHandler[] resolve(final Class<? extends Event> clazz) {
+      RegisteredHandler[] table = this.resolvedHandlers.get(clazz);
+      if (table == null) {
+         final List<RegisteredHandler> list = new ArrayList<>();
+         for (final Map.Entry<Class<? extends Event>, RegisteredHandler[]> e : this.handlers.entrySet()) {
+            if (e.getKey().isAssignableFrom(clazz)) {
+               list.addAll(Arrays.asList(e.getValue()));
+            }
+         }
+         if (list.isEmpty()) {
+            table = NO_HANDLERS;
+         } else {
+            list.sort(HANDLER_ORDER);
+            table = list.toArray(new RegisteredHandler[list.size()]);
+         }
+         this.resolvedHandlers.put(clazz, table);
+      }
+      return table;
+   }
+
+   private void _call(final Event event) {
+      final boolean debug = Log.isEnabledFor(Level.DEBUG);
+      if (debug) {
+         Log.debug("Handling event " + event);
+      }
+      final ReceivedPacketEvent packetEvent = event instanceof ReceivedPacketEvent ? (ReceivedPacketEvent) event : null;
+      final String code = packetEvent != null ? packetEvent.getPacket().getRawCommandString().toUpperCase() : null;
+      int priority = 0;
+      for (final RegisteredHandler handler : this.getHandlers(event.getClass())) {
+         if (packetEvent != null) {
+            while (priority < handler.priority.ordinal()) {
+               this.callCallbacks(this.callbacks[priority++], code, packetEvent);
+            }
+         }
+         if (handler.ignoreConsumed && event.isConsumed()) {
+            this.skippedInvocations.increment();
+         } else {
+            this.dispatch(handler, event);
+         }
+      }
+      if (packetEvent != null) {
+         while (priority < PRIORITIES.length) {
+            this.callCallbacks(this.callbacks[priority++], code, packetEvent);
+         }
+      }
+
+      if (debug) {
+         Log.debug("Event " + (event.isConsumed() ? "" : "not ") + "consumed: " + event);
+      }
+   }
+
+   /**
+    * Invokes a handler, or submits its invocation, following its
+    * {@link EventHandlerExecution}.
+    *
+    * @param handler the handler
+    * @param event   the Event
+    */
+   private void dispatch(final RegisteredHandler handler, final Event event) {
+      if (handler.execution == EventHandlerExecution.INLINE) {
+         this.invoke(handler, event);
+         return;
+      }
+      // Pooled Events should not be recycled before the handler is done
+      final ReceivedPacketEvent packetEvent = event instanceof ReceivedPacketEvent ? ((ReceivedPacketEvent) event).retain() : null;
+      final Runnable task = () -> {
+         try {
+            this.invoke(handler, event);
+         } finally {
+            if (packetEvent != null) {
+               packetEvent.release();
+            }
+         }
+      };
+      try {
+         if (handler.execution == EventHandlerExecution.ASYNC) {
+            Client.getThreadPool().execute(task);
+         } else {
+            final Object key = event.getOrderingKey();
+            Client.getEventExecutor().execute(key == null ? event.getClass() : key, task);
+         }
+      } catch (final RejectedExecutionException e) {
+         Log.error(handler + " could not be invoked, shutting down: " + event);
+         if (packetEvent != null) {
+            packetEvent.release();
+         }
+      }
+   }
+
+   /**
+    * Invokes a handler on the current Thread, watched by the
+    * {@link #watchdog}.
+    *
+    * @param handler the handler
+    * @param event   the Event
+    */
+   private void invoke(final RegisteredHandler handler, final Event event) {
+      final Watchdog.Slot slot = this.watchdog.slot();
+      slot.enter(handler);
+      try {
+         handler.invoker.invoke(event);
+      } catch (final Throwable t) {
+         Log.error(handler + " invokation failed: " + t.getMessage(), t);
+      } finally {
+         final long duration = slot.exit();
+         if (duration > this.watchdog.getBudget()) {
+            this.slowInvocations.increment();
+            // Already reported by the watchdog while running
+            if (Log.isEnabledFor(Level.DEBUG)) {
+               Log.debug(handler + " took " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms to handle " + event);
+            }
+         }
+      }
+   }
+
+   /**
+    * Calls the Callbacks of a priority listening to the provided code, then
+    * the Callbacks of this priority listening to every code.
+    *
+    * @param index       the Callbacks of a priority
+    * @param code        the uppercase command of the received packet
+    * @param packetEvent the Event
+    */
+   private void callCallbacks(final CallbackIndex index, final String code, final ReceivedPacketEvent packetEvent) {
+      final Callback[] bucket = index.byCode.get(code);
+      if (bucket != null) {
+         for (final Callback callback : bucket) {
+            this.callCallback(callback, packetEvent);
+         }
+      }
+      for (final Callback callback : index.wildcard) {
+         this.callCallback(callback, packetEvent);
+      }
+   }
+
+   private void callCallback(final Callback callback, final ReceivedPacketEvent packetEvent) {
+      if (!callback.isEnabled()) {
+         this._unregisterCallback(callback);
+      } else if (callback.ignoresConsumed() && packetEvent.isConsumed()) {
+         this.skippedInvocations.increment();
+      } else {
+         try {
+            if (callback.onReceivedPacket(packetEvent)) {
+               callback.disable();
+               this._unregisterCallback(callback);
+            }
+         } catch (final Throwable t) {
+            Log.error("Callback invokation failed on packet '" + packetEvent.getPacket().toString() + "': " + t.getMessage(), t);
+            this._unregisterCallback(callback);
+         }
+      }
+   }
+
+   /**
+    * Builds a direct invoker for an EventHandler method.
+    * <p>
+    * The method is compiled to a lambda with the
+    * {@link LambdaMetafactory} when possible. Methods of classes which are
+    * not public or not visible from Alix's ClassLoader fall back to a
+    * bound {@link MethodHandle}.
+    *
+    * @param instance the Object holding the EventHandler
+    * @param method   the EventHandler method
+    *
+    * @return an invoker of the EventHandler method on the provided instance
+    *
+    * @throws InvalidEventHandlerException if the method can't be accessed
+    */
+   private static EventInvoker compile(final Object instance, final Method method) {
+      final Class<?> holderClass = method.getDeclaringClass();
+      final Class<?> eventClass = method.getParameterTypes()[0];
+      if (Modifier.isPublic(holderClass.getModifiers()) && isVisible(holderClass) && isVisible(eventClass)) {
+         try {
+            MethodHandle factory = INVOKER_FACTORIES.get(method);
+            if (factory == null) {
+               final MethodHandles.Lookup lookup = MethodHandles.lookup();
+               final CallSite site = LambdaMetafactory.metafactory(
+                  lookup,
+                  "invoke",
+                  MethodType.methodType(EventInvoker.class, holderClass),
+                  MethodType.methodType(void.class, Event.class),
+                  lookup.unreflect(method),
+                  MethodType.methodType(void.class, eventClass)
+               );
+               factory = site.getTarget();
+               INVOKER_FACTORIES.put(method, factory);
             }
+            return (EventInvoker) factory.invoke(instance);
+         } catch (final Throwable t) {
+            Log.debug("Failed to compile EventHandler '" + holderClass.getName() + '.' + method.getName() + "(...)', falling back to a MethodHandle", t);
          }
       }
+      try {
+         method.setAccessible(true);
+         final MethodHandle handle = MethodHandles.lookup()
+                                                  .unreflect(method)
+                                                  .bindTo(instance)
+                                                  .asType(MethodType.methodType(void.class, Event.class));
+         return event -> {
+            handle.invokeExact(event);
+         };
+      } catch (final IllegalAccessException | SecurityException e) {
+         throw new InvalidEventHandlerException(method, "Not accessible");
+      }
+   }
 
-      Log.debug("Event " + (event.isConsumed() ? "" : "not ") + "consumed: " + event);
+   /**
+    * Checks if a Class can be resolved from Alix's ClassLoader.
+    *
+    * @param clazz the Class
+    *
+    * @return true if the Class is visible from Alix's ClassLoader
+    */
+   private static boolean isVisible(final Class<?> clazz) {
+      try {
+         return Class.forName(clazz.getName(), false, EventManager.class.getClassLoader()) == clazz;
+      } catch (final ClassNotFoundException e) {
+         return false;
+      }
    }
 }
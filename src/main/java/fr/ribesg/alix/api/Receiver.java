@@ -5,7 +5,9 @@
  */
 
 package fr.ribesg.alix.api;
+import fr.ribesg.alix.api.enums.Command;
 import fr.ribesg.alix.api.message.PrivMsgIrcPacket;
+import fr.ribesg.alix.internal.network.MessageSplitter;
 
 /**
  * Represents an entity that can receive Messages on a Server.
@@ -66,12 +68,21 @@ public abstract class Receiver {
 
    /**
     * Sends one or multiple messages to this Receiver.
+    * <p>
+    * Messages too long to be relayed by the Server, or containing line
+    * breaks, are split into multiple messages.
     *
     * @param messages the message or the messages to send to this Receiver
+    *
+    * @see Server#getMessageLength(String, String)
     */
    public void sendMessage(final String... messages) {
+      final String name = this.getName();
+      final int maxLength = this.server.getMessageLength(Command.PRIVMSG.name(), name);
       for (final String message : messages) {
-         this.server.send(new PrivMsgIrcPacket(this.getName(), message));
+         for (final String chunk : MessageSplitter.split(message, maxLength)) {
+            this.server.send(new PrivMsgIrcPacket(name, chunk));
+         }
       }
    }
 
@@ -8,23 +8,41 @@ package fr.ribesg.alix.api;
 
 import fr.ribesg.alix.Tools;
 import fr.ribesg.alix.api.callback.Callback;
+import fr.ribesg.alix.api.callback.ResponseDescriptor;
+import fr.ribesg.alix.api.event.ClientLostConnectionEvent;
 import fr.ribesg.alix.api.event.EventHandler;
 import fr.ribesg.alix.api.event.EventHandlerPriority;
 import fr.ribesg.alix.api.event.FailedToJoinServerEvent;
 import fr.ribesg.alix.api.event.ServerJoinEvent;
 import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.message.NamesIrcPacket;
 import fr.ribesg.alix.api.message.NickIrcPacket;
 import fr.ribesg.alix.api.message.PassIrcPacket;
 import fr.ribesg.alix.api.message.QuitIrcPacket;
 import fr.ribesg.alix.api.message.UserIrcPacket;
+import fr.ribesg.alix.api.message.WhoIrcPacket;
+import fr.ribesg.alix.api.message.WhoisIrcPacket;
+import fr.ribesg.alix.api.metrics.ServerMetrics;
+import fr.ribesg.alix.api.network.FloodControl;
+import fr.ribesg.alix.api.network.OverflowPolicy;
+import fr.ribesg.alix.api.network.ReconnectPolicy;
+import fr.ribesg.alix.api.network.SendPriority;
+import fr.ribesg.alix.api.network.TransportType;
 import fr.ribesg.alix.api.network.ssl.SSLType;
+import fr.ribesg.alix.internal.callback.ResponseCallback;
+import fr.ribesg.alix.internal.network.ReconnectSupervisor;
 import fr.ribesg.alix.internal.network.SocketHandler;
+import fr.ribesg.alix.internal.network.Transport;
+import fr.ribesg.alix.internal.network.Utf8;
+import fr.ribesg.alix.internal.network.nio.SelectorSocketHandler;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +50,34 @@ import java.util.stream.Collectors;
  */
 public class Server {
 
+   /**
+    * Maximum length of an IRC line, CRLF included, as defined by RFC 2812
+    */
+   public static final int RFC_MAX_LINE_LENGTH = 512;
+
+   /**
+    * Maximum length of an IRC line, CRLF included, when IRCv3 message tags
+    * are used: 8191 bytes of tags plus a RFC 2812 line
+    */
+   public static final int IRCV3_MAX_LINE_LENGTH = 8191 + RFC_MAX_LINE_LENGTH;
+
+   /**
+    * Maximum length of a hostname, used to estimate the prefix of the
+    * Client until the Server tells it
+    */
+   private static final int MAX_HOST_LENGTH = 63;
+
+   /**
+    * Time after which a request fails if its response is incomplete, in
+    * milliseconds, see {@link #request(IrcPacket, ResponseDescriptor)}
+    */
+   public static final long DEFAULT_REQUEST_TIMEOUT = 30 * 1_000;
+
+   /**
+    * Default maximum amount of received packets waiting to be handled
+    */
+   public static final int DEFAULT_INBOUND_CAPACITY = 1_024;
+
    /**
     * A useful reference to the Client
     */
@@ -65,6 +111,68 @@ public class Server {
     */
    private final SSLType sslType;
 
+   /**
+    * How the network link to this Server is handled
+    */
+   private TransportType transportType;
+
+   /**
+    * Maximum length of a received line, CRLF included
+    * Default: {@link #RFC_MAX_LINE_LENGTH}
+    */
+   private int maxLineLength;
+
+   /**
+    * Maximum amount of received packets waiting to be handled
+    * Default: {@link #DEFAULT_INBOUND_CAPACITY}
+    */
+   private int inboundCapacity;
+
+   /**
+    * What happens to received packets when {@link #inboundCapacity} is
+    * reached
+    * Default: {@link OverflowPolicy#BLOCK}
+    */
+   private OverflowPolicy overflowPolicy;
+
+   /**
+    * If received packets are recycled
+    * Default: false
+    */
+   private boolean packetPooling;
+
+   /**
+    * How fast lines can be sent to this Server
+    * Default: {@link FloodControl#DEFAULT}
+    */
+   private FloodControl floodControl;
+
+   /**
+    * How the Client reconnects to this Server
+    * Default: {@link ReconnectPolicy#DEFAULT}
+    */
+   private ReconnectPolicy reconnectPolicy;
+
+   /**
+    * Reconnects the Client to this Server following {@link #reconnectPolicy}
+    */
+   private final ReconnectSupervisor reconnectSupervisor;
+
+   /**
+    * Metrics related to the connection to this Server
+    */
+   private final ServerMetrics metrics;
+
+   /**
+    * Cache of the Sources built from prefixes received from this Server
+    */
+   private final SourceCache sourceCache;
+
+   /**
+    * Features advertised by this Server
+    */
+   private final ServerSupport support;
+
    /**
     * Channels on which the Client is connected or
     * will be connected on this Server
@@ -82,9 +190,16 @@ public class Server {
    private String clientUserName;
 
    /**
-    * The SocketHandler dedicated to this Server
+    * The client <code>user@host</code> as seen by this Server, null if
+    * unknown
+    */
+   private volatile String clientUserHost;
+
+   /**
+    * The Transport dedicated to this Server, null once the connection is
+    * lost
     */
-   private SocketHandler socket;
+   private volatile Transport socket;
 
    /**
     * Store if this Client has already received a message from this
@@ -124,6 +239,17 @@ public class Server {
       this.port = port;
       this.password = password;
       this.sslType = sslType;
+      this.transportType = TransportType.THREADED;
+      this.maxLineLength = RFC_MAX_LINE_LENGTH;
+      this.inboundCapacity = DEFAULT_INBOUND_CAPACITY;
+      this.overflowPolicy = OverflowPolicy.BLOCK;
+      this.packetPooling = false;
+      this.floodControl = FloodControl.DEFAULT;
+      this.reconnectPolicy = ReconnectPolicy.DEFAULT;
+      this.reconnectSupervisor = new ReconnectSupervisor(this);
+      this.metrics = new ServerMetrics();
+      this.sourceCache = new SourceCache(this, SourceCache.DEFAULT_CAPACITY);
+      this.support = new ServerSupport();
       this.channels = new HashMap<>();
       this.socket = null;
       this.connected = false;
@@ -213,6 +339,55 @@ public class Server {
       return clientUserName;
    }
 
+   /**
+    * @return the Client <code>user@host</code> as seen by this Server, or
+    * null if it is not known yet
+    */
+   public String getClientUserHost() {
+      return this.clientUserHost;
+   }
+
+   /**
+    * You should not use this. This is called internally when the Server
+    * echoes a {@link fr.ribesg.alix.api.enums.Command#JOIN} Command of the
+    * Client.
+    *
+    * @param clientUserHost the Client <code>user@host</code>
+    */
+   public void setClientUserHost(final String clientUserHost) {
+      this.clientUserHost = clientUserHost;
+   }
+
+   /**
+    * Gets the maximum length of the text of a message sent by the Client,
+    * so that the message relayed by this Server to its recipients fits in
+    * an IRC line.
+    * <p>
+    * Relayed messages are prefixed by the Client
+    * <code>nick!user@host</code>. Until this Server tells the Client its
+    * <code>user@host</code>, the longest one is assumed.
+    *
+    * @param command the command, like <code>PRIVMSG</code>
+    * @param target  the target of the message
+    *
+    * @return the maximum length of the text, in bytes once encoded in
+    * UTF-8
+    */
+   public int getMessageLength(final String command, final String target) {
+      final String userHost = this.clientUserHost;
+      final int userHostLength;
+      if (userHost == null) {
+         // Servers may prepend a '~' to unverified usernames
+         userHostLength = 1 + Utf8.length(this.clientUserName) + 1 + MAX_HOST_LENGTH;
+      } else {
+         userHostLength = Utf8.length(userHost);
+      }
+      // ":nick!user@host COMMAND target :text\r\n"
+      final int overhead = 1 + Utf8.length(this.clientNick) + 1 + userHostLength + 1 +
+                           command.length() + 1 + Utf8.length(target) + 2 + 2;
+      return RFC_MAX_LINE_LENGTH - overhead;
+   }
+
    /**
     * Gets a Channel object from its name.
     *
@@ -297,7 +472,11 @@ public class Server {
 
    @EventHandler(priority = EventHandlerPriority.INTERNAL)
    public void onServerJoined(final ServerJoinEvent event) {
-      this.joinChannels();
+      if (event.getServer() == this) {
+         this.reconnectSupervisor.onWelcome();
+         // Rejoins every Channel at once, in as few JOIN lines as possible
+         this.joinChannels();
+      }
    }
 
    /**
@@ -339,6 +518,223 @@ public class Server {
       return sslType;
    }
 
+   /**
+    * Gets how the network link to this Server is handled.
+    *
+    * @return the TransportType of this Server
+    */
+   public TransportType getTransportType() {
+      return this.transportType;
+   }
+
+   /**
+    * Sets how the network link to this Server should be handled.
+    * This is taken into account on the next call to {@link #connect()}.
+    * <p>
+    * Default: {@link TransportType#THREADED}
+    *
+    * @param transportType the TransportType to use for this Server
+    */
+   public void setTransportType(final TransportType transportType) {
+      this.transportType = transportType;
+   }
+
+   /**
+    * Gets the maximum length of a line received from this Server, CRLF
+    * included.
+    *
+    * @return the maximum length of a received line, in bytes
+    */
+   public int getMaxLineLength() {
+      return this.maxLineLength;
+   }
+
+   /**
+    * Sets the maximum length of a line received from this Server, CRLF
+    * included. Longer lines are discarded.
+    * This is taken into account on the next call to {@link #connect()}.
+    * <p>
+    * Default: {@link #RFC_MAX_LINE_LENGTH}, use
+    * {@link #IRCV3_MAX_LINE_LENGTH} if this Server sends IRCv3 message tags.
+    *
+    * @param maxLineLength the maximum length of a received line, in bytes
+    */
+   public void setMaxLineLength(final int maxLineLength) {
+      if (maxLineLength < RFC_MAX_LINE_LENGTH) {
+         throw new IllegalArgumentException("Maximum line length should be at least " + RFC_MAX_LINE_LENGTH);
+      }
+      this.maxLineLength = maxLineLength;
+   }
+
+   /**
+    * Gets the maximum amount of packets received from this Server waiting
+    * to be handled.
+    *
+    * @return the capacity of the queue of received packets
+    */
+   public int getInboundCapacity() {
+      return this.inboundCapacity;
+   }
+
+   /**
+    * Sets the maximum amount of packets received from this Server waiting
+    * to be handled, rounded up to a power of 2. Once reached,
+    * {@link #getOverflowPolicy()} applies.
+    * This is taken into account on the next call to {@link #connect()}.
+    * <p>
+    * Default: {@link #DEFAULT_INBOUND_CAPACITY}
+    *
+    * @param inboundCapacity the capacity of the queue of received packets
+    */
+   public void setInboundCapacity(final int inboundCapacity) {
+      if (inboundCapacity <= 0 || inboundCapacity > 1 << 30) {
+         throw new IllegalArgumentException("Invalid inbound capacity: " + inboundCapacity);
+      }
+      this.inboundCapacity = inboundCapacity;
+   }
+
+   /**
+    * Gets what happens to packets received from this Server while the
+    * queue of received packets is full.
+    *
+    * @return the OverflowPolicy of this Server
+    */
+   public OverflowPolicy getOverflowPolicy() {
+      return this.overflowPolicy;
+   }
+
+   /**
+    * Sets what happens to packets received from this Server while the
+    * queue of received packets is full.
+    * This is taken into account on the next call to {@link #connect()}.
+    * <p>
+    * Default: {@link OverflowPolicy#BLOCK}
+    *
+    * @param overflowPolicy the OverflowPolicy to use for this Server
+    */
+   public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+      if (overflowPolicy == null) {
+         throw new IllegalArgumentException("overflowPolicy can't be null");
+      }
+      this.overflowPolicy = overflowPolicy;
+   }
+
+   /**
+    * Checks if packets received from this Server are recycled.
+    *
+    * @return true if received packets are recycled, false otherwise
+    */
+   public boolean isPacketPooling() {
+      return this.packetPooling;
+   }
+
+   /**
+    * Sets if packets received from this Server are recycled: each
+    * {@link fr.ribesg.alix.api.event.ReceivedPacketEvent} and its
+    * {@link IrcPacket} are reused for another packet once handled, instead
+    * of being left to the garbage collector.
+    * <p>
+    * Only enable this if every EventHandler and Callback keeping a
+    * reference to a received Event or IrcPacket retains it, see
+    * {@link fr.ribesg.alix.api.event.ReceivedPacketEvent#retain()}.
+    * This is taken into account on the next call to {@link #connect()}.
+    * <p>
+    * Default: false
+    *
+    * @param packetPooling true to recycle received packets
+    */
+   public void setPacketPooling(final boolean packetPooling) {
+      this.packetPooling = packetPooling;
+   }
+
+   /**
+    * Gets how fast lines can be sent to this Server.
+    *
+    * @return the FloodControl of this Server
+    */
+   public FloodControl getFloodControl() {
+      return this.floodControl;
+   }
+
+   /**
+    * Sets how fast lines can be sent to this Server.
+    * This is taken into account on the next call to {@link #connect()}.
+    * <p>
+    * Default: {@link FloodControl#DEFAULT}, use {@link FloodControl#NONE}
+    * if this Server does not limit the Client.
+    *
+    * @param floodControl the FloodControl to use for this Server
+    */
+   public void setFloodControl(final FloodControl floodControl) {
+      if (floodControl == null) {
+         throw new IllegalArgumentException("floodControl can't be null");
+      }
+      this.floodControl = floodControl;
+   }
+
+   /**
+    * Gets how the Client reconnects to this Server after failing to
+    * connect or losing the connection.
+    *
+    * @return the ReconnectPolicy of this Server
+    */
+   public ReconnectPolicy getReconnectPolicy() {
+      return this.reconnectPolicy;
+   }
+
+   /**
+    * Sets how the Client reconnects to this Server after failing to
+    * connect or losing the connection.
+    * This is taken into account on the next failure.
+    * <p>
+    * Default: {@link ReconnectPolicy#DEFAULT}, use
+    * {@link ReconnectPolicy#NONE} to never reconnect.
+    *
+    * @param reconnectPolicy the ReconnectPolicy to use for this Server
+    */
+   public void setReconnectPolicy(final ReconnectPolicy reconnectPolicy) {
+      if (reconnectPolicy == null) {
+         throw new IllegalArgumentException("reconnectPolicy can't be null");
+      }
+      this.reconnectPolicy = reconnectPolicy;
+   }
+
+   /**
+    * Stops trying to reconnect to this Server, until the next failure.
+    */
+   public void cancelReconnect() {
+      this.reconnectSupervisor.cancel();
+   }
+
+   /**
+    * Gets the cache of the Sources built from prefixes received from this
+    * Server.
+    *
+    * @return the SourceCache of this Server
+    */
+   public SourceCache getSourceCache() {
+      return this.sourceCache;
+   }
+
+   /**
+    * Gets the features advertised by this Server in its RPL_ISUPPORT
+    * replies, used to merge outgoing messages to several targets.
+    *
+    * @return the ServerSupport of this Server
+    */
+   public ServerSupport getSupport() {
+      return this.support;
+   }
+
+   /**
+    * Gets the metrics related to the connection to this Server.
+    *
+    * @return the metrics of this Server
+    */
+   public ServerMetrics getMetrics() {
+      return this.metrics;
+   }
+
    /**
     * @return true if the Client has joined this Server, i.e. if the Client
     * received at least one message from this Server (and is still connected
@@ -406,18 +802,31 @@ public class Server {
       if (connected) {
          throw new IllegalStateException("Already Connected!");
       } else {
-         this.socket = new SocketHandler(this, this.url, this.port, this.sslType);
+         this.sourceCache.clear();
+         this.support.clear();
+         this.clientUserHost = null;
+         switch (this.transportType) {
+            case SELECTOR:
+               this.socket = new SelectorSocketHandler(this, this.url, this.port, this.sslType);
+               break;
+            case THREADED:
+            default:
+               this.socket = new SocketHandler(this, this.url, this.port, this.sslType);
+               break;
+         }
          try {
             this.socket.connect();
          } catch (final IOException e) {
+            this.socket = null;
             EventManager.call(new FailedToJoinServerEvent(this, e));
+            this.reconnectSupervisor.onFailure();
             return;
          }
          if (getPassword() != null) {
-            this.socket.write(new PassIrcPacket(getPassword()));
+            this.socket.write(new PassIrcPacket(getPassword()), SendPriority.CONTROL);
          }
-         this.socket.write(new NickIrcPacket(getClientNick()));
-         this.socket.write(new UserIrcPacket(getClientUserName(), client.getName()));
+         this.socket.write(new NickIrcPacket(getClientNick()), SendPriority.CONTROL);
+         this.socket.write(new UserIrcPacket(getClientUserName(), client.getName()), SendPriority.CONTROL);
 
          Log.info("Successfully connected to " + this.url + ":" + this.port);
          Log.info("Waiting for Welcome message...");
@@ -445,30 +854,21 @@ public class Server {
    public void disconnect(String message) {
       Log.info("Disconnecting from " + this.url + ":" + this.port + "...");
 
+      this.reconnectSupervisor.cancel();
       if (!connected) {
          throw new IllegalStateException("Not Connected!");
       } else {
          this.leaving = true;
 
-         // Sending quit message
-         this.socket.write(new QuitIrcPacket(message));
+         // Sending quit message, after every already queued packet
+         this.socket.writeLast(new QuitIrcPacket(message));
 
          // Waiting for everything that has to be sent
          while (this.socket.hasAnythingToWrite()) {
             Tools.pause(100);
          }
 
-         // Asking stop
-         this.socket.askStop();
-
-         // Waiting maximum of 5 seconds
-         int i = 0;
-         while (!this.socket.isStopped() && i++ < 50) {
-            Tools.pause(100);
-         }
-
-         // Killing the SocketHandler
-         this.socket.kill();
+         this.stop(this.socket);
 
          this.connected = false;
          this.joined = false;
@@ -479,20 +879,76 @@ public class Server {
    }
 
    /**
-    * Sends an IRC Packet to this Server.
+    * You should not use this. This is called internally when the
+    * connection to this Server is lost: closed by the Server, broken, or
+    * not answering PINGs anymore.
+    * <p>
+    * Releases the connection, calls a {@link ClientLostConnectionEvent}
+    * then reconnects following the {@link ReconnectPolicy} of this Server.
+    * Every known Channel is joined again once the Server welcomes the
+    * Client. This is a non-blocking method.
+    */
+   public void connectionLost() {
+      final Transport socket;
+      synchronized (this) {
+         socket = this.socket;
+         if (socket == null || this.leaving) {
+            return;
+         }
+         this.socket = null;
+         this.connected = false;
+         this.joined = false;
+      }
+      this.metrics.incrementLostConnections();
+      Log.info("Lost connection to " + this.url + ":" + this.port);
+      Client.getThreadPool().submit(() -> {
+         this.stop(socket);
+         for (final Channel channel : this.channels.values()) {
+            channel.setJoined(false);
+         }
+         EventManager.call(new ClientLostConnectionEvent(this));
+         this.reconnectSupervisor.onFailure();
+      });
+   }
+
+   /**
+    * Stops a Transport, waiting a maximum of 5 seconds before killing it.
+    *
+    * @param socket the Transport
+    */
+   private void stop(final Transport socket) {
+      // Asking stop
+      socket.askStop();
+
+      // Waiting maximum of 5 seconds
+      int i = 0;
+      while (!socket.isStopped() && i++ < 50) {
+         Tools.pause(100);
+      }
+
+      // Killing the Transport
+      socket.kill();
+   }
+
+   /**
+    * Sends an IRC Packet to this Server, with its default
+    * {@link SendPriority}.
     *
     * @param ircPacket the IRC Packet to be sent
+    *
+    * @see SendPriority#of(IrcPacket)
     */
    public void send(final IrcPacket ircPacket) {
-      this.send(ircPacket, false, null);
+      this.send(ircPacket, SendPriority.of(ircPacket), null);
    }
 
    /**
     * Sends an IRC Packet to this Server.
     *
     * @param ircPacket   the IRC Packet to be sent
-    * @param prioritized if this IRC Packet should be sent before other
-    *                    already queued packets
+    * @param prioritized if this IRC Packet should be sent with the
+    *                    {@link SendPriority#CONTROL} priority rather than
+    *                    its default one
     */
    public void send(final IrcPacket ircPacket, final boolean prioritized) {
       this.send(ircPacket, prioritized, null);
@@ -502,45 +958,184 @@ public class Server {
     * Sends an IRC Packet to this Server.
     *
     * @param ircPacket the IRC Packet to be sent
-    *                  already queued packets
+    * @param priority  the priority of this IRC Packet
+    */
+   public void send(final IrcPacket ircPacket, final SendPriority priority) {
+      this.send(ircPacket, priority, null);
+   }
+
+   /**
+    * Sends an IRC Packet to this Server, with its default
+    * {@link SendPriority}.
+    *
+    * @param ircPacket the IRC Packet to be sent
     * @param callback  a Callback for this IRC Packet
     */
    public void send(final IrcPacket ircPacket, final Callback callback) {
-      this.send(ircPacket, false, callback);
+      this.send(ircPacket, SendPriority.of(ircPacket), callback);
    }
 
    /**
     * Sends an IRC Packet to this Server.
     *
     * @param ircPacket   the IRC Packet to be sent
-    * @param prioritized if this IRC Packet should be sent before other
-    *                    already queued packets
+    * @param prioritized if this IRC Packet should be sent with the
+    *                    {@link SendPriority#CONTROL} priority rather than
+    *                    its default one
     * @param callback    a Callback for this IRC Packet
     */
    public void send(final IrcPacket ircPacket, final boolean prioritized, final Callback callback) {
+      this.send(ircPacket, prioritized ? SendPriority.CONTROL : SendPriority.of(ircPacket), callback);
+   }
+
+   /**
+    * Sends an IRC Packet to this Server.
+    * <p>
+    * The IRC Packet is sent after every already queued packet of the same
+    * or higher priority to the same target.
+    *
+    * @param ircPacket the IRC Packet to be sent
+    * @param priority  the priority of this IRC Packet
+    * @param callback  a Callback for this IRC Packet
+    */
+   public void send(final IrcPacket ircPacket, final SendPriority priority, final Callback callback) {
       if (callback != null) {
          callback.setServer(this);
          callback.setOriginalIrcPacket(ircPacket);
          EventManager.register(callback);
       }
 
-      this.sendRaw(ircPacket.getRawMessage(), prioritized);
+      this.write(ircPacket, priority);
+   }
+
+   /**
+    * Gets the amount of packets of a priority waiting to be sent to this
+    * Server.
+    *
+    * @param priority a priority
+    *
+    * @return the amount of packets of this priority waiting to be sent, 0
+    * if not connected
+    */
+   public int getQueueDepth(final SendPriority priority) {
+      final Transport socket = this.socket;
+      return socket == null ? 0 : socket.getQueueDepth(priority);
+   }
+
+   /**
+    * Gets the amount of packets received from this Server waiting to be
+    * handled.
+    *
+    * @return the amount of received packets waiting to be handled, 0 if
+    * not connected
+    */
+   public int getInboundQueueDepth() {
+      final Transport socket = this.socket;
+      return socket == null ? 0 : socket.getInboundQueueDepth();
+   }
+
+   /**
+    * Sends a request to this Server, and collects its response.
+    * <p>
+    * The subject of the request, used to only collect replies about it,
+    * is the last parameter of the request.
+    *
+    * @param ircPacket the request
+    * @param response  the description of the response
+    *
+    * @return a CompletableFuture completed with the response, terminating
+    * packet included
+    * @see #request(IrcPacket, ResponseDescriptor, String, long)
+    */
+   public CompletableFuture<List<IrcPacket>> request(final IrcPacket ircPacket, final ResponseDescriptor response) {
+      final String[] parameters = ircPacket.getParameters();
+      final String subject = parameters == null || parameters.length == 0 ? null : parameters[parameters.length - 1];
+      return this.request(ircPacket, response, subject, DEFAULT_REQUEST_TIMEOUT);
+   }
+
+   /**
+    * Sends a request to this Server, and collects its response.
+    * <p>
+    * The returned CompletableFuture fails with an
+    * {@link fr.ribesg.alix.api.callback.ErrorReplyException} if the Server
+    * answers with an error reply, with a
+    * {@link java.util.concurrent.TimeoutException} if the response is not
+    * complete in time, or with an IllegalStateException if this Server is
+    * not connected. Cancelling it stops collecting the response.
+    * <p>
+    * WARNING: The CompletableFuture is completed by the Thread handling
+    * received packets! Use the asynchronous methods of CompletableFuture
+    * for anything that could take some time.
+    *
+    * @param ircPacket       the request
+    * @param response        the description of the response
+    * @param subject         the subject of the request, used to only
+    *                        collect replies about it, may be null
+    * @param timeoutDuration the time after which the request fails, in
+    *                        milliseconds
+    *
+    * @return a CompletableFuture completed with the response, terminating
+    * packet included
+    */
+   public CompletableFuture<List<IrcPacket>> request(final IrcPacket ircPacket, final ResponseDescriptor response, final String subject, final long timeoutDuration) {
+      final ResponseCallback callback = new ResponseCallback(response, subject, timeoutDuration);
+      try {
+         this.send(ircPacket, callback);
+      } catch (final IllegalStateException e) {
+         callback.unregister();
+         callback.getFuture().completeExceptionally(e);
+      }
+      return callback.getFuture();
+   }
+
+   /**
+    * Requests the users of a Channel.
+    *
+    * @param channelName the Channel name
+    *
+    * @return a CompletableFuture completed with the RPL_NAMREPLY packets
+    * and the RPL_ENDOFNAMES packet
+    */
+   public CompletableFuture<List<IrcPacket>> names(final String channelName) {
+      return this.request(new NamesIrcPacket(channelName), ResponseDescriptor.NAMES);
+   }
+
+   /**
+    * Requests the users matching a mask.
+    *
+    * @param mask a Channel name or a mask
+    *
+    * @return a CompletableFuture completed with the RPL_WHOREPLY packets
+    * and the RPL_ENDOFWHO packet
+    */
+   public CompletableFuture<List<IrcPacket>> who(final String mask) {
+      return this.request(new WhoIrcPacket(mask), ResponseDescriptor.WHO);
+   }
+
+   /**
+    * Requests information about a user.
+    *
+    * @param nick the user nick
+    *
+    * @return a CompletableFuture completed with the RPL_WHOIS* packets and
+    * the RPL_ENDOFWHOIS packet
+    */
+   public CompletableFuture<List<IrcPacket>> whois(final String nick) {
+      return this.request(new WhoisIrcPacket(nick), ResponseDescriptor.WHOIS);
    }
 
    /**
-    * Sends a RAW message to this Server.
+    * Queues an IRC Packet to be sent to this Server.
     *
-    * @param message     the String message to be sent
-    * @param prioritized if this IRC Packet should be sent before other
-    *                    already queued packets
+    * @param ircPacket the IRC Packet to be sent
+    * @param priority  the priority of the IRC Packet
     */
-   private void sendRaw(final String message, final boolean prioritized) {
-      if (this.socket == null) {
+   private void write(final IrcPacket ircPacket, final SendPriority priority) {
+      final Transport socket = this.socket;
+      if (socket == null) {
          throw new IllegalStateException("Not connected!");
-      } else if (prioritized) {
-         this.socket.writeRawFirst(message);
       } else {
-         this.socket.writeRaw(message);
+         socket.write(ircPacket, priority);
       }
    }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The features advertised by a Server in its RPL_ISUPPORT (005) replies,
+ * like <code>TARGMAX=PRIVMSG:4,NOTICE:4</code>.
+ * <p>
+ * Tokens are case-insensitive. A token without value is supported with
+ * an empty value. Everything is cleared on connection.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Ribesg
+ * @see Server#getSupport()
+ */
+public class ServerSupport {
+
+   /**
+    * Value of a target limit meaning that there is no limit
+    */
+   public static final int UNLIMITED = Integer.MAX_VALUE;
+
+   /**
+    * Supported tokens and their value, keyed by upper case token
+    */
+   private final Map<String, String> tokens;
+
+   /**
+    * Parsed TARGMAX token, keyed by upper case command
+    */
+   private volatile Map<String, Integer> targetMax;
+
+   public ServerSupport() {
+      this.tokens = new ConcurrentHashMap<>();
+      this.targetMax = Collections.emptyMap();
+   }
+
+   /**
+    * Updates the supported features from a RPL_ISUPPORT packet, of the
+    * form <code>:server 005 nick TOKEN[=value] -TOKEN ... :are supported</code>.
+    *
+    * @param packet the RPL_ISUPPORT packet
+    */
+   public void update(final IrcPacket packet) {
+      final String[] parameters = packet.getParameters();
+      // The first parameter is our nick
+      for (int i = 1; i < parameters.length; i++) {
+         final String token = parameters[i];
+         if (token.isEmpty()) {
+            continue;
+         } else if (token.charAt(0) == '-') {
+            this.tokens.remove(token.substring(1).toUpperCase(Locale.ROOT));
+         } else {
+            final int equals = token.indexOf('=');
+            if (equals < 0) {
+               this.tokens.put(token.toUpperCase(Locale.ROOT), "");
+            } else {
+               this.tokens.put(token.substring(0, equals).toUpperCase(Locale.ROOT), token.substring(equals + 1));
+            }
+         }
+      }
+      this.targetMax = parseTargetMax(this.tokens.get("TARGMAX"));
+   }
+
+   /**
+    * Forgets every supported feature.
+    */
+   public void clear() {
+      this.tokens.clear();
+      this.targetMax = Collections.emptyMap();
+   }
+
+   /**
+    * @param token a token, like <code>CHANTYPES</code>
+    *
+    * @return true if the Server advertised this token, false otherwise
+    */
+   public boolean has(final String token) {
+      return this.tokens.containsKey(token.toUpperCase(Locale.ROOT));
+   }
+
+   /**
+    * @param token a token, like <code>CHANTYPES</code>
+    *
+    * @return the value of the token, an empty String if it has no value,
+    * or null if the Server did not advertise it
+    */
+   public String get(final String token) {
+      return this.tokens.get(token.toUpperCase(Locale.ROOT));
+   }
+
+   /**
+    * Gets the maximum amount of comma-separated targets accepted by a
+    * command.
+    * <p>
+    * The TARGMAX token is used if the Server advertised a limit for this
+    * command. Otherwise, PRIVMSG and NOTICE use the MAXTARGETS token, or
+    * only accept a single target, while JOIN and PART, which always
+    * accepted lists of Channels, are unlimited.
+    *
+    * @param command a command, like <code>PRIVMSG</code>
+    *
+    * @return the maximum amount of targets, or {@link #UNLIMITED}
+    */
+   public int getTargetMax(final String command) {
+      final String upperCommand = command.toUpperCase(Locale.ROOT);
+      final Integer max = this.targetMax.get(upperCommand);
+      if (max != null) {
+         return max;
+      }
+      switch (upperCommand) {
+         case "JOIN":
+         case "PART":
+            return UNLIMITED;
+         case "PRIVMSG":
+         case "NOTICE":
+            final String maxTargets = this.tokens.get("MAXTARGETS");
+            if (maxTargets == null) {
+               return 1;
+            } else {
+               return maxTargets.isEmpty() ? UNLIMITED : parseLimit(maxTargets, 1);
+            }
+         default:
+            return 1;
+      }
+   }
+
+   /**
+    * @param value the value of a TARGMAX token, like
+    *              <code>NAMES:1,PRIVMSG:4,ACCEPT:</code>, may be null
+    *
+    * @return the limits by upper case command
+    */
+   private static Map<String, Integer> parseTargetMax(final String value) {
+      if (value == null || value.isEmpty()) {
+         return Collections.emptyMap();
+      }
+      final Map<String, Integer> result = new HashMap<>();
+      for (final String entry : value.split(",")) {
+         final int colon = entry.indexOf(':');
+         if (colon > 0) {
+            final String limit = entry.substring(colon + 1);
+            result.put(entry.substring(0, colon).toUpperCase(Locale.ROOT), limit.isEmpty() ? UNLIMITED : parseLimit(limit, 1));
+         }
+      }
+      return result;
+   }
+
+   /**
+    * @param value a limit, may be null
+    * @param def   the value to use if the limit is missing or invalid
+    *
+    * @return the limit
+    */
+   private static int parseLimit(final String value, final int def) {
+      if (value == null || value.isEmpty()) {
+         return def;
+      }
+      try {
+         final int limit = Integer.parseInt(value);
+         return limit > 0 ? limit : def;
+      } catch (final NumberFormatException e) {
+         return def;
+      }
+   }
+}
@@ -11,6 +11,9 @@ package fr.ribesg.alix.api;
  * written in the Prefix part of the Message.
  * <p>
  * This can be either a Server or a User.
+ * <p>
+ * Sources are immutable, so that they can be shared, see
+ * {@link SourceCache}.
  */
 public class Source extends Receiver {
 
@@ -93,4 +96,14 @@ public class Source extends Receiver {
    public boolean isServer() {
       return !this.isUser;
    }
+
+   /**
+    * Sources are immutable, so this always throws.
+    *
+    * @throws UnsupportedOperationException always
+    */
+   @Override
+   public void setName(final String name) {
+      throw new UnsupportedOperationException("Sources are immutable");
+   }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the Sources built from the prefixes received from a
+ * Server, keyed by raw prefix.
+ * <p>
+ * Cached Sources are shared, which is fine as Sources are immutable.
+ * When the cache is full, the least recently used Source is evicted.
+ *
+ * @author Ribesg
+ * @see Server#getSourceCache()
+ */
+public class SourceCache {
+
+   /**
+    * Default maximum amount of cached Sources
+    */
+   public static final int DEFAULT_CAPACITY = 1024;
+
+   /**
+    * The Server the cached Sources belong to
+    */
+   private final Server server;
+
+   /**
+    * Cached Sources, in access order
+    */
+   private final LinkedHashMap<String, Source> sources;
+
+   private long hits;
+   private long misses;
+
+   /**
+    * Builds a SourceCache.
+    *
+    * @param server   the Server the cached Sources belong to
+    * @param capacity the maximum amount of cached Sources
+    */
+   public SourceCache(final Server server, final int capacity) {
+      this.server = server;
+      this.sources = new LinkedHashMap<String, Source>(16, 0.75f, true) {
+
+         @Override
+         protected boolean removeEldestEntry(final Map.Entry<String, Source> eldest) {
+            return this.size() > capacity;
+         }
+      };
+   }
+
+   /**
+    * Gets the Source represented by the provided prefix, parsing it only
+    * if it is not cached.
+    *
+    * @param prefix the prefix
+    *
+    * @return the Source represented by the provided prefix
+    *
+    * @throws NullPointerException     if prefix is null
+    * @throws IllegalArgumentException if it fails to parse the prefix
+    * @see IrcPacket#parsePrefix(Server, String)
+    */
+   public synchronized Source get(final String prefix) {
+      Source source = this.sources.get(prefix);
+      if (source == null) {
+         this.misses++;
+         source = IrcPacket.parsePrefix(this.server, prefix);
+         this.sources.put(prefix, source);
+      } else {
+         this.hits++;
+      }
+      return source;
+   }
+
+   /**
+    * Forgets every cached Source named after the provided nick, for
+    * example because this nick has been changed.
+    *
+    * @param nick the nick
+    */
+   public synchronized void invalidate(final String nick) {
+      final Iterator<Map.Entry<String, Source>> it = this.sources.entrySet().iterator();
+      while (it.hasNext()) {
+         if (it.next().getValue().getName().equals(nick)) {
+            it.remove();
+         }
+      }
+   }
+
+   /**
+    * Forgets every cached Source.
+    */
+   public synchronized void clear() {
+      this.sources.clear();
+   }
+
+   /**
+    * @return the amount of cached Sources
+    */
+   public synchronized int size() {
+      return this.sources.size();
+   }
+
+   /**
+    * @return the amount of calls to {@link #get(String)} which found a
+    * cached Source
+    */
+   public synchronized long getHits() {
+      return this.hits;
+   }
+
+   /**
+    * @return the amount of calls to {@link #get(String)} which had to
+    * parse the prefix
+    */
+   public synchronized long getMisses() {
+      return this.misses;
+   }
+}
@@ -12,6 +12,8 @@ import fr.ribesg.alix.api.Log;
 import fr.ribesg.alix.api.Server;
 import fr.ribesg.alix.api.bot.util.configuration.YamlDocument;
 import fr.ribesg.alix.api.bot.util.configuration.YamlFile;
+import fr.ribesg.alix.api.network.FloodControl;
+import fr.ribesg.alix.api.network.TransportType;
 import fr.ribesg.alix.api.network.ssl.SSLType;
 
 import java.io.IOException;
@@ -87,6 +89,18 @@ public class AlixConfiguration {
             } else {
                sslType = SSLType.NONE;
             }
+            final TransportType transportType;
+            if (document.isString("transport")) {
+               transportType = TransportType.valueOf(document.getString("transport"));
+            } else {
+               transportType = TransportType.THREADED;
+            }
+            final int maxLineLength = document.getInt("maxLineLength", Server.RFC_MAX_LINE_LENGTH);
+            final FloodControl floodControl = new FloodControl(
+               document.getInt("floodBurst", FloodControl.DEFAULT.getBurst()),
+               document.getInt("floodLineDelay", (int) FloodControl.DEFAULT.getLineDelay()),
+               document.getInt("floodBytesPerLine", FloodControl.DEFAULT.getBytesPerLine())
+            );
             final List<String> channels = document.getStringList("channels");
             final String clientNick;
             if (document.isString("clientNick")) {
@@ -101,6 +115,9 @@ public class AlixConfiguration {
                clientUserName = this.mainNick;
             }
             final Server server = new Server(client, name, clientNick, clientUserName, url, port, password, sslType);
+            server.setTransportType(transportType);
+            server.setMaxLineLength(maxLineLength);
+            server.setFloodControl(floodControl);
             if (password != null) {
                Log.addFilter(Pattern.quote(password), "**********");
             }
@@ -144,6 +161,9 @@ public class AlixConfiguration {
          final int port = server.getPort();
          final String password = server.getPassword();
          final SSLType sslType = server.getSslType();
+         final TransportType transportType = server.getTransportType();
+         final int maxLineLength = server.getMaxLineLength();
+         final FloodControl floodControl = server.getFloodControl();
          final List<String> channels = server.getChannels().stream().map(Channel::getName).collect(Collectors.toList());
          final String clientNick = server.getClientNick();
          final String clientUserName = server.getClientUserName();
@@ -156,6 +176,17 @@ public class AlixConfiguration {
          if (sslType != SSLType.NONE) {
             document.set("ssl", sslType.name());
          }
+         if (transportType != TransportType.THREADED) {
+            document.set("transport", transportType.name());
+         }
+         if (maxLineLength != Server.RFC_MAX_LINE_LENGTH) {
+            document.set("maxLineLength", maxLineLength);
+         }
+         if (!floodControl.equals(FloodControl.DEFAULT)) {
+            document.set("floodBurst", floodControl.getBurst());
+            document.set("floodLineDelay", (int) floodControl.getLineDelay());
+            document.set("floodBytesPerLine", floodControl.getBytesPerLine());
+         }
          document.set("channels", channels);
          if (!clientNick.equals(this.mainNick)) {
             document.set("clientNick", clientNick);
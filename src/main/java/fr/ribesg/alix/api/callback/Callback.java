@@ -348,6 +348,13 @@ public abstract class Callback {
       this.server = server;
    }
 
+   /**
+    * @return true if this Callback ignores previously consumed packets
+    */
+   public boolean ignoresConsumed() {
+      return ignoreConsumed;
+   }
+
    /**
     * Checks if this Callback is enabled.
     *
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.callback;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+
+/**
+ * Fails a request when the Server answers it with an error reply, see
+ * {@link ResponseDescriptor}.
+ *
+ * @author Ribesg
+ */
+public class ErrorReplyException extends RuntimeException {
+
+   private static final long serialVersionUID = 1L;
+
+   /**
+    * The error reply, not serialized as IrcPackets are not Serializable
+    */
+   private final transient IrcPacket reply;
+
+   /**
+    * Builds an ErrorReplyException.
+    *
+    * @param reply the error reply received from the Server
+    */
+   public ErrorReplyException(final IrcPacket reply) {
+      super("Error reply: " + reply.getRawMessage());
+      this.reply = reply;
+   }
+
+   /**
+    * @return the error reply, or null if this exception was deserialized
+    */
+   public IrcPacket getReply() {
+      return this.reply;
+   }
+}
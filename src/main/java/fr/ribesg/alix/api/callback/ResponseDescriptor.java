@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.callback;
+
+import fr.ribesg.alix.api.enums.Reply;
+import fr.ribesg.alix.api.message.IrcPacket;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes the response of the Server to a request, for
+ * {@link fr.ribesg.alix.api.Server#request(IrcPacket, ResponseDescriptor)}.
+ * <p>
+ * A response is made of any amount of reply packets followed by a
+ * terminating packet, like RPL_NAMREPLY packets until RPL_ENDOFNAMES.
+ * An error reply fails the request instead.
+ * <p>
+ * For each code, a ResponseDescriptor knows which parameter holds the
+ * subject of the request, for example the Channel name for NAMES, so that
+ * concurrent requests only collect their own replies. Codes without
+ * subject are collected by every pending request, until another request
+ * of the same kind terminates: as the Server answers requests in order,
+ * those replies belonged to this other request.
+ * <p>
+ * ResponseDescriptors are immutable.
+ *
+ * @author Ribesg
+ */
+public final class ResponseDescriptor {
+
+   /**
+    * Subject index of codes whose packets do not hold the subject of the
+    * request
+    */
+   public static final int NO_SUBJECT = -1;
+
+   /**
+    * Response to a NAMES request
+    */
+   public static final ResponseDescriptor NAMES = new ResponseDescriptor(Reply.RPL_ENDOFNAMES.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_NAMREPLY.getIntCodeAsString(), 2);
+
+   /**
+    * Response to a WHO request
+    */
+   public static final ResponseDescriptor WHO = new ResponseDescriptor(Reply.RPL_ENDOFWHO.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_WHOREPLY.getIntCodeAsString(), NO_SUBJECT);
+
+   /**
+    * Response to a WHOIS request
+    */
+   public static final ResponseDescriptor WHOIS = new ResponseDescriptor(Reply.RPL_ENDOFWHOIS.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_AWAY.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_WHOISUSER.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_WHOISSERVER.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_WHOISOPERATOR.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_WHOISIDLE.getIntCodeAsString(), 1)
+      .withReply(Reply.RPL_WHOISCHANNELS.getIntCodeAsString(), 1)
+      .withError(Reply.ERR_NOSUCHNICK.getIntCodeAsString(), 1);
+
+   private final String               terminatorCode;
+   private final Map<String, Integer> replyCodes;
+   private final Map<String, Integer> errorCodes;
+
+   /**
+    * Builds a ResponseDescriptor without reply nor error code.
+    *
+    * @param terminatorCode         the code of the packet terminating the
+    *                               response
+    * @param terminatorSubjectIndex the index of the parameter holding the
+    *                               subject in the terminating packet, or
+    *                               {@link #NO_SUBJECT}
+    */
+   public ResponseDescriptor(final String terminatorCode, final int terminatorSubjectIndex) {
+      this(terminatorCode.toUpperCase(), new HashMap<>(), new HashMap<>());
+      this.replyCodes.put(this.terminatorCode, terminatorSubjectIndex);
+   }
+
+   private ResponseDescriptor(final String terminatorCode, final Map<String, Integer> replyCodes, final Map<String, Integer> errorCodes) {
+      this.terminatorCode = terminatorCode;
+      this.replyCodes = replyCodes;
+      this.errorCodes = errorCodes;
+   }
+
+   /**
+    * Builds a copy of this ResponseDescriptor with an additional reply
+    * code.
+    *
+    * @param code         the reply code
+    * @param subjectIndex the index of the parameter holding the subject in
+    *                     packets of this code, or {@link #NO_SUBJECT}
+    *
+    * @return a new ResponseDescriptor
+    */
+   public ResponseDescriptor withReply(final String code, final int subjectIndex) {
+      final ResponseDescriptor copy = new ResponseDescriptor(this.terminatorCode, new HashMap<>(this.replyCodes), this.errorCodes);
+      copy.replyCodes.put(code.toUpperCase(), subjectIndex);
+      return copy;
+   }
+
+   /**
+    * Builds a copy of this ResponseDescriptor with an additional error
+    * code.
+    *
+    * @param code         the error code
+    * @param subjectIndex the index of the parameter holding the subject in
+    *                     packets of this code, or {@link #NO_SUBJECT}
+    *
+    * @return a new ResponseDescriptor
+    */
+   public ResponseDescriptor withError(final String code, final int subjectIndex) {
+      final ResponseDescriptor copy = new ResponseDescriptor(this.terminatorCode, this.replyCodes, new HashMap<>(this.errorCodes));
+      copy.errorCodes.put(code.toUpperCase(), subjectIndex);
+      return copy;
+   }
+
+   /**
+    * @return the code of the packet terminating the response
+    */
+   public String getTerminatorCode() {
+      return this.terminatorCode;
+   }
+
+   /**
+    * @return the reply codes, terminator included
+    */
+   public Set<String> getReplyCodes() {
+      return Collections.unmodifiableSet(this.replyCodes.keySet());
+   }
+
+   /**
+    * @return the error codes
+    */
+   public Set<String> getErrorCodes() {
+      return Collections.unmodifiableSet(this.errorCodes.keySet());
+   }
+
+   /**
+    * @param code a reply or error code
+    *
+    * @return true if packets of this code are errors
+    */
+   public boolean isError(final String code) {
+      return this.errorCodes.containsKey(code);
+   }
+
+   /**
+    * Checks if a reply or error packet is about the provided subject.
+    *
+    * @param packet  a reply or error packet
+    * @param subject the subject of the request, may be null
+    *
+    * @return false if the packet holds a different subject, true otherwise
+    */
+   public boolean matches(final IrcPacket packet, final String subject) {
+      final String code = packet.getRawCommandString().toUpperCase();
+      Integer index = this.replyCodes.get(code);
+      if (index == null) {
+         index = this.errorCodes.get(code);
+      }
+      if (subject == null || index == null || index == NO_SUBJECT) {
+         return true;
+      }
+      final String[] parameters = packet.getParameters();
+      return index < parameters.length && subject.equalsIgnoreCase(parameters[index]);
+   }
+
+   /**
+    * @param code a reply code
+    *
+    * @return true if packets of this code hold the subject of the request
+    */
+   public boolean hasSubject(final String code) {
+      final Integer index = this.replyCodes.get(code);
+      return index != null && index != NO_SUBJECT;
+   }
+}
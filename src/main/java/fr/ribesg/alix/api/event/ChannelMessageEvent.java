@@ -34,4 +34,9 @@ public class ChannelMessageEvent extends Event {
    public String getMessage() {
       return message;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
@@ -25,4 +25,9 @@ public class ClientJoinChannelEvent extends Event {
    public Channel getChannel() {
       return channel;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
@@ -27,4 +27,9 @@ public class ClientKickedFromServerEvent extends Event {
    public String getReason() {
       return reason;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getServer();
+   }
 }
@@ -4,10 +4,17 @@ import fr.ribesg.alix.api.Server;
 /**
  * Executed once the Client loose the connection to the Server.
  * <p>
- * To be more precise, this is triggered if the Client doesn't receive a
- * {@link fr.ribesg.alix.api.enums.Command#PONG} command within 5 seconds
- * after sending a {@link fr.ribesg.alix.api.enums.Command#PING} command
- * to this Server.
+ * To be more precise, this is triggered if the connection is closed by
+ * the Server or broken, or if the Server doesn't answer a
+ * {@link fr.ribesg.alix.api.enums.Command#PING} in time. The Client only
+ * sends a PING once nothing was received from the Server for 15 seconds.
+ * Once the PING is actually written, after any message queued before it,
+ * the Client waits for a timeout derived from the round-trip times of
+ * previous PINGs, between 30 and 120 seconds, see
+ * {@link fr.ribesg.alix.api.metrics.RoundTripEstimator#getTimeout()}.
+ * <p>
+ * The Client then reconnects following the
+ * {@link fr.ribesg.alix.api.network.ReconnectPolicy} of the Server.
  *
  * @author Ribesg
  */
@@ -22,4 +29,9 @@ public class ClientLostConnectionEvent extends Event {
    public Server getServer() {
       return server;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getServer();
+   }
 }
@@ -23,4 +23,9 @@ public class ClientPartChannelEvent extends Event {
    public Channel getChannel() {
       return channel;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
@@ -23,4 +23,9 @@ public class ClientQuitServerEvent extends Event {
    public String getReason() {
       return reason;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getServer();
+   }
 }
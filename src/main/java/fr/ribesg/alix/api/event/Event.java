@@ -37,4 +37,23 @@ public class Event {
    public void consume() {
       this.consumed = true;
    }
+
+   /**
+    * Resets the consumption state of a recycled Event.
+    */
+   /* package */ void unconsume() {
+      this.consumed = false;
+   }
+
+   /**
+    * Gets the key of this Event, like its Channel or Server. EventHandlers
+    * with the {@link EventHandlerExecution#ORDERED} execution receive the
+    * Events of a same key one after the other.
+    *
+    * @return the key of this Event, or null to order this Event with every
+    * other Event of the same class
+    */
+   public Object getOrderingKey() {
+      return null;
+   }
 }
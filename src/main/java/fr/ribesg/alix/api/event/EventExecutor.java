@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.event;
+
+import fr.ribesg.alix.api.Log;
+import fr.ribesg.alix.internal.thread.VirtualThreads;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on a bounded pool of Threads, in order for each key.
+ * <p>
+ * Tasks submitted with the same key, for example the same
+ * {@link fr.ribesg.alix.api.Channel}, are ran one after the other in the
+ * order they were submitted. Tasks of different keys are ran in parallel.
+ * A key with a lot of tasks gives its Thread back to the pool every
+ * {@link #BATCH_SIZE} tasks, so that it can not starve other keys.
+ * <p>
+ * The amount of waiting tasks is limited, both for each key and in total.
+ * Once a limit is reached, the {@link RejectionPolicy} applies.
+ * <p>
+ * On Java 21 or later, tasks can run on virtual Threads instead, see
+ * {@link #setVirtualThreads(boolean)}. The amount of Threads is then not
+ * limited, which suits tasks blocking on the network, but tasks of a same
+ * key are still ran one after the other.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Client#getEventExecutor()
+ */
+public final class EventExecutor {
+
+   /**
+    * Default maximum amount of waiting tasks for a single key
+    */
+   public static final int DEFAULT_MAX_QUEUED_PER_KEY = 1_024;
+
+   /**
+    * Default maximum amount of waiting tasks
+    */
+   public static final int DEFAULT_MAX_QUEUED = 16_384;
+
+   /**
+    * Maximum amount of tasks of a key ran before giving the Thread back to
+    * the pool
+    */
+   private static final int BATCH_SIZE = 32;
+
+   /**
+    * The executor running a task on the current Thread, if any
+    */
+   private static final ThreadLocal<EventExecutor> CURRENT = new ThreadLocal<>();
+
+   /**
+    * The prefix of the names of the Threads
+    */
+   private final String name;
+
+   /**
+    * The bounded pool of platform Threads
+    */
+   private final ThreadPoolExecutor platformPool;
+
+   /**
+    * The executor running the tasks, {@link #platformPool} or a virtual
+    * Thread per task executor
+    */
+   private volatile ExecutorService pool;
+
+   /**
+    * If {@link #shutdown()} was called
+    */
+   private volatile boolean shutdown;
+
+   /**
+    * Waiting tasks of each key with waiting or running tasks
+    */
+   private final Map<Object, KeyQueue> queues;
+
+   /**
+    * Amount of waiting tasks
+    */
+   private int queued;
+
+   /**
+    * Amount of Threads waiting for room, see {@link RejectionPolicy#BLOCK}
+    */
+   private int blocked;
+
+   private volatile int             maxQueuedPerKey;
+   private volatile int             maxQueued;
+   private volatile RejectionPolicy rejectionPolicy;
+
+   /**
+    * Amount of rejected tasks
+    */
+   private final LongAdder rejected;
+
+   /**
+    * Builds an EventExecutor.
+    *
+    * @param name    the prefix of the names of the Threads
+    * @param threads the maximum amount of Threads
+    */
+   public EventExecutor(final String name, final int threads) {
+      if (threads <= 0) {
+         throw new IllegalArgumentException("Invalid amount of threads: " + threads);
+      }
+      final AtomicInteger ids = new AtomicInteger();
+      this.name = name;
+      this.platformPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+         final Thread thread = new Thread(task, name + '-' + ids.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      });
+      this.platformPool.allowCoreThreadTimeOut(true);
+      this.pool = this.platformPool;
+      this.queues = new HashMap<>();
+      this.maxQueuedPerKey = DEFAULT_MAX_QUEUED_PER_KEY;
+      this.maxQueued = DEFAULT_MAX_QUEUED;
+      this.rejectionPolicy = RejectionPolicy.BLOCK;
+      this.rejected = new LongAdder();
+   }
+
+   /**
+    * Submits a task, which will be ran after every task already submitted
+    * with the same key.
+    *
+    * @param key  the key, compared with {@link Object#equals(Object)}
+    * @param task the task
+    *
+    * @throws RejectedExecutionException if this executor was shut down
+    */
+   public void execute(final Object key, final Runnable task) {
+      KeyQueue toSchedule = null;
+      synchronized (this) {
+         if (this.shutdown) {
+            throw new RejectedExecutionException("EventExecutor shut down");
+         }
+         KeyQueue queue = this.queues.get(key);
+         while (this.isFull(queue)) {
+            final RejectionPolicy policy = this.rejectionPolicy;
+            if (policy == RejectionPolicy.BLOCK && CURRENT.get() != this) {
+               this.blocked++;
+               try {
+                  this.wait();
+               } catch (final InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  this.reject(key);
+                  return;
+               } finally {
+                  this.blocked--;
+               }
+               queue = this.queues.get(key);
+            } else if (policy == RejectionPolicy.DISCARD_OLDEST && queue != null && !queue.tasks.isEmpty()) {
+               queue.tasks.poll();
+               this.queued--;
+               this.reject(key);
+            } else if (policy == RejectionPolicy.BLOCK) {
+               // A worker waiting for other workers could wait forever
+               break;
+            } else {
+               this.reject(key);
+               return;
+            }
+         }
+         if (queue == null) {
+            queue = new KeyQueue(key);
+            this.queues.put(key, queue);
+         }
+         queue.tasks.add(task);
+         this.queued++;
+         if (!queue.scheduled) {
+            queue.scheduled = true;
+            toSchedule = queue;
+         }
+      }
+      if (toSchedule != null) {
+         this.schedule(toSchedule);
+      }
+   }
+
+   /**
+    * Runs the tasks of a key on the current executor.
+    *
+    * @throws RejectedExecutionException if this executor was shut down
+    */
+   private void schedule(final KeyQueue queue) {
+      while (true) {
+         final ExecutorService pool = this.pool;
+         try {
+            pool.execute(queue);
+            return;
+         } catch (final RejectedExecutionException e) {
+            // Retry if the executor was switched in the meantime
+            if (this.shutdown || pool == this.pool) {
+               throw e;
+            }
+         }
+      }
+   }
+
+   private boolean isFull(final KeyQueue queue) {
+      return this.queued >= this.maxQueued || queue != null && queue.tasks.size() >= this.maxQueuedPerKey;
+   }
+
+   private void reject(final Object key) {
+      this.rejected.increment();
+      Log.warn("EventExecutor full, dropped a task for " + key);
+   }
+
+   /**
+    * Takes the next waiting task of a key.
+    *
+    * @return the next task, or null if there is none and the key is not
+    * scheduled anymore
+    */
+   private synchronized Runnable next(final KeyQueue queue) {
+      final Runnable task = queue.tasks.poll();
+      if (task == null) {
+         queue.scheduled = false;
+         this.queues.remove(queue.key);
+      } else {
+         this.queued--;
+         if (this.blocked > 0) {
+            this.notifyAll();
+         }
+      }
+      return task;
+   }
+
+   /**
+    * @return true if tasks run on virtual Threads, false otherwise
+    */
+   public boolean isVirtualThreads() {
+      return this.pool != this.platformPool;
+   }
+
+   /**
+    * Sets if tasks run on virtual Threads, a new one for each key with
+    * waiting tasks, instead of the bounded pool of platform Threads. Tasks
+    * already running are not moved.
+    * <p>
+    * Default: false
+    *
+    * @param virtualThreads if tasks should run on virtual Threads
+    *
+    * @throws UnsupportedOperationException if virtual Threads are not
+    *                                       supported by this Java version
+    * @see VirtualThreads#isSupported()
+    */
+   public synchronized void setVirtualThreads(final boolean virtualThreads) {
+      if (virtualThreads == this.isVirtualThreads() || this.shutdown) {
+         return;
+      }
+      final ExecutorService previous = this.pool;
+      if (virtualThreads) {
+         this.pool = VirtualThreads.newExecutor(this.name);
+      } else {
+         this.pool = this.platformPool;
+         previous.shutdown();
+      }
+   }
+
+   /**
+    * @return the maximum amount of platform Threads
+    */
+   public int getThreads() {
+      return this.platformPool.getMaximumPoolSize();
+   }
+
+   /**
+    * Sets the maximum amount of platform Threads. This does not limit
+    * virtual Threads.
+    * <p>
+    * Default: the amount of available processors
+    *
+    * @param threads the maximum amount of Threads
+    */
+   public void setThreads(final int threads) {
+      if (threads <= 0) {
+         throw new IllegalArgumentException("Invalid amount of threads: " + threads);
+      }
+      if (threads > this.platformPool.getMaximumPoolSize()) {
+         this.platformPool.setMaximumPoolSize(threads);
+         this.platformPool.setCorePoolSize(threads);
+      } else {
+         this.platformPool.setCorePoolSize(threads);
+         this.platformPool.setMaximumPoolSize(threads);
+      }
+   }
+
+   /**
+    * @return the maximum amount of waiting tasks for a single key
+    */
+   public int getMaxQueuedPerKey() {
+      return this.maxQueuedPerKey;
+   }
+
+   /**
+    * Sets the maximum amount of waiting tasks for a single key.
+    * <p>
+    * Default: {@link #DEFAULT_MAX_QUEUED_PER_KEY}
+    *
+    * @param maxQueuedPerKey the maximum amount of waiting tasks for a
+    *                        single key
+    */
+   public void setMaxQueuedPerKey(final int maxQueuedPerKey) {
+      if (maxQueuedPerKey <= 0) {
+         throw new IllegalArgumentException("Invalid maximum amount of queued tasks per key: " + maxQueuedPerKey);
+      }
+      this.maxQueuedPerKey = maxQueuedPerKey;
+   }
+
+   /**
+    * @return the maximum amount of waiting tasks
+    */
+   public int getMaxQueued() {
+      return this.maxQueued;
+   }
+
+   /**
+    * Sets the maximum amount of waiting tasks.
+    * <p>
+    * Default: {@link #DEFAULT_MAX_QUEUED}
+    *
+    * @param maxQueued the maximum amount of waiting tasks
+    */
+   public void setMaxQueued(final int maxQueued) {
+      if (maxQueued <= 0) {
+         throw new IllegalArgumentException("Invalid maximum amount of queued tasks: " + maxQueued);
+      }
+      this.maxQueued = maxQueued;
+   }
+
+   /**
+    * @return what happens to tasks submitted while this executor is full
+    */
+   public RejectionPolicy getRejectionPolicy() {
+      return this.rejectionPolicy;
+   }
+
+   /**
+    * Sets what happens to tasks submitted while this executor is full.
+    * Tasks submitted by a Thread of this executor are never blocked, they
+    * are queued beyond the limits instead.
+    * <p>
+    * Default: {@link RejectionPolicy#BLOCK}
+    *
+    * @param rejectionPolicy the RejectionPolicy
+    */
+   public void setRejectionPolicy(final RejectionPolicy rejectionPolicy) {
+      if (rejectionPolicy == null) {
+         throw new IllegalArgumentException("rejectionPolicy can't be null");
+      }
+      this.rejectionPolicy = rejectionPolicy;
+   }
+
+   /**
+    * @return the amount of waiting tasks
+    */
+   public synchronized int getQueued() {
+      return this.queued;
+   }
+
+   /**
+    * @return the amount of tasks dropped because this executor was full
+    */
+   public long getRejected() {
+      return this.rejected.sum();
+   }
+
+   /**
+    * Stops accepting tasks. Already submitted tasks are still ran.
+    */
+   public synchronized void shutdown() {
+      this.shutdown = true;
+      this.pool.shutdown();
+      this.platformPool.shutdown();
+   }
+
+   /**
+    * Waits for every submitted task to be ran after a call to
+    * {@link #shutdown()}.
+    *
+    * @param timeout the maximum time to wait
+    * @param unit    the unit of the timeout
+    *
+    * @return true if every task was ran, false if the timeout elapsed
+    *
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+      final long end = System.nanoTime() + unit.toNanos(timeout);
+      return this.pool.awaitTermination(timeout, unit) &&
+             this.platformPool.awaitTermination(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * The waiting tasks of a key, scheduled on the pool while it has some.
+    */
+   private final class KeyQueue implements Runnable {
+
+      private final Object               key;
+      private final ArrayDeque<Runnable> tasks;
+
+      /**
+       * If this KeyQueue is waiting for or running on a Thread of the pool,
+       * guarded by the EventExecutor
+       */
+      private boolean scheduled;
+
+      private KeyQueue(final Object key) {
+         this.key = key;
+         this.tasks = new ArrayDeque<>();
+      }
+
+      @Override
+      public void run() {
+         CURRENT.set(EventExecutor.this);
+         try {
+            this.runTasks();
+         } finally {
+            CURRENT.remove();
+         }
+      }
+
+      private void runTasks() {
+         int ran = 0;
+         Runnable task;
+         while ((task = EventExecutor.this.next(this)) != null) {
+            try {
+               task.run();
+            } catch (final Throwable t) {
+               Log.error("Uncaught exception while running task for " + this.key, t);
+            }
+            if (++ran == BATCH_SIZE) {
+               // Let other keys run
+               try {
+                  EventExecutor.this.schedule(this);
+                  return;
+               } catch (final RejectedExecutionException e) {
+                  // Shut down, run every remaining task here
+                  ran = 0;
+               }
+            }
+         }
+      }
+   }
+}
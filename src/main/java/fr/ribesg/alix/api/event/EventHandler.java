@@ -37,4 +37,16 @@ public @interface EventHandler {
     * been consumed by another EventHandler or not
     */
    boolean ignoreConsumed() default true;
+
+   /**
+    * On which Thread this EventHandler is invoked. Slow EventHandlers, for
+    * example doing web requests, should not be INLINE.
+    * <p>
+    * Default: {@link EventHandlerExecution#INLINE}
+    *
+    * @return the execution of this EventHandler
+    *
+    * @see EventHandlerExecution
+    */
+   EventHandlerExecution execution() default EventHandlerExecution.INLINE;
 }
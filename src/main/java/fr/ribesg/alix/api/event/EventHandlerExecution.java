@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.event;
+
+/**
+ * Defines on which Thread an EventHandler is invoked.
+ * <p>
+ * Events are called from various Threads: {@link ReceivedPacketEvent} and
+ * {@link ModeEvent} from the Thread handling received packets, other
+ * Events from the {@link fr.ribesg.alix.api.Client#getEventExecutor()}.
+ * A slow INLINE EventHandler delays every following Event.
+ *
+ * @author Ribesg
+ * @see EventHandler#execution()
+ */
+public enum EventHandlerExecution {
+
+   /**
+    * The EventHandler is invoked by the Thread calling the Event, before
+    * the EventHandlers of lower priorities. It can consume the Event.
+    * <p>
+    * This is the default execution.
+    */
+   INLINE,
+
+   /**
+    * The EventHandler is invoked later on the
+    * {@link fr.ribesg.alix.api.Client#getThreadPool()}, without any
+    * ordering. Consuming the Event has no effect on other EventHandlers.
+    */
+   ASYNC,
+
+   /**
+    * The EventHandler is invoked later on the
+    * {@link fr.ribesg.alix.api.Client#getEventExecutor()}, in order with
+    * every other Event of the same {@link Event#getOrderingKey()}.
+    * Consuming the Event has no effect on other EventHandlers.
+    */
+   ORDERED
+}
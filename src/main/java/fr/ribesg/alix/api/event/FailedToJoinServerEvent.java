@@ -25,4 +25,9 @@ public class FailedToJoinServerEvent extends Event {
    public Throwable getCause() {
       return cause;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getServer();
+   }
 }
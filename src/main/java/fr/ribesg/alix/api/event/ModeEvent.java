@@ -41,4 +41,9 @@ public class ModeEvent extends Event {
    public String[] getParameters() {
       return this.parameters;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
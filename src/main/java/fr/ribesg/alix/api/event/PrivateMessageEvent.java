@@ -31,4 +31,9 @@ public class PrivateMessageEvent extends Event {
    public String getMessage() {
       return message;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getServer();
+   }
 }
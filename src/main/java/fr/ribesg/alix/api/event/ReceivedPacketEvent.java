@@ -3,14 +3,56 @@ package fr.ribesg.alix.api.event;
 import fr.ribesg.alix.api.Server;
 import fr.ribesg.alix.api.message.IrcPacket;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Called for each packet received from a Server.
+ * <p>
+ * If {@link Server#setPacketPooling(boolean)} is enabled, this Event and
+ * its IrcPacket are recycled once every EventHandler and Callback returned:
+ * those keeping a reference to either of them should call
+ * {@link #retain()}, then {@link #release()} once done with it. EventHandlers
+ * with the {@link EventHandlerExecution#ASYNC} or
+ * {@link EventHandlerExecution#ORDERED} execution don't have to. Strings
+ * returned by the IrcPacket are never recycled.
+ */
 public class ReceivedPacketEvent extends Event {
 
    private final Server    source;
    private final IrcPacket packet;
 
+   /**
+    * Called once this Event is not referenced anymore, null if this Event
+    * is not pooled
+    */
+   private final Consumer<ReceivedPacketEvent> recycler;
+
+   /**
+    * Amount of references to this pooled Event, 0 once recycled
+    */
+   private final AtomicInteger references;
+
    public ReceivedPacketEvent(final Server source, final IrcPacket packet) {
+      this(source, packet, null);
+   }
+
+   /**
+    * Pooled Event constructor. The built Event holds a single reference.
+    * <p>
+    * You should not use this. This is called internally by the pool of
+    * received packets of a Server.
+    *
+    * @param source   the Server
+    * @param packet   the received IrcPacket
+    * @param recycler called once this Event is not referenced anymore, or
+    *                 null if this Event is not pooled
+    */
+   public ReceivedPacketEvent(final Server source, final IrcPacket packet, final Consumer<ReceivedPacketEvent> recycler) {
       this.source = source;
       this.packet = packet;
+      this.recycler = recycler;
+      this.references = recycler == null ? null : new AtomicInteger(1);
    }
 
    public Server getSource() {
@@ -21,8 +63,88 @@ public class ReceivedPacketEvent extends Event {
       return packet;
    }
 
+   /**
+    * @return true if this Event and its IrcPacket are recycled once
+    * released
+    */
+   public boolean isPooled() {
+      return this.recycler != null;
+   }
+
+   /**
+    * Prevents this Event and its IrcPacket from being recycled until
+    * {@link #release()} is called. Does nothing if this Event is not
+    * pooled.
+    * <p>
+    * An Event retained and never released is simply never recycled.
+    *
+    * @return this Event
+    *
+    * @throws IllegalStateException if this Event was already recycled
+    */
+   public ReceivedPacketEvent retain() {
+      if (this.recycler != null) {
+         int references;
+         do {
+            references = this.references.get();
+            if (references == 0) {
+               throw new IllegalStateException("This Event was already recycled");
+            }
+         } while (!this.references.compareAndSet(references, references + 1));
+      }
+      return this;
+   }
+
+   /**
+    * Releases a reference to this Event, recycling it if it was the last
+    * one. Does nothing if this Event is not pooled.
+    *
+    * @throws IllegalStateException if this Event was already recycled
+    */
+   public void release() {
+      if (this.recycler != null) {
+         final int references = this.references.decrementAndGet();
+         if (references == 0) {
+            this.recycler.accept(this);
+         } else if (references < 0) {
+            this.references.incrementAndGet();
+            throw new IllegalStateException("This Event was already recycled");
+         }
+      }
+   }
+
+   /**
+    * Parses a received line into this recycled Event, which then holds a
+    * single reference.
+    * <p>
+    * You should not use this. This is called internally by the pool of
+    * received packets of a Server.
+    *
+    * @param buffer the byte array
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @throws IllegalStateException    if this Event is not pooled or still
+    *                                  referenced
+    * @throws IllegalArgumentException if the line is malformed, this Event
+    *                                  is then still recycled
+    */
+   public void reuse(final byte[] buffer, final int offset, final int length) {
+      if (this.recycler == null || this.references.get() != 0) {
+         throw new IllegalStateException("Only recycled Events can be reused");
+      }
+      this.packet.reparse(buffer, offset, length);
+      this.unconsume();
+      this.references.set(1);
+   }
+
    @Override
    public String toString() {
       return source.getName() + " | " + packet.toString();
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getSource();
+   }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.event;
+
+/**
+ * Represents what happens to an Event submitted to a full
+ * {@link EventExecutor}.
+ *
+ * @author Ribesg
+ * @see EventExecutor#setRejectionPolicy(RejectionPolicy)
+ */
+public enum RejectionPolicy {
+   /**
+    * The submitting Thread waits until there is room. As Events are
+    * submitted by the Thread handling received packets, this stops reading
+    * from the Server once its queue of received packets is full too, see
+    * {@link fr.ribesg.alix.api.network.OverflowPolicy}.
+    * <p>
+    * This is the default.
+    */
+   BLOCK,
+
+   /**
+    * The submitted Event is dropped.
+    */
+   DISCARD_NEWEST,
+
+   /**
+    * The oldest Event waiting for the same key is dropped to make room for
+    * the submitted one. If there is none, the submitted Event is dropped.
+    */
+   DISCARD_OLDEST
+}
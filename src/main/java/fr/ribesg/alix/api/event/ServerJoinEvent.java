@@ -23,4 +23,9 @@ public class ServerJoinEvent extends Event {
    public Server getServer() {
       return server;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getServer();
+   }
 }
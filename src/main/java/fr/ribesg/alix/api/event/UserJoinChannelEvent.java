@@ -31,4 +31,9 @@ public class UserJoinChannelEvent extends Event {
    public Channel getChannel() {
       return channel;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
@@ -34,4 +34,9 @@ public class UserKickedFromChannelEvent extends Event {
    public String getReason() {
       return reason;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
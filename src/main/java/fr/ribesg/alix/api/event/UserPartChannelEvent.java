@@ -28,4 +28,9 @@ public class UserPartChannelEvent extends Event {
    public Channel getChannel() {
       return channel;
    }
+
+   @Override
+   public Object getOrderingKey() {
+      return this.getChannel();
+   }
 }
@@ -10,7 +10,9 @@ import fr.ribesg.alix.api.Source;
 import fr.ribesg.alix.api.enums.Codes;
 import fr.ribesg.alix.api.enums.Command;
 import fr.ribesg.alix.api.enums.Reply;
+import fr.ribesg.alix.internal.network.Utf8;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,23 +28,54 @@ import java.util.regex.Pattern;
  * <p>
  * Notes:
  * <ul>
- * <li>The message starts with a ':' followed by the prefix, which can be empty.
+ * <li>If the PREFIX part is present, the message starts with a ':'
+ * followed by the prefix.
  * <li>All elements are separated by a space character, and the message is
  * ended by a CRLF.
  * <li>Only the COMMAND part is mandatory.
  * <li>If the TRAIL part it missing, then the : is not present
  * </ul>
+ * <p>
+ * IRC Packets are considered immutable once built: the array returned by
+ * {@link #getParameters()} should not be modified, as the raw message and
+ * its encoded bytes are cached. Received IrcPackets of a Server with
+ * {@link Server#setPacketPooling(boolean)} enabled are recycled, see
+ * {@link fr.ribesg.alix.api.event.ReceivedPacketEvent#retain()}.
  *
  * @author Ribesg
  */
 public class IrcPacket {
 
-   private static final Pattern IRC_PACKET_REGEX = Pattern.compile("^(?:[:](?<prefix>\\S+) )?(?<command>\\S+)(?: (?!:)(?<params>.+?))?(?: [:](?<trail>.+))?$");
-
    private static final Pattern PREFIX_REGEX = Pattern.compile("^(?<name>[^\\s!@]+)(?:!(?<userName>[^\\s@]+))?(?:@(?<hostName>\\S+))?$");
 
    private static final Pattern SERVER_NAME_REGEX = Pattern.compile("^(?:\\w+\\.)+(?:\\w+)$");
 
+   /**
+    * Parameters of IrcPackets without parameters
+    */
+   private static final String[] NO_PARAMETERS = new String[0];
+
+   /**
+    * Marks a lazily decoded String field which has not been decoded yet
+    */
+   @SuppressWarnings("RedundantStringConstructorCall")
+   private static final String NOT_DECODED = new String("");
+
+   /**
+    * Marks a lazily decoded parameters field which has not been decoded yet
+    */
+   private static final String[] NOT_DECODED_PARAMETERS = new String[0];
+
+   /**
+    * Known Commands, used to get canonical command Strings
+    */
+   private static final Command[] COMMANDS = Command.values();
+
+   /**
+    * Canonical 3-digits numeric command Strings, filled lazily
+    */
+   private static final String[] NUMERICS = new String[1000];
+
    /**
     * Parse an IrcPacket object from a String.
     *
@@ -51,17 +84,129 @@ public class IrcPacket {
     * @return an IrcPacket object
     */
    public static IrcPacket parseMessage(final String stringPacket) {
-      final Matcher matcher = IRC_PACKET_REGEX.matcher(stringPacket);
-      if (!matcher.matches()) {
-         throw new IllegalArgumentException("Malformed IRC Packet: '" + stringPacket + "'. Please report this so it can get handled!");
-      } else {
-         final String prefix = matcher.group("prefix");
-         final String command = matcher.group("command");
-         final String paramsString = matcher.group("params");
-         final String trail = matcher.group("trail");
-         final String[] params = paramsString == null ? new String[0] : paramsString.replaceAll("\\s+", Codes.SP).split(Codes.SP);
-         return new IrcPacket(prefix, command, trail, params);
+      final int length = stringPacket.length();
+      int i = skipSpaces(stringPacket, 0);
+
+      // Prefix
+      String prefix = null;
+      if (i < length && stringPacket.charAt(i) == ':') {
+         final int end = indexOfSpace(stringPacket, i + 1);
+         if (end == length) {
+            throw malformed(stringPacket);
+         } else if (end > i + 1) {
+            prefix = stringPacket.substring(i + 1, end);
+         }
+         i = skipSpaces(stringPacket, end);
+      }
+
+      // Command
+      final int commandEnd = indexOfSpace(stringPacket, i);
+      if (commandEnd == i) {
+         throw malformed(stringPacket);
+      }
+      final String command = stringPacket.substring(i, commandEnd);
+      i = skipSpaces(stringPacket, commandEnd);
+
+      // Parameters & trail
+      int paramCount = 0;
+      for (int j = i; j < length && stringPacket.charAt(j) != ':'; j = skipSpaces(stringPacket, indexOfSpace(stringPacket, j))) {
+         paramCount++;
+      }
+      final String[] params = paramCount == 0 ? NO_PARAMETERS : new String[paramCount];
+      for (int p = 0; p < paramCount; p++) {
+         final int end = indexOfSpace(stringPacket, i);
+         params[p] = stringPacket.substring(i, end);
+         i = skipSpaces(stringPacket, end);
+      }
+      final String trail = i < length ? stringPacket.substring(i + 1) : null;
+
+      return new IrcPacket(prefix, command, trail, params);
+   }
+
+   private static int skipSpaces(final String stringPacket, int i) {
+      while (i < stringPacket.length() && stringPacket.charAt(i) == ' ') {
+         i++;
+      }
+      return i;
+   }
+
+   private static int indexOfSpace(final String stringPacket, final int i) {
+      final int index = stringPacket.indexOf(' ', i);
+      return index < 0 ? stringPacket.length() : index;
+   }
+
+   private static IllegalArgumentException malformed(final String stringPacket) {
+      return new IllegalArgumentException("Malformed IRC Packet: '" + stringPacket + "'. Please report this so it can get handled!");
+   }
+
+   /**
+    * Parse an IrcPacket object from a slice of a byte array containing a
+    * single UTF-8 encoded line, without its line terminator.
+    * <p>
+    * The slice is copied, so the provided array can be reused as soon as
+    * this method returns. The prefix, parameters and trail of the
+    * resulting IrcPacket are only decoded as Strings when first accessed.
+    *
+    * @param buffer the byte array
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @return an IrcPacket object
+    */
+   public static IrcPacket parseMessage(final byte[] buffer, final int offset, final int length) {
+      return new IrcPacket(Arrays.copyOfRange(buffer, offset, offset + length)).tokenize(length);
+   }
+
+   private static int skipSpaces(final byte[] raw, int i, final int length) {
+      while (i < length && raw[i] == ' ') {
+         i++;
       }
+      return i;
+   }
+
+   private static int indexOfSpace(final byte[] raw, int i, final int length) {
+      while (i < length && raw[i] != ' ') {
+         i++;
+      }
+      return i;
+   }
+
+   private static IllegalArgumentException malformed(final byte[] raw, final int length) {
+      return malformed(new String(raw, 0, length, StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Decodes a command, reusing a canonical String for known Commands and
+    * numeric replies.
+    */
+   private static String decodeCommand(final byte[] raw, final int start, final int end) {
+      final int length = end - start;
+      if (length == 3 && isDigit(raw[start]) && isDigit(raw[start + 1]) && isDigit(raw[start + 2])) {
+         final int code = (raw[start] - '0') * 100 + (raw[start + 1] - '0') * 10 + (raw[start + 2] - '0');
+         String numeric = NUMERICS[code];
+         if (numeric == null) {
+            numeric = new String(raw, start, 3, StandardCharsets.US_ASCII);
+            NUMERICS[code] = numeric;
+         }
+         return numeric;
+      }
+      commands:
+      for (final Command command : COMMANDS) {
+         final String name = command.name();
+         if (name.length() == length) {
+            for (int i = 0; i < length; i++) {
+               if (name.charAt(i) != raw[start + i]) {
+                  continue commands;
+               }
+            }
+            return name;
+         }
+      }
+      return new String(raw, start, length, StandardCharsets.UTF_8);
+   }
+
+   private static boolean isDigit(final byte b) {
+      return b >= '0' && b <= '9';
    }
 
    /**
@@ -97,10 +242,40 @@ public class IrcPacket {
       }
    }
 
-   private       String   prefix;
-   private final String   command;
-   private       String[] parameters;
-   private       String   trail;
+   private          String   prefix;
+   private          String   command;
+   private volatile String[] parameters;
+   private          String   trail;
+
+   /**
+    * Raw bytes of a received IrcPacket, null for built IrcPackets. May be
+    * longer than the line once reused by
+    * {@link #reparse(byte[], int, int)}.
+    */
+   private byte[] raw;
+
+   /**
+    * Amount of parameters of a received IrcPacket
+    */
+   private int parameterCount;
+
+   /**
+    * Cached result of {@link #getRawMessage()}, null until computed
+    */
+   private volatile String rawMessage;
+
+   /**
+    * Cached result of {@link #getRawBytes()}, null until computed
+    */
+   private volatile byte[] rawBytes;
+
+   /**
+    * Bounds of the prefix, trail and parameters in {@link #raw}, null for
+    * built IrcPackets. Starts with prefix start &amp; end, then trail start
+    * &amp; end, then start &amp; end of each parameter. Missing parts have
+    * -1 bounds. May be longer than needed once reused.
+    */
+   private int[] bounds;
 
    /**
     * Minimal constructor
@@ -112,6 +287,8 @@ public class IrcPacket {
       this.command = command;
       this.parameters = null;
       this.trail = null;
+      this.raw = null;
+      this.bounds = null;
    }
 
    /**
@@ -127,6 +304,123 @@ public class IrcPacket {
       this.command = command;
       this.parameters = parameters;
       this.trail = trail;
+      this.raw = null;
+      this.bounds = null;
+   }
+
+   /**
+    * Received IrcPacket constructor, see
+    * {@link #parseMessage(byte[], int, int)}
+    *
+    * @param raw the raw bytes of this IrcPacket
+    */
+   private IrcPacket(final byte[] raw) {
+      this.raw = raw;
+   }
+
+   /**
+    * Parses a received line into this IrcPacket, reusing its buffers.
+    * <p>
+    * You should not use this. This is called internally to recycle pooled
+    * {@link fr.ribesg.alix.api.event.ReceivedPacketEvent}s, once no one
+    * references this IrcPacket anymore. Strings previously returned by
+    * this IrcPacket are not affected.
+    *
+    * @param buffer the byte array
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @throws IllegalStateException    if this IrcPacket was not received
+    * @throws IllegalArgumentException if the line is malformed
+    */
+   public void reparse(final byte[] buffer, final int offset, final int length) {
+      if (this.raw == null) {
+         throw new IllegalStateException("Only received IrcPackets can be reparsed");
+      }
+      if (this.raw.length < length) {
+         this.raw = new byte[Math.max(length, 2 * this.raw.length)];
+      }
+      System.arraycopy(buffer, offset, this.raw, 0, length);
+      this.rawMessage = null;
+      this.rawBytes = null;
+      this.tokenize(length);
+   }
+
+   /**
+    * Finds the bounds of each part of the line in {@link #raw}.
+    *
+    * @param length the length of the line
+    *
+    * @return this IrcPacket
+    */
+   private IrcPacket tokenize(final int length) {
+      final byte[] raw = this.raw;
+      int i = skipSpaces(raw, 0, length);
+
+      // Prefix
+      int prefixStart = -1, prefixEnd = -1;
+      if (i < length && raw[i] == ':') {
+         final int end = indexOfSpace(raw, i + 1, length);
+         if (end == length) {
+            throw malformed(raw, length);
+         } else if (end > i + 1) {
+            prefixStart = i + 1;
+            prefixEnd = end;
+         }
+         i = skipSpaces(raw, end, length);
+      }
+
+      // Command
+      final int commandStart = i;
+      final int commandEnd = indexOfSpace(raw, i, length);
+      if (commandEnd == commandStart) {
+         throw malformed(raw, length);
+      }
+      i = skipSpaces(raw, commandEnd, length);
+
+      // Parameters & trail
+      int paramCount = 0;
+      for (int j = i; j < length && raw[j] != ':'; j = skipSpaces(raw, indexOfSpace(raw, j, length), length)) {
+         paramCount++;
+      }
+      int[] bounds = this.bounds;
+      if (bounds == null || bounds.length < 4 + 2 * paramCount) {
+         bounds = new int[4 + 2 * paramCount];
+      }
+      bounds[0] = prefixStart;
+      bounds[1] = prefixEnd;
+      bounds[2] = -1;
+      bounds[3] = -1;
+      for (int p = 0; p < paramCount; p++) {
+         final int end = indexOfSpace(raw, i, length);
+         bounds[4 + 2 * p] = i;
+         bounds[5 + 2 * p] = end;
+         i = skipSpaces(raw, end, length);
+      }
+      if (i < length) {
+         bounds[2] = i + 1;
+         bounds[3] = length;
+      }
+
+      this.prefix = NOT_DECODED;
+      this.command = decodeCommand(raw, commandStart, commandEnd);
+      this.parameters = NOT_DECODED_PARAMETERS;
+      this.trail = NOT_DECODED;
+      this.parameterCount = paramCount;
+      this.bounds = bounds;
+      return this;
+   }
+
+   /**
+    * Decodes a part of {@link #raw}.
+    *
+    * @param index the index of the part's start in {@link #bounds}
+    *
+    * @return the decoded String, or null if the part is missing
+    */
+   private String decode(final int index) {
+      final int start = this.bounds[index];
+      return start < 0 ? null : new String(this.raw, start, this.bounds[index + 1] - start, StandardCharsets.UTF_8);
    }
 
    // ################### //
@@ -136,29 +430,96 @@ public class IrcPacket {
    /**
     * Gets the raw IRC Packet String in the following format:
     * <p>
-    * <strong>:PREFIX COMMAND PARAM1 PARAM2 PARAM3 :TRAIL\n</strong>
+    * <strong>:PREFIX COMMAND PARAM1 PARAM2 PARAM3 :TRAIL\r\n</strong>
     * <p>
+    * The <strong>:PREFIX </strong> part is only present if this IRC Packet
+    * has a prefix.
     *
     * @return the raw IRC Packet String representing this IRC Packet
     */
    public String getRawMessage() {
-      final StringBuilder result = new StringBuilder(Codes.COLON);
-      if (this.prefix != null) {
-         result.append(this.prefix);
-      }
-      result.append(Codes.SP);
-      result.append(this.command);
-      if (getParameters() != null) {
-         for (final String param : this.parameters) {
-            result.append(Codes.SP).append(param);
+      String rawMessage = this.rawMessage;
+      if (rawMessage == null) {
+         final StringBuilder result = new StringBuilder();
+         final String prefix = this.getPrefix();
+         if (prefix != null && !prefix.isEmpty()) {
+            result.append(Codes.COLON).append(prefix).append(Codes.SP);
+         }
+         result.append(this.command);
+         final String[] parameters = this.getParameters();
+         if (parameters != null) {
+            for (final String param : parameters) {
+               result.append(Codes.SP).append(param);
+            }
          }
+         final String trail = this.getTrail();
+         if (trail != null && trail.length() > 0) {
+            result.append(Codes.SP);
+            result.append(Codes.COLON);
+            result.append(trail);
+         }
+         rawMessage = result.append(Codes.CRLF).toString();
+         this.rawMessage = rawMessage;
       }
-      if (this.trail != null && this.trail.length() > 0) {
-         result.append(Codes.SP);
-         result.append(Codes.COLON);
-         result.append(this.trail);
+      return rawMessage;
+   }
+
+   /**
+    * Gets the raw IRC Packet encoded in UTF-8, as sent on the wire. See
+    * {@link #getRawMessage()} for the format.
+    * <p>
+    * The bytes are encoded directly from the parts of this IRC Packet,
+    * without building the raw IRC Packet String, then cached: the returned
+    * array is shared and should not be modified.
+    *
+    * @return the raw IRC Packet bytes
+    */
+   public byte[] getRawBytes() {
+      byte[] rawBytes = this.rawBytes;
+      if (rawBytes == null) {
+         final String prefix = this.getPrefix();
+         final boolean hasPrefix = prefix != null && !prefix.isEmpty();
+         final String[] parameters = this.getParameters();
+         final String trail = this.getTrail();
+         final boolean hasTrail = trail != null && trail.length() > 0;
+
+         int length = Utf8.length(this.command) + 2;
+         if (hasPrefix) {
+            length += 1 + Utf8.length(prefix) + 1;
+         }
+         if (parameters != null) {
+            for (final String param : parameters) {
+               length += 1 + Utf8.length(param);
+            }
+         }
+         if (hasTrail) {
+            length += 2 + Utf8.length(trail);
+         }
+
+         rawBytes = new byte[length];
+         int pos = 0;
+         if (hasPrefix) {
+            rawBytes[pos++] = ':';
+            pos = Utf8.encode(prefix, rawBytes, pos);
+            rawBytes[pos++] = ' ';
+         }
+         pos = Utf8.encode(this.command, rawBytes, pos);
+         if (parameters != null) {
+            for (final String param : parameters) {
+               rawBytes[pos++] = ' ';
+               pos = Utf8.encode(param, rawBytes, pos);
+            }
+         }
+         if (hasTrail) {
+            rawBytes[pos++] = ' ';
+            rawBytes[pos++] = ':';
+            pos = Utf8.encode(trail, rawBytes, pos);
+         }
+         rawBytes[pos++] = '\r';
+         rawBytes[pos] = '\n';
+         this.rawBytes = rawBytes;
       }
-      return result.append(Codes.CRLF).toString();
+      return rawBytes;
    }
 
    /**
@@ -168,7 +529,12 @@ public class IrcPacket {
     * @return the prefix of this IRC Packet or null if not present
     */
    public String getPrefix() {
-      return this.prefix;
+      String prefix = this.prefix;
+      if (prefix == NOT_DECODED) {
+         prefix = this.decode(0);
+         this.prefix = prefix;
+      }
+      return prefix;
    }
 
    /**
@@ -189,7 +555,16 @@ public class IrcPacket {
     * @return the parameters of this IrcPacket
     */
    public String[] getParameters() {
-      return this.parameters;
+      String[] parameters = this.parameters;
+      if (parameters == NOT_DECODED_PARAMETERS) {
+         final int paramCount = this.parameterCount;
+         parameters = paramCount == 0 ? NO_PARAMETERS : new String[paramCount];
+         for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = this.decode(4 + 2 * i);
+         }
+         this.parameters = parameters;
+      }
+      return parameters;
    }
 
    /**
@@ -200,7 +575,12 @@ public class IrcPacket {
     * @return the trail of this IRC Packet
     */
    public String getTrail() {
-      return this.trail;
+      String trail = this.trail;
+      if (trail == NOT_DECODED) {
+         trail = this.decode(2);
+         this.trail = trail;
+      }
+      return trail;
    }
 
    // ################################### //
@@ -209,6 +589,10 @@ public class IrcPacket {
 
    /**
     * Parse the prefix of this IRC Packet as a Source.
+    * <p>
+    * The prefix is only parsed if it is not in the provided Server's
+    * {@link fr.ribesg.alix.api.SourceCache}, so the returned Source may be
+    * shared.
     *
     * @param server the Server linked to this IRC Packet, required to build
     *               the Source object
@@ -221,10 +605,13 @@ public class IrcPacket {
     * @see #parsePrefix(fr.ribesg.alix.api.Server, String)
     */
    public Source getPrefixAsSource(final Server server) {
-      try {
-         return parsePrefix(server, this.prefix);
-      } catch (final NullPointerException e) {
-         throw new IllegalStateException("This IRC Packet's prefix is null. Please check before calling this.", e);
+      final String prefix = this.getPrefix();
+      if (prefix == null) {
+         throw new IllegalStateException("This IRC Packet's prefix is null. Please check before calling this.");
+      } else if (server == null) {
+         return parsePrefix(null, prefix);
+      } else {
+         return server.getSourceCache().get(prefix);
       }
    }
 
@@ -313,13 +700,15 @@ public class IrcPacket {
       if (!command.equals(ircPacket.command)) {
          return false;
       }
-      if (!Arrays.equals(parameters, ircPacket.parameters)) {
+      if (!Arrays.equals(getParameters(), ircPacket.getParameters())) {
          return false;
       }
-      if (prefix != null ? !prefix.equals(ircPacket.prefix) : ircPacket.prefix != null) {
+      final String prefix = getPrefix();
+      if (prefix != null ? !prefix.equals(ircPacket.getPrefix()) : ircPacket.getPrefix() != null) {
          return false;
       }
-      if (trail != null ? !trail.equals(ircPacket.trail) : ircPacket.trail != null) {
+      final String trail = getTrail();
+      if (trail != null ? !trail.equals(ircPacket.getTrail()) : ircPacket.getTrail() != null) {
          return false;
       }
 
@@ -328,6 +717,9 @@ public class IrcPacket {
 
    @Override
    public int hashCode() {
+      final String prefix = getPrefix();
+      final String[] parameters = getParameters();
+      final String trail = getTrail();
       int result = prefix != null ? prefix.hashCode() : 0;
       result = 31 * result + command.hashCode();
       result = 31 * result + (parameters != null ? Arrays.hashCode(parameters) : 0);
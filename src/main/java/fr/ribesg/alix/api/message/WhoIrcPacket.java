@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.message;
+import fr.ribesg.alix.api.enums.Command;
+
+/**
+ * This class allow easy build of a WHO IRC Packet.
+ */
+public class WhoIrcPacket extends IrcPacket {
+
+   private final String mask;
+
+   public WhoIrcPacket(final String mask) {
+      super(null, Command.WHO.name(), null, mask);
+      this.mask = mask;
+   }
+
+   /**
+    * @return this Who packet mask
+    */
+   public String getMask() {
+      return this.mask;
+   }
+}
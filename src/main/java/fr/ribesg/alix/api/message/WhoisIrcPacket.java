@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.message;
+import fr.ribesg.alix.api.enums.Command;
+
+/**
+ * This class allow easy build of a WHOIS IRC Packet.
+ */
+public class WhoisIrcPacket extends IrcPacket {
+
+   private final String nick;
+
+   public WhoisIrcPacket(final String nick) {
+      super(null, Command.WHOIS.name(), null, nick);
+      this.nick = nick;
+   }
+
+   /**
+    * @return this Whois packet nick
+    */
+   public String getNick() {
+      return this.nick;
+   }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, in nanoseconds.
+ * <p>
+ * Values are stored in logarithmic buckets, each power of 2 being split
+ * in 8 sub-buckets, so percentiles are precise to about 12.5%.
+ *
+ * @author Ribesg
+ */
+public class LatencyRecorder {
+
+   /**
+    * Sub-buckets per power of 2, as a power of 2
+    */
+   private static final int SUB_BITS = 3;
+
+   /**
+    * Sub-buckets per power of 2
+    */
+   private static final int SUB_COUNT = 1 << SUB_BITS;
+
+   /**
+    * Total amount of buckets, enough for any positive long
+    */
+   private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+   private final AtomicLongArray buckets;
+   private final LongAdder       count;
+   private final LongAdder       sum;
+   private final AtomicLong      max;
+
+   /**
+    * Builds an empty LatencyRecorder.
+    */
+   public LatencyRecorder() {
+      this.buckets = new AtomicLongArray(BUCKET_COUNT);
+      this.count = new LongAdder();
+      this.sum = new LongAdder();
+      this.max = new AtomicLong();
+   }
+
+   /**
+    * Records a duration.
+    *
+    * @param nanos the duration, in nanoseconds. Negative values are
+    *              recorded as 0
+    */
+   public void record(final long nanos) {
+      final long value = Math.max(0, nanos);
+      this.buckets.incrementAndGet(getBucket(value));
+      this.count.increment();
+      this.sum.add(value);
+      long currentMax;
+      while (value > (currentMax = this.max.get()) && !this.max.compareAndSet(currentMax, value)) {
+         // Retry
+      }
+   }
+
+   /**
+    * @return the amount of recorded durations
+    */
+   public long getCount() {
+      return this.count.sum();
+   }
+
+   /**
+    * @return the highest recorded duration, in nanoseconds
+    */
+   public long getMax() {
+      return this.max.get();
+   }
+
+   /**
+    * @return the mean of recorded durations, in nanoseconds, or 0 if
+    * nothing was recorded
+    */
+   public double getMean() {
+      final long count = this.count.sum();
+      return count == 0 ? 0 : (double) this.sum.sum() / count;
+   }
+
+   /**
+    * Gets an approximation of the provided percentile of recorded
+    * durations.
+    *
+    * @param percentile the percentile, between 0 and 100, for example 99
+    *                   for the p99
+    *
+    * @return the percentile, in nanoseconds, or 0 if nothing was recorded
+    */
+   public long getPercentile(final double percentile) {
+      final long count = this.count.sum();
+      if (count == 0) {
+         return 0;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         seen += this.buckets.get(i);
+         if (seen >= rank) {
+            return Math.min(getBucketUpperBound(i), this.max.get());
+         }
+      }
+      return this.max.get();
+   }
+
+   /**
+    * Forgets every recorded duration.
+    */
+   public void reset() {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         this.buckets.set(i, 0);
+      }
+      this.count.reset();
+      this.sum.reset();
+      this.max.set(0);
+   }
+
+   @Override
+   public String toString() {
+      return "count=" + this.getCount() +
+             " mean=" + (long) this.getMean() +
+             "ns p50=" + this.getPercentile(50) +
+             "ns p99=" + this.getPercentile(99) +
+             "ns max=" + this.getMax() + "ns";
+   }
+
+   private static int getBucket(final long value) {
+      if (value < SUB_COUNT) {
+         return (int) value;
+      } else {
+         final int msb = 63 - Long.numberOfLeadingZeros(value);
+         final int sub = (int) (value >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+         return (msb - SUB_BITS + 1) * SUB_COUNT + sub;
+      }
+   }
+
+   private static long getBucketUpperBound(final int bucket) {
+      if (bucket < SUB_COUNT) {
+         return bucket;
+      } else {
+         final int shift = bucket / SUB_COUNT - 1;
+         final long sub = bucket % SUB_COUNT;
+         return ((SUB_COUNT + sub + 1) << shift) - 1;
+      }
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the round-trip time to a Server from PING/PONG pairs, the
+ * way TCP does (RFC 6298): a smoothed round-trip time and its variation,
+ * the jitter, from which a timeout is derived.
+ * <p>
+ * This is not only the network round-trip time: IRC Servers handle the
+ * commands of a Client in order, and delay them when the Client sent too
+ * much (fake lag), so a PONG may come tens of seconds late. Hence the
+ * high {@link #MIN_TIMEOUT}.
+ *
+ * @author Ribesg
+ */
+public class RoundTripEstimator {
+
+   /**
+    * Timeout used before any round-trip time was measured, in nanoseconds
+    */
+   public static final long INITIAL_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+   /**
+    * Minimum timeout, in nanoseconds, so that a Server delaying the
+    * Client's commands after a burst is not considered lost
+    */
+   public static final long MIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+   /**
+    * Maximum timeout, in nanoseconds
+    */
+   public static final long MAX_TIMEOUT = TimeUnit.SECONDS.toNanos(120);
+
+   private long count;
+   private long last;
+   private long smoothed;
+   private long variation;
+
+   /**
+    * Records a round-trip time.
+    *
+    * @param nanos the round-trip time, in nanoseconds. Negative values are
+    *              recorded as 0
+    */
+   public synchronized void record(final long nanos) {
+      final long value = Math.max(0, nanos);
+      if (this.count == 0) {
+         this.smoothed = value;
+         this.variation = value / 2;
+      } else {
+         this.variation = (3 * this.variation + Math.abs(this.smoothed - value)) / 4;
+         this.smoothed = (7 * this.smoothed + value) / 8;
+      }
+      this.last = value;
+      this.count++;
+   }
+
+   /**
+    * @return the amount of recorded round-trip times
+    */
+   public synchronized long getCount() {
+      return this.count;
+   }
+
+   /**
+    * @return the last recorded round-trip time, in nanoseconds, or 0 if
+    * nothing was recorded
+    */
+   public synchronized long getLast() {
+      return this.last;
+   }
+
+   /**
+    * @return the smoothed round-trip time, in nanoseconds, or 0 if nothing
+    * was recorded
+    */
+   public synchronized long getSmoothed() {
+      return this.smoothed;
+   }
+
+   /**
+    * @return the variation of the round-trip time, in nanoseconds, or 0 if
+    * nothing was recorded
+    */
+   public synchronized long getVariation() {
+      return this.variation;
+   }
+
+   /**
+    * Gets the time after which a PING without PONG means that the
+    * connection is lost: the smoothed round-trip time plus 4 times its
+    * variation, between {@link #MIN_TIMEOUT} and {@link #MAX_TIMEOUT}.
+    *
+    * @return the timeout, in nanoseconds
+    */
+   public synchronized long getTimeout() {
+      if (this.count == 0) {
+         return INITIAL_TIMEOUT;
+      }
+      return Math.min(MAX_TIMEOUT, Math.max(MIN_TIMEOUT, this.smoothed + 4 * this.variation));
+   }
+
+   /**
+    * Forgets every recorded round-trip time.
+    */
+   public synchronized void reset() {
+      this.count = 0;
+      this.last = 0;
+      this.smoothed = 0;
+      this.variation = 0;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "count=" + this.count +
+             " last=" + this.last +
+             "ns smoothed=" + this.smoothed +
+             "ns variation=" + this.variation +
+             "ns timeout=" + this.getTimeout() + "ns";
+   }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the metrics related to the connection to a Server.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Server#getMetrics()
+ */
+public class ServerMetrics {
+
+   /**
+    * Time between the reception of a line's bytes from the network and its
+    * queuing in the {@link fr.ribesg.alix.internal.ReceivedPacketHandler}
+    */
+   private final LatencyRecorder receiveLatency;
+
+   /**
+    * Round-trip time to the Server, measured with PINGs
+    */
+   private final RoundTripEstimator roundTrip;
+
+   /**
+    * Amount of times the connection was lost
+    */
+   private final AtomicInteger lostConnections;
+
+   /**
+    * Amount of received packets dropped because handlers were too slow
+    */
+   private final LongAdder droppedPackets;
+
+   /**
+    * Amount of received packets written to disk because handlers were too
+    * slow
+    */
+   private final LongAdder spilledPackets;
+
+   /**
+    * Amount of times reading from the Server was paused because handlers
+    * were too slow
+    */
+   private final LongAdder readerStalls;
+
+   /**
+    * Date of the last reception of bytes from the Server, from
+    * {@link System#nanoTime()}
+    */
+   private volatile long lastReceivedDate;
+
+   /**
+    * Date of the last write of a PING to the Server, from
+    * {@link System#nanoTime()}
+    */
+   private volatile long lastPingSentDate;
+
+   /**
+    * Builds an empty ServerMetrics.
+    */
+   public ServerMetrics() {
+      this.receiveLatency = new LatencyRecorder();
+      this.roundTrip = new RoundTripEstimator();
+      this.lostConnections = new AtomicInteger();
+      this.droppedPackets = new LongAdder();
+      this.spilledPackets = new LongAdder();
+      this.readerStalls = new LongAdder();
+      this.lastReceivedDate = System.nanoTime();
+      this.lastPingSentDate = this.lastReceivedDate;
+   }
+
+   /**
+    * Gets the time between the reception of a line's bytes from the
+    * network and its queuing in the
+    * {@link fr.ribesg.alix.internal.ReceivedPacketHandler}, parsing
+    * included.
+    *
+    * @return the receive latency histogram
+    */
+   public LatencyRecorder getReceiveLatency() {
+      return this.receiveLatency;
+   }
+
+   /**
+    * Gets the round-trip time to the Server, measured by the keepalive
+    * PINGs sent when the connection is idle.
+    *
+    * @return the round-trip time estimator
+    */
+   public RoundTripEstimator getRoundTrip() {
+      return this.roundTrip;
+   }
+
+   /**
+    * @return the date of the last reception of bytes from the Server, from
+    * {@link System#nanoTime()}
+    */
+   public long getLastReceivedDate() {
+      return this.lastReceivedDate;
+   }
+
+   /**
+    * You should not use this. This is called internally when bytes are
+    * received from the Server.
+    *
+    * @param lastReceivedDate the date of the reception, from
+    *                         {@link System#nanoTime()}
+    */
+   public void setLastReceivedDate(final long lastReceivedDate) {
+      this.lastReceivedDate = lastReceivedDate;
+   }
+
+   /**
+    * @return the date of the last write of a PING to the Server, from
+    * {@link System#nanoTime()}
+    */
+   public long getLastPingSentDate() {
+      return this.lastPingSentDate;
+   }
+
+   /**
+    * You should not use this. This is called internally when a PING is
+    * written to the Server, after any wait imposed by the FloodControl.
+    *
+    * @param lastPingSentDate the date of the write, from
+    *                         {@link System#nanoTime()}
+    */
+   public void setLastPingSentDate(final long lastPingSentDate) {
+      this.lastPingSentDate = lastPingSentDate;
+   }
+
+   /**
+    * Gets the amount of times the connection to the Server was lost, not
+    * counting disconnections asked by the Client.
+    *
+    * @return the amount of lost connections
+    */
+   public int getLostConnections() {
+      return this.lostConnections.get();
+   }
+
+   /**
+    * You should not use this. This is called internally when the
+    * connection to the Server is lost.
+    */
+   public void incrementLostConnections() {
+      this.lostConnections.incrementAndGet();
+   }
+
+   /**
+    * Gets the amount of received packets dropped because the queue of
+    * received packets was full, see
+    * {@link fr.ribesg.alix.api.network.OverflowPolicy#DROP}.
+    *
+    * @return the amount of dropped packets
+    */
+   public long getDroppedPackets() {
+      return this.droppedPackets.sum();
+   }
+
+   /**
+    * You should not use this. This is called internally when a received
+    * packet is dropped.
+    */
+   public void incrementDroppedPackets() {
+      this.droppedPackets.increment();
+   }
+
+   /**
+    * Gets the amount of received packets written to disk because the
+    * queue of received packets was full, see
+    * {@link fr.ribesg.alix.api.network.OverflowPolicy#SPILL}.
+    *
+    * @return the amount of spilled packets
+    */
+   public long getSpilledPackets() {
+      return this.spilledPackets.sum();
+   }
+
+   /**
+    * You should not use this. This is called internally when a received
+    * packet is written to disk.
+    */
+   public void incrementSpilledPackets() {
+      this.spilledPackets.increment();
+   }
+
+   /**
+    * Gets the amount of times reading from the Server was paused because
+    * the queue of received packets was full, see
+    * {@link fr.ribesg.alix.api.network.OverflowPolicy#BLOCK}.
+    *
+    * @return the amount of reader stalls
+    */
+   public long getReaderStalls() {
+      return this.readerStalls.sum();
+   }
+
+   /**
+    * You should not use this. This is called internally when reading from
+    * the Server is paused.
+    */
+   public void incrementReaderStalls() {
+      this.readerStalls.increment();
+   }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how fast lines can be sent to a Server without being kicked
+ * for flooding.
+ * <p>
+ * Sending a line costs {@link #getLineDelay()} milliseconds, plus the same
+ * amount for every {@link #getBytesPerLine()} bytes of the line. Those
+ * costs are paid from a budget regained over time, which can hold up to
+ * {@link #getBurst()} line delays: after some idle time, that many short
+ * lines are sent at once.
+ * <p>
+ * FloodControls are immutable.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Server#setFloodControl(FloodControl)
+ */
+public final class FloodControl {
+
+   /**
+    * Bursts of 5 lines, then about one line per second, or a bit more for
+    * long lines
+    */
+   public static final FloodControl DEFAULT = new FloodControl(5, 1_000, 1_024);
+
+   /**
+    * No flood control at all, for Servers which do not limit the Client
+    */
+   public static final FloodControl NONE = new FloodControl(1, 0, 0);
+
+   private final int  burst;
+   private final long lineDelay;
+   private final int  bytesPerLine;
+
+   /**
+    * Builds a FloodControl.
+    *
+    * @param burst        the amount of line delays which can be saved, at
+    *                     least 1
+    * @param lineDelay    the cost of a line, in milliseconds
+    * @param bytesPerLine the amount of bytes costing an additional line
+    *                     delay, or 0 for costs not depending on the line
+    *                     length
+    */
+   public FloodControl(final int burst, final long lineDelay, final int bytesPerLine) {
+      if (burst < 1) {
+         throw new IllegalArgumentException("Invalid burst: " + burst);
+      } else if (lineDelay < 0) {
+         throw new IllegalArgumentException("Invalid line delay: " + lineDelay);
+      } else if (bytesPerLine < 0) {
+         throw new IllegalArgumentException("Invalid bytes per line: " + bytesPerLine);
+      }
+      this.burst = burst;
+      this.lineDelay = lineDelay;
+      this.bytesPerLine = bytesPerLine;
+   }
+
+   /**
+    * @return the amount of line delays which can be saved
+    */
+   public int getBurst() {
+      return this.burst;
+   }
+
+   /**
+    * @return the cost of a line, in milliseconds
+    */
+   public long getLineDelay() {
+      return this.lineDelay;
+   }
+
+   /**
+    * @return the amount of bytes costing an additional line delay, or 0
+    */
+   public int getBytesPerLine() {
+      return this.bytesPerLine;
+   }
+
+   /**
+    * @return true if this FloodControl never delays anything
+    */
+   public boolean isDisabled() {
+      return this.lineDelay == 0;
+   }
+
+   /**
+    * Gets the cost of a line.
+    *
+    * @param length the length of the line in bytes, CRLF included
+    *
+    * @return the cost of the line, in nanoseconds
+    */
+   public long getCost(final int length) {
+      final long lineCost = TimeUnit.MILLISECONDS.toNanos(this.lineDelay);
+      if (this.bytesPerLine == 0) {
+         return lineCost;
+      } else {
+         return lineCost + lineCost * length / this.bytesPerLine;
+      }
+   }
+
+   /**
+    * @return the maximum budget which can be saved, in nanoseconds
+    */
+   public long getCapacity() {
+      return TimeUnit.MILLISECONDS.toNanos(this.lineDelay) * this.burst;
+   }
+
+   @Override
+   public boolean equals(final Object o) {
+      if (this == o) {
+         return true;
+      } else if (o == null || this.getClass() != o.getClass()) {
+         return false;
+      }
+      final FloodControl that = (FloodControl) o;
+      return this.burst == that.burst && this.lineDelay == that.lineDelay && this.bytesPerLine == that.bytesPerLine;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = this.burst;
+      result = 31 * result + (int) (this.lineDelay ^ this.lineDelay >>> 32);
+      result = 31 * result + this.bytesPerLine;
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "FloodControl{burst=" + this.burst + ", lineDelay=" + this.lineDelay + ", bytesPerLine=" + this.bytesPerLine + '}';
+   }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.network;
+
+/**
+ * Represents what happens to packets received from a Server while its
+ * queue of received packets is full, because handlers are slower than
+ * the Server.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Server#setOverflowPolicy(OverflowPolicy)
+ */
+public enum OverflowPolicy {
+   /**
+    * Stop reading from the Server until handlers catch up, so that TCP
+    * slows the Server down. Nothing is lost, but the Server may
+    * disconnect the Client if it stays blocked for too long.
+    * <p>
+    * This is the default.
+    */
+   BLOCK,
+
+   /**
+    * Drop received PRIVMSG and NOTICE packets, and JOIN, PART and QUIT
+    * packets of other users. Other packets, needed to keep track of the
+    * connection state and to answer requests, are handled like with
+    * {@link #BLOCK}.
+    */
+   DROP,
+
+   /**
+    * Write received packets to a temporary file until handlers catch up.
+    * Nothing is lost and reading never stops, at the cost of disk space.
+    */
+   SPILL
+}
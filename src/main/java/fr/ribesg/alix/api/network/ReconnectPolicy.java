@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.network;
+
+import java.util.Random;
+
+/**
+ * Describes how the Client reconnects to a Server after failing to
+ * connect or losing the connection.
+ * <p>
+ * The delay before an attempt doubles after each consecutive failure,
+ * from {@link #getInitialDelay()} up to {@link #getMaxDelay()}. Only the
+ * first half of this delay is fixed, the other half is random, so that
+ * Clients losing the same Server do not reconnect all at once.
+ * <p>
+ * After {@link #getFailureThreshold()} consecutive failures, the circuit
+ * breaker opens: the Client waits {@link #getOpenDuration()} before
+ * trying again, once, and keeps waiting that long between attempts until
+ * the Server welcomes it again.
+ * <p>
+ * ReconnectPolicies are immutable.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Server#setReconnectPolicy(ReconnectPolicy)
+ */
+public final class ReconnectPolicy {
+
+   /**
+    * First retry after 1 to 2 seconds, then up to 5 minutes between
+    * retries, and 15 minutes after 10 consecutive failures
+    */
+   public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(2_000, 5 * 60_000, 10, 15 * 60_000);
+
+   /**
+    * Never reconnect
+    */
+   public static final ReconnectPolicy NONE = new ReconnectPolicy();
+
+   private final long    initialDelay;
+   private final long    maxDelay;
+   private final int     failureThreshold;
+   private final long    openDuration;
+   private final boolean disabled;
+
+   /**
+    * Builds a ReconnectPolicy.
+    *
+    * @param initialDelay     the delay before the first attempt, in
+    *                         milliseconds
+    * @param maxDelay         the maximum delay before an attempt while
+    *                         the circuit breaker is closed, in
+    *                         milliseconds
+    * @param failureThreshold the amount of consecutive failures opening
+    *                         the circuit breaker, at least 1
+    * @param openDuration     the delay before an attempt while the circuit
+    *                         breaker is open, in milliseconds
+    */
+   public ReconnectPolicy(final long initialDelay, final long maxDelay, final int failureThreshold, final long openDuration) {
+      if (initialDelay < 0) {
+         throw new IllegalArgumentException("Invalid initial delay: " + initialDelay);
+      } else if (maxDelay < initialDelay) {
+         throw new IllegalArgumentException("Invalid max delay: " + maxDelay);
+      } else if (failureThreshold < 1) {
+         throw new IllegalArgumentException("Invalid failure threshold: " + failureThreshold);
+      } else if (openDuration < 0) {
+         throw new IllegalArgumentException("Invalid open duration: " + openDuration);
+      }
+      this.initialDelay = initialDelay;
+      this.maxDelay = maxDelay;
+      this.failureThreshold = failureThreshold;
+      this.openDuration = openDuration;
+      this.disabled = false;
+   }
+
+   private ReconnectPolicy() {
+      this.initialDelay = 0;
+      this.maxDelay = 0;
+      this.failureThreshold = 1;
+      this.openDuration = 0;
+      this.disabled = true;
+   }
+
+   /**
+    * @return the delay before the first attempt, in milliseconds
+    */
+   public long getInitialDelay() {
+      return this.initialDelay;
+   }
+
+   /**
+    * @return the maximum delay before an attempt while the circuit breaker
+    * is closed, in milliseconds
+    */
+   public long getMaxDelay() {
+      return this.maxDelay;
+   }
+
+   /**
+    * @return the amount of consecutive failures opening the circuit
+    * breaker
+    */
+   public int getFailureThreshold() {
+      return this.failureThreshold;
+   }
+
+   /**
+    * @return the delay before an attempt while the circuit breaker is open,
+    * in milliseconds
+    */
+   public long getOpenDuration() {
+      return this.openDuration;
+   }
+
+   /**
+    * @return true if the Client never reconnects
+    */
+   public boolean isDisabled() {
+      return this.disabled;
+   }
+
+   /**
+    * @param failures the amount of consecutive failures
+    *
+    * @return true if the circuit breaker is open after that many failures
+    */
+   public boolean isOpen(final int failures) {
+      return failures >= this.failureThreshold;
+   }
+
+   /**
+    * Gets the delay before an attempt.
+    *
+    * @param failures the amount of consecutive failures, at least 1
+    * @param random   the source of the random part of the delay
+    *
+    * @return the delay before the next attempt, in milliseconds
+    */
+   public long getDelay(final int failures, final Random random) {
+      if (this.isOpen(failures)) {
+         return this.openDuration;
+      }
+      long delay = this.initialDelay;
+      for (int i = 1; i < failures && delay < this.maxDelay; i++) {
+         delay = delay > this.maxDelay / 2 ? this.maxDelay : delay << 1;
+      }
+      final long half = delay / 2;
+      return half + (long) (random.nextDouble() * (delay - half));
+   }
+
+   @Override
+   public boolean equals(final Object o) {
+      if (this == o) {
+         return true;
+      } else if (o == null || this.getClass() != o.getClass()) {
+         return false;
+      }
+      final ReconnectPolicy that = (ReconnectPolicy) o;
+      return this.initialDelay == that.initialDelay &&
+             this.maxDelay == that.maxDelay &&
+             this.failureThreshold == that.failureThreshold &&
+             this.openDuration == that.openDuration &&
+             this.disabled == that.disabled;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = (int) (this.initialDelay ^ this.initialDelay >>> 32);
+      result = 31 * result + (int) (this.maxDelay ^ this.maxDelay >>> 32);
+      result = 31 * result + this.failureThreshold;
+      result = 31 * result + (int) (this.openDuration ^ this.openDuration >>> 32);
+      result = 31 * result + (this.disabled ? 1 : 0);
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      if (this.disabled) {
+         return "ReconnectPolicy{disabled}";
+      }
+      return "ReconnectPolicy{initialDelay=" + this.initialDelay + ", maxDelay=" + this.maxDelay +
+             ", failureThreshold=" + this.failureThreshold + ", openDuration=" + this.openDuration + '}';
+   }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.network;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+
+/**
+ * Represents the order in which queued IRC Packets are sent to a Server.
+ * <p>
+ * A packet is only sent when no packet of a higher priority is waiting.
+ * Packets of a same priority are sent in the order they were queued, one
+ * target (Channel or user) after the other.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Server#send(IrcPacket, SendPriority)
+ */
+public enum SendPriority {
+   /**
+    * Connection control: registration, PING, PONG, NICK.
+    * <p>
+    * Packets sent with the <code>prioritized</code> flag also get this
+    * priority.
+    */
+   CONTROL,
+
+   /**
+    * Everything else, like replies to commands.
+    * <p>
+    * This is the default.
+    */
+   INTERACTIVE,
+
+   /**
+    * Large outputs which can wait, like long listings or relayed logs.
+    */
+   BULK;
+
+   /**
+    * Gets the default SendPriority of an IRC Packet.
+    *
+    * @param ircPacket the IRC Packet
+    *
+    * @return {@link #CONTROL} for connection control packets,
+    * {@link #INTERACTIVE} otherwise
+    */
+   public static SendPriority of(final IrcPacket ircPacket) {
+      switch (ircPacket.getRawCommandString().toUpperCase()) {
+         case "CAP":
+         case "PASS":
+         case "NICK":
+         case "USER":
+         case "PING":
+         case "PONG":
+            return CONTROL;
+         default:
+            return INTERACTIVE;
+      }
+   }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.network;
+
+/**
+ * Represents the way the network link to a Server is handled.
+ *
+ * @author Ribesg
+ */
+public enum TransportType {
+   /**
+    * Blocking Socket, with dedicated sending, receiving and handling
+    * Threads for each Server.
+    * <p>
+    * This is the default.
+    */
+   THREADED,
+
+   /**
+    * Non-blocking SocketChannel, multiplexed with every other Server using
+    * this TransportType on a small set of shared Selector Threads.
+    * <p>
+    * The amount of shared Selector Threads can be set with the
+    * <code>alix.selectorThreads</code> system property, it defaults to 1.
+    */
+   SELECTOR
+}
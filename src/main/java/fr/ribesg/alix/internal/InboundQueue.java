@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal;
+
+import fr.ribesg.alix.api.Log;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.metrics.ServerMetrics;
+import fr.ribesg.alix.api.network.OverflowPolicy;
+import fr.ribesg.alix.internal.thread.RingBuffer;
+import org.apache.log4j.Level;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The bounded queue of packets received from a Server, between a single
+ * producer, the Thread reading from the network, and the
+ * {@link ReceivedPacketHandler} Thread.
+ * <p>
+ * Received lines are parsed by the producer and queued in a
+ * {@link RingBuffer} of {@link Server#getInboundCapacity()} packets. When
+ * it is full, the {@link Server#getOverflowPolicy()} applies: the
+ * producer waits, parked, until the queue is half empty, or low-value
+ * packets are dropped, or lines are written to a {@link SpillFile} until
+ * the handler catches up.
+ * <p>
+ * If {@link Server#isPacketPooling()}, packets are taken from a
+ * {@link PacketPool}, and given back once released.
+ *
+ * @author Ribesg
+ */
+public final class InboundQueue {
+
+   private final Server                          server;
+   private final ServerMetrics                   metrics;
+   private final OverflowPolicy                  policy;
+   private final RingBuffer<ReceivedPacketEvent> ring;
+   private final ReceivedPacketHandler           handler;
+
+   /**
+    * Recycled packets, null if {@link Server#isPacketPooling()} was false
+    */
+   private final PacketPool pool;
+
+   /**
+    * Lines received while the ring was full, only used with
+    * {@link OverflowPolicy#SPILL}
+    */
+   private final SpillFile spill;
+
+   /**
+    * The producer, while it waits for the queue to be half empty
+    */
+   private volatile Thread blockedProducer;
+
+   /**
+    * Ran once the queue is half empty, see {@link #onSpace(Runnable)}
+    */
+   private final AtomicReference<Runnable> spaceListener;
+
+   /**
+    * If the producer is done, see {@link #close()}
+    */
+   private volatile boolean closed;
+
+   /* package */ InboundQueue(final Server server, final ReceivedPacketHandler handler) {
+      this.server = server;
+      this.metrics = server.getMetrics();
+      this.policy = server.getOverflowPolicy();
+      this.ring = new RingBuffer<>(server.getInboundCapacity());
+      this.handler = handler;
+      this.pool = server.isPacketPooling() ? new PacketPool(server, this.ring.capacity() + 64) : null;
+      this.spill = this.policy == OverflowPolicy.SPILL ? new SpillFile() : null;
+      this.spaceListener = new AtomicReference<>();
+   }
+
+   /**
+    * Parses and queues a received line, waiting for the queue to be half
+    * empty if needed. The line is copied, so the array can be reused once
+    * this method returns.
+    *
+    * @param buffer the byte array containing the line
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @throws InterruptedException if the producer is interrupted while
+    *                              waiting, the line is then lost
+    */
+   public void put(final byte[] buffer, final int offset, final int length) throws InterruptedException {
+      final ReceivedPacketEvent event = this.parse(buffer, offset, length);
+      if (event == null || this.tryQueue(event, buffer, offset, length)) {
+         return;
+      }
+      this.metrics.incrementReaderStalls();
+      this.blockedProducer = Thread.currentThread();
+      try {
+         while (!this.tryQueue(event, buffer, offset, length)) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+               throw new InterruptedException();
+            }
+         }
+      } finally {
+         this.blockedProducer = null;
+      }
+   }
+
+   /**
+    * Parses and queues a received line, without waiting. The line is
+    * copied, so the array can be reused once this method returns.
+    *
+    * @param buffer the byte array containing the line
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @return true if the line was handled, false if the queue is full and
+    * the line should be offered again later, see {@link #onSpace(Runnable)}
+    */
+   public boolean offer(final byte[] buffer, final int offset, final int length) {
+      final ReceivedPacketEvent event = this.parse(buffer, offset, length);
+      if (event == null || this.tryQueue(event, buffer, offset, length)) {
+         return true;
+      }
+      this.metrics.incrementReaderStalls();
+      return false;
+   }
+
+   /**
+    * Runs a task once the queue is half empty, maybe right away. The task
+    * is ran by the consumer, so it should not block.
+    *
+    * @param listener the task
+    */
+   public void onSpace(final Runnable listener) {
+      this.spaceListener.set(listener);
+      if (this.hasSpace()) {
+         this.notifySpace();
+      }
+   }
+
+   /**
+    * @return the amount of packets waiting to be handled
+    */
+   public int size() {
+      return this.ring.size() + (this.spill == null ? 0 : this.spill.size());
+   }
+
+   /**
+    * Tells the consumer that nothing will be queued anymore. Packets
+    * already queued are still handled.
+    */
+   public void close() {
+      this.closed = true;
+      this.handler.signal();
+   }
+
+   /**
+    * @return true if this queue is closed and empty
+    */
+   /* package */ boolean isDone() {
+      return this.closed && this.isEmpty();
+   }
+
+   /* package */ boolean isEmpty() {
+      return this.ring.isEmpty() && (this.spill == null || this.spill.size() == 0);
+   }
+
+   /**
+    * Removes the oldest packet. Should only be called by the consumer.
+    *
+    * @return the oldest packet, or null if this queue is empty
+    */
+   /* package */ ReceivedPacketEvent poll() {
+      ReceivedPacketEvent event = this.ring.poll();
+      if (event == null && this.spill != null) {
+         event = this.pollSpill();
+      }
+      if (event != null && this.hasSpace()) {
+         final Thread producer = this.blockedProducer;
+         if (producer != null) {
+            LockSupport.unpark(producer);
+         }
+         if (this.spaceListener.get() != null) {
+            this.notifySpace();
+         }
+      }
+      return event;
+   }
+
+   /**
+    * Deletes the spill file, if any. Should only be called by the
+    * consumer.
+    */
+   /* package */ void release() {
+      if (this.spill != null) {
+         this.spill.delete();
+      }
+   }
+
+   /**
+    * Queues a packet following the overflow policy.
+    *
+    * @return false if the packet should be queued again later
+    */
+   private boolean tryQueue(final ReceivedPacketEvent event, final byte[] buffer, final int offset, final int length) {
+      switch (this.policy) {
+         case SPILL:
+            // Once spilling, everything goes to the spill file until it is read
+            if (this.spill.size() == 0 && this.ring.offer(event)) {
+               break;
+            }
+            try {
+               this.spill.write(buffer, offset, length);
+               this.metrics.incrementSpilledPackets();
+               event.release();
+            } catch (final IOException e) {
+               Log.error("Failed to spill received packet, dropping it", e);
+               this.metrics.incrementDroppedPackets();
+               event.release();
+            }
+            break;
+         case DROP:
+            if (!this.ring.offer(event)) {
+               if (!this.isLowValue(event.getPacket())) {
+                  return false;
+               }
+               if (Log.isEnabledFor(Level.DEBUG)) {
+                  Log.debug("Drop packet " + event.getPacket());
+               }
+               this.metrics.incrementDroppedPackets();
+               event.release();
+               return true;
+            }
+            break;
+         case BLOCK:
+         default:
+            if (!this.ring.offer(event)) {
+               return false;
+            }
+            break;
+      }
+      this.handler.signal();
+      return true;
+   }
+
+   /**
+    * @return true if the packet can be dropped without breaking the
+    * Client state: messages, and other users joining, parting or quitting
+    */
+   private boolean isLowValue(final IrcPacket packet) {
+      switch (packet.getRawCommandString().toUpperCase(Locale.ROOT)) {
+         case "PRIVMSG":
+         case "NOTICE":
+            return true;
+         case "JOIN":
+         case "PART":
+         case "QUIT":
+            final String prefix = packet.getPrefix();
+            if (prefix == null) {
+               return false;
+            }
+            final int end = prefix.indexOf('!');
+            return !(end < 0 ? prefix : prefix.substring(0, end)).equals(this.server.getClientNick());
+         default:
+            return false;
+      }
+   }
+
+   private ReceivedPacketEvent pollSpill() {
+      while (true) {
+         final byte[] line;
+         try {
+            line = this.spill.read();
+         } catch (final IOException e) {
+            final int lost = this.spill.size();
+            Log.error("Failed to read spill file, dropping " + lost + " packets", e);
+            this.spill.delete();
+            for (int i = 0; i < lost; i++) {
+               this.metrics.incrementDroppedPackets();
+            }
+            return null;
+         }
+         if (line == null) {
+            return null;
+         }
+         final ReceivedPacketEvent event = this.parse(line, 0, line.length);
+         if (event != null) {
+            return event;
+         }
+      }
+   }
+
+   private boolean hasSpace() {
+      return this.ring.size() <= this.ring.capacity() / 2;
+   }
+
+   private void notifySpace() {
+      final Runnable listener = this.spaceListener.getAndSet(null);
+      if (listener != null) {
+         listener.run();
+      }
+   }
+
+   private ReceivedPacketEvent parse(final byte[] buffer, final int offset, final int length) {
+      try {
+         final ReceivedPacketEvent event;
+         if (this.pool != null) {
+            event = this.pool.acquire(buffer, offset, length);
+         } else {
+            event = new ReceivedPacketEvent(this.server, IrcPacket.parseMessage(buffer, offset, length));
+         }
+         if (Log.isEnabledFor(Level.DEBUG)) {
+            Log.debug("Queue packet " + event.getPacket());
+         }
+         return event;
+      } catch (final IllegalArgumentException e) {
+         Log.error("Failed to parse incoming packet: " + new String(buffer, offset, length, StandardCharsets.UTF_8), e);
+         return null;
+      }
+   }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal;
+
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+
+import java.util.function.Consumer;
+
+/**
+ * A pool of {@link ReceivedPacketEvent}s of a Server, see
+ * {@link Server#setPacketPooling(boolean)}.
+ * <p>
+ * Events are taken by the Thread reading from the network, and given back
+ * by any Thread once released. A new Event is built when the pool is
+ * empty, and released Events are left to the garbage collector when it is
+ * full.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Ribesg
+ */
+public final class PacketPool {
+
+   private final Server                        server;
+   private final ReceivedPacketEvent[]         pool;
+   private final Consumer<ReceivedPacketEvent> recycler;
+
+   /**
+    * Amount of Events in {@link #pool}
+    */
+   private int size;
+
+   /**
+    * Builds an empty PacketPool.
+    *
+    * @param server   the Server
+    * @param capacity the maximum amount of pooled Events
+    */
+   public PacketPool(final Server server, final int capacity) {
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("Invalid capacity: " + capacity);
+      }
+      this.server = server;
+      this.pool = new ReceivedPacketEvent[capacity];
+      this.recycler = this::recycle;
+   }
+
+   /**
+    * Parses a received line into a pooled Event. The line is copied, so
+    * the array can be reused once this method returns.
+    *
+    * @param buffer the byte array containing the line
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @return a pooled Event, holding a single reference
+    *
+    * @throws IllegalArgumentException if the line is malformed
+    */
+   public ReceivedPacketEvent acquire(final byte[] buffer, final int offset, final int length) {
+      final ReceivedPacketEvent event = this.poll();
+      if (event == null) {
+         return new ReceivedPacketEvent(this.server, IrcPacket.parseMessage(buffer, offset, length), this.recycler);
+      }
+      try {
+         event.reuse(buffer, offset, length);
+      } catch (final IllegalArgumentException e) {
+         this.recycle(event);
+         throw e;
+      }
+      return event;
+   }
+
+   /**
+    * @return the amount of Events waiting to be reused
+    */
+   public synchronized int size() {
+      return this.size;
+   }
+
+   private synchronized ReceivedPacketEvent poll() {
+      if (this.size == 0) {
+         return null;
+      }
+      final ReceivedPacketEvent event = this.pool[--this.size];
+      this.pool[this.size] = null;
+      return event;
+   }
+
+   private synchronized void recycle(final ReceivedPacketEvent event) {
+      if (this.size < this.pool.length) {
+         this.pool[this.size++] = event;
+      }
+   }
+}
@@ -6,79 +6,151 @@
 
 package fr.ribesg.alix.internal;
 
-import fr.ribesg.alix.api.Client;
 import fr.ribesg.alix.api.EventManager;
 import fr.ribesg.alix.api.Log;
 import fr.ribesg.alix.api.Server;
 import fr.ribesg.alix.api.event.ReceivedPacketEvent;
-import fr.ribesg.alix.api.message.IrcPacket;
 import fr.ribesg.alix.internal.handlers.InternalReceivedEventHandler;
 import fr.ribesg.alix.internal.thread.AbstractRepeatingThread;
+import org.apache.log4j.Level;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class handles received packets.
+ * <p>
+ * Packets are taken from one or more bounded {@link InboundQueue}, in
+ * turn. This Thread parks while every queue is empty, and is unparked by
+ * the producers.
  *
  * @author Ribesg
  */
 public class ReceivedPacketHandler extends AbstractRepeatingThread {
 
    /**
-    * A reference to the Client is always nice to have.
+    * The internal handler for ReceivedPacketEvents, shared by every
+    * ReceivedPacketHandler so that it is registered only once.
     */
-   private final Client client;
+   private static InternalReceivedEventHandler eventHandler;
 
    /**
-    * The Queue of received packets, populated by
-    * {@link fr.ribesg.alix.internal.network.SocketReceiver}
+    * Registers the internal handler for ReceivedPacketEvents if needed.
     */
-   private final BlockingQueue<ReceivedPacketEvent> packetBuffer;
+   private static synchronized void registerEventHandler() {
+      if (ReceivedPacketHandler.eventHandler == null) {
+         ReceivedPacketHandler.eventHandler = new InternalReceivedEventHandler();
+      }
+   }
 
    /**
-    * The internal handler for ReceivedPacketEvents
+    * Maximum amount of packets handled from a queue before handling the
+    * packets of the next queue
     */
-   private final InternalReceivedEventHandler eventHandler;
+   private static final int BATCH_SIZE = 64;
+
+   /**
+    * The queues of received packets, each populated by a single
+    * {@link fr.ribesg.alix.internal.network.SocketReceiver} or
+    * {@link fr.ribesg.alix.internal.network.nio.SelectorLoop}
+    */
+   private volatile InboundQueue[] queues;
+
+   /**
+    * If this Thread is parked or about to be, waiting for packets
+    */
+   private volatile boolean parked;
 
    /**
     * Constructor
-    *
-    * @param client the Client this Handler relates to
     */
-   public ReceivedPacketHandler(final Client client) {
-      super("MsgHandler", 10);
-      this.client = client;
-      this.packetBuffer = new LinkedBlockingQueue<>();
-      this.eventHandler = new InternalReceivedEventHandler(client);
+   public ReceivedPacketHandler() {
+      super("MsgHandler", 0);
+      this.queues = new InboundQueue[0];
+      ReceivedPacketHandler.registerEventHandler();
    }
 
    /**
-    * Parses and queues an incoming packet.
+    * Creates a queue of packets received from a Server, handled by this
+    * handler until it is closed and empty.
+    *
+    * @param server the Server
     *
-    * @param server       the server the packet comes from
-    * @param packetString the packet
+    * @return a new InboundQueue
     */
-   public void queue(final Server server, final String packetString) {
-      Log.debug("Queue packet " + packetString);
-      final IrcPacket packet;
-      try {
-         packet = IrcPacket.parseMessage(packetString);
-         this.packetBuffer.add(new ReceivedPacketEvent(server, packet));
-      } catch (final IllegalArgumentException e) {
-         Log.error("Failed to parse incoming packet: " + packetString, e);
+   public synchronized InboundQueue newQueue(final Server server) {
+      final InboundQueue queue = new InboundQueue(server, this);
+      final InboundQueue[] queues = Arrays.copyOf(this.queues, this.queues.length + 1);
+      queues[queues.length - 1] = queue;
+      this.queues = queues;
+      return queue;
+   }
+
+   private synchronized void removeQueue(final InboundQueue queue) {
+      final List<InboundQueue> queues = new ArrayList<>(Arrays.asList(this.queues));
+      queues.remove(queue);
+      this.queues = queues.toArray(new InboundQueue[queues.size()]);
+      queue.release();
+   }
+
+   /**
+    * Wakes this Thread up if it is waiting for packets.
+    */
+   /* package */ void signal() {
+      if (this.parked) {
+         LockSupport.unpark(this);
       }
    }
 
    /**
-    * Polls every packets in the queue and calls events.
+    * Handles packets of every queue in turn, or waits for some.
     */
    @Override
    public void work() {
-      ReceivedPacketEvent event;
-      while ((event = this.packetBuffer.poll()) != null) {
-         Log.debug("Poll packet " + event.getPacket());
-         EventManager.call(event);
+      boolean handled = false;
+      for (final InboundQueue queue : this.queues) {
+         ReceivedPacketEvent event;
+         for (int i = 0; i < BATCH_SIZE && (event = queue.poll()) != null; i++) {
+            if (Log.isEnabledFor(Level.DEBUG)) {
+               Log.debug("Poll packet " + event.getPacket());
+            }
+            try {
+               EventManager.call(event);
+            } finally {
+               event.release();
+            }
+            handled = true;
+         }
+         if (queue.isDone()) {
+            this.removeQueue(queue);
+         }
+      }
+      if (!handled) {
+         this.parked = true;
+         if (this.isEmpty()) {
+            LockSupport.park(this);
+         }
+         this.parked = false;
+      }
+   }
+
+   /**
+    * Releases every queue. Should be called once this Thread is stopped.
+    */
+   public void release() {
+      for (final InboundQueue queue : this.queues) {
+         this.removeQueue(queue);
+      }
+   }
+
+   private boolean isEmpty() {
+      for (final InboundQueue queue : this.queues) {
+         if (!queue.isEmpty() || queue.isDone()) {
+            return false;
+         }
       }
+      return true;
    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal;
+
+import fr.ribesg.alix.api.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A temporary file used as a FIFO of received lines, see
+ * {@link fr.ribesg.alix.api.network.OverflowPolicy#SPILL}.
+ * <p>
+ * Lines are appended with their length, and read back in order. The file
+ * is created on first write, and truncated each time it is fully read.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Ribesg
+ */
+/* package */ final class SpillFile {
+
+   private FileChannel file;
+   private Path        path;
+
+   private long writePosition;
+   private long readPosition;
+   private int  size;
+
+   /**
+    * @return the amount of lines in this file
+    */
+   /* package */ synchronized int size() {
+      return this.size;
+   }
+
+   /**
+    * Appends a line.
+    *
+    * @param buffer the byte array containing the line
+    * @param offset the index of the first byte of the line
+    * @param length the length of the line
+    *
+    * @throws IOException if writing fails
+    */
+   /* package */ synchronized void write(final byte[] buffer, final int offset, final int length) throws IOException {
+      if (this.file == null) {
+         this.path = Files.createTempFile("alix-spill-", ".bin");
+         this.path.toFile().deleteOnExit();
+         this.file = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      final ByteBuffer bytes = ByteBuffer.allocate(4 + length);
+      bytes.putInt(length).put(buffer, offset, length).flip();
+      while (bytes.hasRemaining()) {
+         this.writePosition += this.file.write(bytes, this.writePosition);
+      }
+      this.size++;
+   }
+
+   /**
+    * Reads the oldest line.
+    *
+    * @return the oldest line, or null if this file is empty
+    *
+    * @throws IOException if reading fails
+    */
+   /* package */ synchronized byte[] read() throws IOException {
+      if (this.size == 0) {
+         return null;
+      }
+      final ByteBuffer length = ByteBuffer.allocate(4);
+      this.readFully(length);
+      final ByteBuffer line = ByteBuffer.allocate(length.getInt(0));
+      this.readFully(line);
+      if (--this.size == 0) {
+         this.file.truncate(0);
+         this.readPosition = 0;
+         this.writePosition = 0;
+      }
+      return line.array();
+   }
+
+   private void readFully(final ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         final int read = this.file.read(buffer, this.readPosition);
+         if (read < 0) {
+            throw new IOException("Unexpected end of spill file " + this.path);
+         }
+         this.readPosition += read;
+      }
+   }
+
+   /**
+    * Deletes this file, forgetting every line.
+    */
+   /* package */ synchronized void delete() {
+      if (this.file != null) {
+         try {
+            this.file.close();
+            Files.deleteIfExists(this.path);
+         } catch (final IOException e) {
+            Log.error("Failed to delete spill file " + this.path, e);
+         }
+         this.file = null;
+         this.size = 0;
+         this.readPosition = 0;
+         this.writePosition = 0;
+      }
+   }
+}
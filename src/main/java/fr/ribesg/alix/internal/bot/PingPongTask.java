@@ -7,53 +7,161 @@
 package fr.ribesg.alix.internal.bot;
 
 import fr.ribesg.alix.api.Client;
-import fr.ribesg.alix.api.EventManager;
 import fr.ribesg.alix.api.Log;
 import fr.ribesg.alix.api.Server;
 import fr.ribesg.alix.api.callback.Callback;
 import fr.ribesg.alix.api.enums.Command;
-import fr.ribesg.alix.api.event.ClientLostConnectionEvent;
 import fr.ribesg.alix.api.event.ReceivedPacketEvent;
 import fr.ribesg.alix.api.message.PingIrcPacket;
+import fr.ribesg.alix.api.metrics.RoundTripEstimator;
+import fr.ribesg.alix.api.metrics.ServerMetrics;
 import fr.ribesg.alix.internal.thread.AbstractRepeatingThread;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This task will handle the Ping-Pong thing, to make sure
  * we're still connected.
+ * <p>
+ * A Server is only PINGed once nothing was received from it for
+ * {@link #IDLE_DELAY}, as any received line already proves that the
+ * connection is alive. The connection is considered lost if nothing, PONG
+ * included, is received from the Server within a timeout derived from the
+ * round-trip times measured by previous PINGs, see
+ * {@link RoundTripEstimator#getTimeout()}. This timeout starts once the
+ * PING is actually written: it may first wait behind queued messages, for
+ * at most {@link RoundTripEstimator#MAX_TIMEOUT} without receiving
+ * anything.
  */
 public class PingPongTask extends AbstractRepeatingThread {
 
+   /**
+    * Time without receiving anything after which a Server is PINGed, in
+    * nanoseconds
+    */
+   private static final long IDLE_DELAY = TimeUnit.SECONDS.toNanos(15);
+
    private static final Random RANDOM = new Random();
 
    private final Client client;
 
+   /**
+    * The PING waiting for its PONG for each connected Server, only used by
+    * this Thread
+    */
+   private final Map<Server, PingPongCallback> pending;
+
    public PingPongTask(final Client client) {
-      super("PingPong  ", 120_000);
+      super("PingPong  ", 1_000);
       this.client = client;
+      this.pending = new HashMap<>();
    }
 
    @Override
    public void work() {
-      this.client.getServers().stream().filter(Server::isConnected).forEach(server -> {
+      final long now = System.nanoTime();
+      for (final Server server : this.client.getServers()) {
+         if (server.isConnected()) {
+            this.check(server, now);
+         }
+      }
+      // Forget PINGs sent to Servers we're not connected to anymore
+      final Iterator<Map.Entry<Server, PingPongCallback>> it = this.pending.entrySet().iterator();
+      while (it.hasNext()) {
+         final Map.Entry<Server, PingPongCallback> entry = it.next();
+         if (!entry.getKey().isConnected()) {
+            entry.getValue().unregister();
+            it.remove();
+         }
+      }
+   }
+
+   private void check(final Server server, final long now) {
+      final ServerMetrics metrics = server.getMetrics();
+      final PingPongCallback callback = this.pending.get(server);
+      if (callback != null) {
+         if (callback.isEnabled() && callback.lostConnections == metrics.getLostConnections()) {
+            // Anything received since the PING proves that the connection is alive,
+            // the PONG may also be waiting in the queue of received packets
+            final long lastReceived = server.getInboundQueueDepth() > 0 ? now : metrics.getLastReceivedDate();
+            final boolean sent = callback.isSent();
+            final long silence = now - Math.max(sent ? callback.getSentDate() : callback.queuedDate, lastReceived);
+            final long timeout = sent ? metrics.getRoundTrip().getTimeout() : RoundTripEstimator.MAX_TIMEOUT;
+            if (silence > timeout) {
+               Log.info("Failed to " + (sent ? "receive PONG (" + callback.value + ") response" : "send PING (" + callback.value + ')') +
+                        " in " + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms, lost connection to server " + server.getName());
+               callback.unregister();
+               this.pending.remove(server);
+               server.connectionLost();
+            }
+            return;
+         }
+         // Answered, or sent over a lost connection
+         callback.unregister();
+         this.pending.remove(server);
+      }
+      if (now - metrics.getLastReceivedDate() >= IDLE_DELAY) {
          final String value = Long.toString(RANDOM.nextLong());
-         server.send(new PingIrcPacket(value), new PingPongCallback(value));
-      });
+         final PingPongCallback newCallback = new PingPongCallback(server, value, now);
+         this.pending.put(server, newCallback);
+         try {
+            server.send(new PingIrcPacket(value), newCallback);
+         } catch (final IllegalStateException e) {
+            // Connection lost in the meantime
+            newCallback.unregister();
+            this.pending.remove(server);
+         }
+      }
    }
 
-   private class PingPongCallback extends Callback {
+   private static class PingPongCallback extends Callback {
+
+      private final String value;
+
+      /**
+       * Date the PING was queued, from {@link System#nanoTime()}
+       */
+      private final long queuedDate;
 
-      private String value;
+      /**
+       * Lost connections count when the PING was sent, to ignore this PING
+       * if it was sent over an already lost connection
+       */
+      private final int lostConnections;
 
-      private PingPongCallback(final String value) {
-         super(60_000, Command.PONG.name());
+      private PingPongCallback(final Server server, final String value, final long queuedDate) {
+         // The PingPongTask handles the actual timeout
+         super(TimeUnit.NANOSECONDS.toMillis(RoundTripEstimator.MAX_TIMEOUT) * 3, Command.PONG.name());
          this.value = value;
+         this.queuedDate = queuedDate;
+         this.lostConnections = server.getMetrics().getLostConnections();
+      }
+
+      /**
+       * @return true if the PING has been written to the Server
+       */
+      private boolean isSent() {
+         return this.server.getMetrics().getLastPingSentDate() - this.queuedDate >= 0;
+      }
+
+      /**
+       * @return the date the PING was written to the Server, from
+       * {@link System#nanoTime()}, or the date it was queued if it was not
+       * written yet
+       */
+      private long getSentDate() {
+         final long sentDate = this.server.getMetrics().getLastPingSentDate();
+         return sentDate - this.queuedDate >= 0 ? sentDate : this.queuedDate;
       }
 
       @Override
       public boolean onReceivedPacket(final ReceivedPacketEvent event) {
          if (this.value.equals(event.getPacket().getTrail())) {
+            this.server.getMetrics().getRoundTrip().record(System.nanoTime() - this.getSentDate());
             event.consume();
             return true;
          } else {
@@ -63,9 +171,7 @@ public class PingPongTask extends AbstractRepeatingThread {
 
       @Override
       public void onTimeout() {
-         Log.info("Failed to receive PONG (" + this.value + ")response in time, disconnecting from server " + this.server.getName());
-         this.server.disconnect();
-         Client.getThreadPool().submit(() -> EventManager.call(new ClientLostConnectionEvent(this.server)));
+         // Handled by the PingPongTask
       }
    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.callback;
+
+import fr.ribesg.alix.api.callback.Callback;
+import fr.ribesg.alix.api.callback.ErrorReplyException;
+import fr.ribesg.alix.api.callback.ResponseDescriptor;
+import fr.ribesg.alix.api.event.EventHandlerPriority;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class represents an internal Callback completing a
+ * CompletableFuture with the response to a request.
+ * <p>
+ * It collects the reply packets described by a {@link ResponseDescriptor}
+ * until the terminating packet, which is included in the response. It
+ * only looks at packets received from the Server the request was sent
+ * to. It sees packets consumed by other handlers, and never consumes them.
+ * <p>
+ * Cancelling the CompletableFuture unregisters this Callback.
+ */
+public class ResponseCallback extends Callback {
+
+   private final ResponseDescriptor                 descriptor;
+   private final String                             subject;
+   private final List<IrcPacket>                    replies;
+   private final CompletableFuture<List<IrcPacket>> future;
+
+   /**
+    * Builds a ResponseCallback.
+    *
+    * @param descriptor      the description of the expected response
+    * @param subject         the subject of the request, null to accept
+    *                        replies about any subject
+    * @param timeoutDuration the duration after which the request fails
+    */
+   public ResponseCallback(final ResponseDescriptor descriptor, final String subject, final long timeoutDuration) {
+      super(EventHandlerPriority.LOW, false, timeoutDuration, listenedCodes(descriptor));
+      this.descriptor = descriptor;
+      this.subject = subject;
+      this.replies = new ArrayList<>();
+      this.future = new CompletableFuture<>();
+      this.future.whenComplete((replies, error) -> {
+         if (this.future.isCancelled()) {
+            this.unregister();
+         }
+      });
+   }
+
+   private static String[] listenedCodes(final ResponseDescriptor descriptor) {
+      final List<String> codes = new ArrayList<>(descriptor.getReplyCodes());
+      codes.addAll(descriptor.getErrorCodes());
+      return codes.toArray(new String[codes.size()]);
+   }
+
+   /**
+    * @return the CompletableFuture completed with the response
+    */
+   public CompletableFuture<List<IrcPacket>> getFuture() {
+      return this.future;
+   }
+
+   @Override
+   public boolean onReceivedPacket(final ReceivedPacketEvent event) {
+      if (event.getSource() != this.server) {
+         // Callbacks are registered globally
+         return false;
+      }
+      final IrcPacket packet = event.getPacket();
+      final String code = packet.getRawCommandString().toUpperCase();
+      if (!this.descriptor.matches(packet, this.subject)) {
+         if (code.equals(this.descriptor.getTerminatorCode())) {
+            // Replies without subject received until now belonged to the
+            // request this packet terminates
+            this.replies.removeIf(reply -> !this.descriptor.hasSubject(reply.getRawCommandString().toUpperCase()));
+         }
+         return false;
+      }
+      // Handed to the user, so never released
+      event.retain();
+      if (this.descriptor.isError(code)) {
+         this.future.completeExceptionally(new ErrorReplyException(packet));
+         return true;
+      } else {
+         this.replies.add(packet);
+         if (code.equals(this.descriptor.getTerminatorCode())) {
+            this.future.complete(Collections.unmodifiableList(this.replies));
+            return true;
+         }
+         return false;
+      }
+   }
+
+   @Override
+   public void onTimeout() {
+      this.future.completeExceptionally(new TimeoutException("No response to '" + this.originalIrcPacket + "' after " + this.timeoutDuration + "ms"));
+   }
+}
@@ -12,7 +12,9 @@ import fr.ribesg.alix.api.event.*;
 import fr.ribesg.alix.api.message.IrcPacket;
 import fr.ribesg.alix.api.message.PongIrcPacket;
 
+import java.util.AbstractMap;
 import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * TODO Javadoc
@@ -20,10 +22,7 @@ import java.util.Arrays;
  */
 public class InternalReceivedEventHandler {
 
-   private final Client client;
-
-   public InternalReceivedEventHandler(final Client client) {
-      this.client = client;
+   public InternalReceivedEventHandler() {
       EventManager.register(this);
    }
 
@@ -40,7 +39,9 @@ public class InternalReceivedEventHandler {
          if (isCommand) {
             final Command cmd = packet.getCommandAsCommand();
             switch (cmd) {
-               // TODO Handle NICK Command
+               case NICK:
+                  handleNick(server, packet);
+                  break;
                case PING:
                   server.send(new PongIrcPacket(packet.getTrail()), true);
                   event.consume();
@@ -77,9 +78,15 @@ public class InternalReceivedEventHandler {
             switch (rep) {
                case RPL_WELCOME:
                   server.setConnected(true);
-                  Client.getThreadPool().submit(() -> EventManager.call(new ServerJoinEvent(server)));
+                  Client.getEventExecutor().execute(server, () -> EventManager.call(new ServerJoinEvent(server)));
                   event.consume();
                   break;
+               case RPL_BOUNCE:
+                  // Used as RPL_ISUPPORT by every modern IRCd
+                  if (packet.getParameters().length > 1) {
+                     server.getSupport().update(packet);
+                  }
+                  break;
                case RPL_TOPIC:
                   final String channelName = packet.getParameters()[1];
                   final Channel channel = server.getChannel(channelName);
@@ -88,7 +95,7 @@ public class InternalReceivedEventHandler {
                   break;
                case ERR_NICKNAMEINUSE:
                case ERR_NICKCOLLISION:
-                  Client.getThreadPool().submit(() -> client.switchToBackupName(server));
+                  Client.getEventExecutor().execute(server, () -> server.getClient().switchToBackupName(server));
                   event.consume();
                   break;
                default:
@@ -101,6 +108,18 @@ public class InternalReceivedEventHandler {
       }
    }
 
+   private void handleNick(final Server server, final IrcPacket packet) {
+      final Source source = packet.getPrefix() == null ? null : packet.getPrefixAsSource(server);
+      if (source != null) {
+         final String oldNick = source.getName();
+         final String newNick = packet.getParameters().length > 0 ? packet.getParameters()[0] : packet.getTrail();
+         server.getSourceCache().invalidate(oldNick);
+         if (server.getClientNick().equals(oldNick) && newNick != null) {
+            server.setClientNick(newNick);
+         }
+      }
+   }
+
    private void handleJoinPart(final Server server, final boolean isJoin, final IrcPacket packet) {
       // Workaround for IRCds using the trail as parameter (Unreal)
       final String channelName = packet.getParameters().length > 0 ? packet.getParameters()[0] : packet.getTrail();
@@ -114,18 +133,21 @@ public class InternalReceivedEventHandler {
       final Channel finalChannel = channel;
       final Source source = packet.getPrefix() == null ? null : packet.getPrefixAsSource(server);
       if (source == null || source.getName().equals(server.getClientNick())) {
+         if (source != null && source.getUserName() != null && source.getHostName() != null) {
+            server.setClientUserHost(source.getUserName() + '@' + source.getHostName());
+         }
          if (isJoin) {
-            Client.getThreadPool().submit(() -> EventManager.call(new ClientJoinChannelEvent(finalChannel)));
+            Client.getEventExecutor().execute(finalChannel, () -> EventManager.call(new ClientJoinChannelEvent(finalChannel)));
          } else {
-            Client.getThreadPool().submit(() -> EventManager.call(new ClientPartChannelEvent(finalChannel)));
+            Client.getEventExecutor().execute(finalChannel, () -> EventManager.call(new ClientPartChannelEvent(finalChannel)));
          }
       } else {
          if (isJoin) {
             // TODO Fetch info about user (+, @) and add it to the users list
-            Client.getThreadPool().submit(() -> EventManager.call(new UserJoinChannelEvent(source, finalChannel)));
+            Client.getEventExecutor().execute(finalChannel, () -> EventManager.call(new UserJoinChannelEvent(source, finalChannel)));
          } else {
             // TODO Remove user from users list
-            Client.getThreadPool().submit(() -> EventManager.call(new UserPartChannelEvent(source, finalChannel)));
+            Client.getEventExecutor().execute(finalChannel, () -> EventManager.call(new UserPartChannelEvent(source, finalChannel)));
          }
       }
    }
@@ -138,10 +160,10 @@ public class InternalReceivedEventHandler {
       final Source source = packet.getPrefix() == null ? null : packet.getPrefixAsSource(server);
       final String reason = packet.getTrail();
       if (server.getClientNick().equals(who)) {
-         Client.getThreadPool().submit(() -> EventManager.call(new ClientKickedFromChannelEvent(channel, source, reason)));
+         Client.getEventExecutor().execute(channel, () -> EventManager.call(new ClientKickedFromChannelEvent(channel, source, reason)));
       } else {
          // TODO Remove user from users list
-         Client.getThreadPool().submit(() -> EventManager.call(new UserKickedFromChannelEvent(channel, source, reason)));
+         Client.getEventExecutor().execute(channel, () -> EventManager.call(new UserKickedFromChannelEvent(channel, source, reason)));
       }
    }
 
@@ -153,10 +175,10 @@ public class InternalReceivedEventHandler {
          if (server.getClientNick().equals(who)) {
             server.setJoined(false);
             server.setConnected(false);
-            Client.getThreadPool().submit(() -> EventManager.call(new ClientQuitServerEvent(server, reason)));
+            Client.getEventExecutor().execute(server, () -> EventManager.call(new ClientQuitServerEvent(server, reason)));
          } else {
             // TODO Remove user from users list (in all channels?)
-            Client.getThreadPool().submit(() -> EventManager.call(new UserQuitServerEvent(server, source, reason)));
+            Client.getEventExecutor().execute(server, () -> EventManager.call(new UserQuitServerEvent(server, source, reason)));
          }
       }
    }
@@ -164,6 +186,8 @@ public class InternalReceivedEventHandler {
    private void handlePrivMsg(final Server server, final IrcPacket packet) {
       final Source source = packet.getPrefixAsSource(server);
       final String dest = packet.getParameters()[0];
+      // Decoded now, the packet may be recycled before the Event is called
+      final String message = packet.getTrail();
       if (dest.startsWith("#")) {
          Channel channel = server.getChannel(dest);
          if (channel == null) {
@@ -171,12 +195,20 @@ public class InternalReceivedEventHandler {
          }
          channel.setJoined(true);
          final Channel finalChannel = channel;
-         Client.getThreadPool().submit(() -> EventManager.call(new ChannelMessageEvent(finalChannel, source, packet.getTrail())));
+         Client.getEventExecutor().execute(finalChannel, () -> EventManager.call(new ChannelMessageEvent(finalChannel, source, message)));
       } else {
-         Client.getThreadPool().submit(() -> EventManager.call(new PrivateMessageEvent(server, source, packet.getTrail())));
+         Client.getEventExecutor().execute(userKey(server, source), () -> EventManager.call(new PrivateMessageEvent(server, source, message)));
       }
    }
 
+   /**
+    * Gets the key used to call Events about a user in order, as Sources
+    * are not unique.
+    */
+   private static Object userKey(final Server server, final Source source) {
+      return new AbstractMap.SimpleImmutableEntry<>(server, source.getName().toLowerCase(Locale.ROOT));
+   }
+
    private void handleMode(final Server server, final IrcPacket packet) {
       final Source source = packet.getPrefix() == null ? null : packet.getPrefixAsSource(server);
       try {
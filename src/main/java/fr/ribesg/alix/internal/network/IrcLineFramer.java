@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits received bytes into IRC lines.
+ * <p>
+ * Bytes are read directly into a reusable ByteBuffer, see
+ * {@link #getBuffer()}, then {@link #frame(LineConsumer)} hands every
+ * complete line to a {@link LineConsumer} as a slice of this buffer,
+ * without its line terminator. Lines are terminated by CR, LF or CRLF and
+ * empty lines are skipped.
+ * <p>
+ * Lines longer than the maximum line length are discarded.
+ *
+ * @author Ribesg
+ */
+public class IrcLineFramer {
+
+   /**
+    * Receives lines found by an {@link IrcLineFramer}.
+    */
+   public interface LineConsumer {
+
+      /**
+       * Handles a line. The provided array is reused once this method
+       * returns, so the line has to be copied if it is kept.
+       *
+       * @param buffer the byte array containing the line
+       * @param offset the index of the first byte of the line
+       * @param length the length of the line, without line terminator
+       */
+      void accept(final byte[] buffer, final int offset, final int length);
+   }
+
+   /**
+    * Maximum length of a line, line terminator included
+    */
+   private final int maxLineLength;
+
+   /**
+    * Received bytes not yet handled, in write mode
+    */
+   private final ByteBuffer buffer;
+
+   /**
+    * Amount of bytes at the start of the buffer already known not to
+    * contain any line terminator
+    */
+   private int scanned;
+
+   /**
+    * If the bytes currently received belong to a line which is too long
+    */
+   private boolean discarding;
+
+   /**
+    * Builds an IrcLineFramer.
+    *
+    * @param maxLineLength the maximum length of a line, line terminator
+    *                      included
+    * @param readSize      the amount of bytes which should always be
+    *                      available in the buffer after a call to
+    *                      {@link #frame(LineConsumer)}
+    */
+   public IrcLineFramer(final int maxLineLength, final int readSize) {
+      if (maxLineLength < 3) {
+         throw new IllegalArgumentException("Invalid maximum line length: " + maxLineLength);
+      }
+      this.maxLineLength = maxLineLength;
+      this.buffer = ByteBuffer.allocate(maxLineLength + readSize);
+      this.scanned = 0;
+      this.discarding = false;
+   }
+
+   /**
+    * Gets the buffer received bytes should be put into. The buffer is in
+    * write mode, and its position should be moved after the last received
+    * byte, like {@link java.nio.channels.ReadableByteChannel#read(ByteBuffer)}
+    * does.
+    *
+    * @return the buffer of this IrcLineFramer
+    */
+   public ByteBuffer getBuffer() {
+      return this.buffer;
+   }
+
+   /**
+    * Hands every complete line received to the provided consumer, then
+    * compacts the buffer.
+    *
+    * @param consumer the consumer of lines
+    *
+    * @return the amount of lines found
+    */
+   public int frame(final LineConsumer consumer) {
+      final byte[] array = this.buffer.array();
+      final int limit = this.buffer.position();
+      final int maxContentLength = this.maxLineLength - 2;
+      int lines = 0;
+      int start = 0;
+      for (int i = this.scanned; i < limit; i++) {
+         final byte b = array[i];
+         if (b == '\n' || b == '\r') {
+            if (this.discarding) {
+               this.discarding = false;
+            } else if (i - start > maxContentLength) {
+               Log.error("Received line longer than " + this.maxLineLength + " bytes, discarding it");
+            } else if (i > start) {
+               consumer.accept(array, start, i - start);
+               lines++;
+            }
+            start = i + 1;
+         }
+      }
+
+      if (!this.discarding && limit - start > maxContentLength) {
+         Log.error("Received line longer than " + this.maxLineLength + " bytes, discarding it");
+         this.discarding = true;
+      }
+      if (this.discarding) {
+         start = limit;
+      }
+
+      final int remaining = limit - start;
+      if (start > 0 && remaining > 0) {
+         System.arraycopy(array, start, array, 0, remaining);
+      }
+      this.buffer.position(remaining);
+      this.scanned = remaining;
+      return lines;
+   }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a text into chunks fitting in a given amount of bytes once
+ * encoded in UTF-8, to be sent as the text of PRIVMSG or NOTICE messages.
+ * <p>
+ * Line breaks always split the text, as they can't be sent. Otherwise,
+ * chunks are split at the last space fitting in the budget, the space
+ * being dropped, or between two characters if there is no space. A
+ * character is never split, even a surrogate pair. Empty chunks are
+ * dropped.
+ * <p>
+ * The text is only read once, the UTF-8 length of each character being
+ * computed as it is read.
+ *
+ * @author Ribesg
+ * @see fr.ribesg.alix.api.Server#getMessageLength(String, String)
+ */
+public final class MessageSplitter {
+
+   private MessageSplitter() {}
+
+   /**
+    * Splits a text.
+    *
+    * @param text      the text
+    * @param maxLength the maximum length of a chunk, in bytes once encoded
+    *                  in UTF-8; a chunk holds at least one character
+    *
+    * @return the chunks, in order
+    */
+   public static List<String> split(final String text, final int maxLength) {
+      final List<String> chunks = new ArrayList<>();
+      final int length = text.length();
+      int start = 0;
+      int bytes = 0;
+      int lastSpace = -1;
+      int bytesToLastSpace = 0;
+      int i = 0;
+      while (i < length) {
+         final char c = text.charAt(i);
+         if (c == '\n' || c == '\r') {
+            addChunk(chunks, text, start, i);
+            i++;
+            start = i;
+            bytes = 0;
+            lastSpace = -1;
+            continue;
+         }
+         final int codePoint = text.codePointAt(i);
+         final int codePointBytes = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+         if (bytes + codePointBytes > maxLength && i > start) {
+            if (lastSpace > start) {
+               addChunk(chunks, text, start, lastSpace);
+               start = lastSpace + 1;
+               bytes -= bytesToLastSpace;
+            } else {
+               addChunk(chunks, text, start, i);
+               start = i;
+               bytes = 0;
+            }
+            lastSpace = -1;
+            // This character may still not fit in the current chunk
+            continue;
+         }
+         bytes += codePointBytes;
+         if (c == ' ') {
+            lastSpace = i;
+            bytesToLastSpace = bytes;
+         }
+         i += Character.charCount(codePoint);
+      }
+      addChunk(chunks, text, start, length);
+      return chunks;
+   }
+
+   private static void addChunk(final List<String> chunks, final String text, final int start, final int end) {
+      if (end > start) {
+         chunks.add(text.substring(start, end));
+      }
+   }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.ServerSupport;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Merges queued raw messages sharing everything but their targets into a
+ * single multi-target message, like <code>JOIN #a,#b keyA</code> or
+ * <code>PRIVMSG alice,bob :text</code>.
+ * <p>
+ * Only JOIN, PART, PRIVMSG and NOTICE messages are merged, within the
+ * target limits advertised by the Server and the 512 bytes limit of a
+ * line.
+ *
+ * @author Ribesg
+ * @see ServerSupport#getTargetMax(String)
+ */
+/* package */ final class OutboundMerger {
+
+   private OutboundMerger() {}
+
+   /**
+    * A raw message split into its parts
+    */
+   private static final class Line {
+
+      /**
+       * Everything before the command: the prefix and its trailing space,
+       * or an empty String
+       */
+      private final String head;
+
+      private final String   command;
+      private final String[] parameters;
+
+      /**
+       * The trail, without its colon, or null if there is none
+       */
+      private final String trail;
+
+      private Line(final String head, final String command, final String[] parameters, final String trail) {
+         this.head = head;
+         this.command = command;
+         this.parameters = parameters;
+         this.trail = trail;
+      }
+
+      /**
+       * @param message a raw message, ending with a CRLF
+       *
+       * @return the parsed message, or null if it is not mergeable
+       */
+      private static Line parse(final String message) {
+         int end = message.length();
+         while (end > 0 && (message.charAt(end - 1) == '\r' || message.charAt(end - 1) == '\n')) {
+            end--;
+         }
+         int start = 0;
+         if (message.startsWith(":")) {
+            start = message.indexOf(' ') + 1;
+            if (start == 0) {
+               return null;
+            }
+         }
+         final String head = message.substring(0, start);
+         String trail = null;
+         final int trailStart = message.indexOf(" :", start);
+         if (trailStart >= 0 && trailStart < end) {
+            trail = message.substring(trailStart + 2, end);
+            end = trailStart;
+         }
+         final String[] split = message.substring(start, end).split(" ");
+         if (split.length < 2 || split.length > 3) {
+            return null;
+         }
+         final String command = split[0];
+         final String[] parameters = new String[split.length - 1];
+         System.arraycopy(split, 1, parameters, 0, parameters.length);
+         return new Line(head, command, parameters, trail);
+      }
+
+      private String build(final String targets, final String keys) {
+         final StringBuilder builder = new StringBuilder(this.head).append(this.command).append(' ').append(targets);
+         if (keys != null) {
+            builder.append(' ').append(keys);
+         }
+         if (this.trail != null) {
+            builder.append(" :").append(this.trail);
+         }
+         return builder.append("\r\n").toString();
+      }
+   }
+
+   /**
+    * @param message a raw message
+    * @param support the features supported by the Server
+    *
+    * @return the maximum amount of targets of this kind of message, less
+    * than 2 if it can't be merged
+    */
+   /* package */ static int getTargetMax(final String message, final ServerSupport support) {
+      int start = 0;
+      if (message.startsWith(":")) {
+         start = message.indexOf(' ') + 1;
+         if (start == 0) {
+            return 0;
+         }
+      }
+      final int end = message.indexOf(' ', start);
+      if (end < 0) {
+         return 0;
+      }
+      final String command = message.substring(start, end).toUpperCase(Locale.ROOT);
+      switch (command) {
+         case "JOIN":
+         case "PART":
+         case "PRIVMSG":
+         case "NOTICE":
+            return support.getTargetMax(command);
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Merges two raw messages.
+    *
+    * @param pending   a queued raw message
+    * @param message   a raw message to be sent after it
+    * @param targetMax the maximum amount of targets of the merged message,
+    *                  see {@link #getTargetMax(String, ServerSupport)}
+    *
+    * @return the merged raw message, or null if they can't be merged
+    */
+   /* package */ static String merge(final String pending, final String message, final int targetMax) {
+      final Line first = Line.parse(pending);
+      final Line second = first == null ? null : Line.parse(message);
+      if (second == null ||
+          !first.head.equals(second.head) ||
+          !first.command.equalsIgnoreCase(second.command) ||
+          !Objects.equals(first.trail, second.trail)) {
+         return null;
+      }
+      final String[] firstTargets = first.parameters[0].split(",");
+      final String[] secondTargets = second.parameters[0].split(",");
+      if ((long) firstTargets.length + secondTargets.length > targetMax || !disjoint(firstTargets, secondTargets)) {
+         return null;
+      }
+      final String merged;
+      if ("JOIN".equalsIgnoreCase(first.command)) {
+         if (first.trail != null || "0".equals(first.parameters[0]) || "0".equals(second.parameters[0])) {
+            return null;
+         }
+         merged = mergeJoin(first, firstTargets, second, secondTargets);
+      } else if (first.parameters.length == 1 && second.parameters.length == 1) {
+         merged = first.build(first.parameters[0] + ',' + second.parameters[0], null);
+      } else {
+         return null;
+      }
+      return Utf8.length(merged) > Server.RFC_MAX_LINE_LENGTH ? null : merged;
+   }
+
+   /**
+    * Merges two JOIN messages. Keyed Channels are put first, as keys are
+    * applied to Channels in order.
+    */
+   private static String mergeJoin(final Line first, final String[] firstChannels, final Line second, final String[] secondChannels) {
+      final String[] firstKeys = first.parameters.length > 1 ? first.parameters[1].split(",") : new String[0];
+      final String[] secondKeys = second.parameters.length > 1 ? second.parameters[1].split(",") : new String[0];
+      if (firstKeys.length > firstChannels.length || secondKeys.length > secondChannels.length) {
+         return null;
+      }
+      final List<String> channels = new ArrayList<>(firstChannels.length + secondChannels.length);
+      final List<String> keys = new ArrayList<>(firstKeys.length + secondKeys.length);
+      for (int i = 0; i < firstKeys.length; i++) {
+         channels.add(firstChannels[i]);
+         keys.add(firstKeys[i]);
+      }
+      for (int i = 0; i < secondKeys.length; i++) {
+         channels.add(secondChannels[i]);
+         keys.add(secondKeys[i]);
+      }
+      for (int i = firstKeys.length; i < firstChannels.length; i++) {
+         channels.add(firstChannels[i]);
+      }
+      for (int i = secondKeys.length; i < secondChannels.length; i++) {
+         channels.add(secondChannels[i]);
+      }
+      return first.build(String.join(",", channels), keys.isEmpty() ? null : String.join(",", keys));
+   }
+
+   private static boolean disjoint(final String[] first, final String[] second) {
+      final Set<String> targets = new HashSet<>();
+      for (final String target : first) {
+         targets.add(target.toLowerCase(Locale.ROOT));
+      }
+      for (final String target : second) {
+         if (targets.contains(target.toLowerCase(Locale.ROOT))) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
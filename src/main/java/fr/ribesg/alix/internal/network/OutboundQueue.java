@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.ServerSupport;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.network.FloodControl;
+import fr.ribesg.alix.api.network.SendPriority;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages waiting to be sent to a Server, released at the rate allowed by
+ * a {@link FloodControl}.
+ * <p>
+ * Messages are queued by {@link SendPriority}, and a message is only sent
+ * when no message of a higher priority is waiting. Messages of a same
+ * priority are queued by target: the Channel or user a PRIVMSG or NOTICE
+ * is sent to, every other message sharing a common queue. Targets are
+ * served in turn, one message each, so that a long output to a target
+ * does not delay messages to other targets. Messages to a same target are
+ * sent in the order they were queued.
+ * <p>
+ * Queued JOIN, PART, PRIVMSG and NOTICE messages are merged with the
+ * following compatible messages of the same priority, as allowed by the
+ * Server, see {@link OutboundMerger}.
+ * <p>
+ * A last message, like a QUIT, can be queued with
+ * {@link #offerLast(IrcPacket)}: it is only sent once every other message
+ * has been sent, and messages queued after it are discarded.
+ * <p>
+ * Every message which can be sent at once can be taken at once, so that
+ * they are written and flushed together, see
+ * {@link #drainTo(Collection, long)}.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Ribesg
+ */
+public class OutboundQueue {
+
+   /**
+    * A raw message and its UTF-8 encoded bytes
+    */
+   private static final class Message {
+
+      private final String message;
+      private final byte[] bytes;
+
+      private Message(final String message, final byte[] bytes) {
+         this.message = message;
+         this.bytes = bytes;
+      }
+   }
+
+   /**
+    * Messages of a same priority waiting to be sent
+    */
+   private static final class FairQueue {
+
+      /**
+       * Messages waiting to be sent, by target
+       */
+      private final Map<String, Deque<Message>> queues = new HashMap<>();
+
+      /**
+       * Targets having messages waiting, the first one being the next one
+       * served
+       */
+      private final Deque<String> targets = new ArrayDeque<>();
+
+      /**
+       * Amount of queued messages
+       */
+      private int size = 0;
+
+      private void offer(final Message message) {
+         final String target = getTarget(message.message);
+         Deque<Message> queue = this.queues.get(target);
+         if (queue == null) {
+            queue = new ArrayDeque<>();
+            this.queues.put(target, queue);
+            this.targets.offer(target);
+         }
+         queue.offer(message);
+         this.size++;
+      }
+
+      /**
+       * Tries to merge a message into a queued message.
+       * <p>
+       * A message without target is merged into the last message without
+       * target. A message to a target is merged into a message alone in
+       * its queue, and only if there is no queued message to this target,
+       * so that messages to every target stay in order.
+       *
+       * @param message   the message
+       * @param targetMax the maximum amount of targets of a message
+       *
+       * @return true if the message has been merged, false otherwise
+       */
+      private boolean merge(final String message, final int targetMax) {
+         final String target = getTarget(message);
+         if (NO_TARGET.equals(target)) {
+            return this.mergeInto(this.queues.get(NO_TARGET), message, targetMax);
+         } else if (!this.queues.containsKey(target)) {
+            for (final Map.Entry<String, Deque<Message>> entry : this.queues.entrySet()) {
+               if (entry.getValue().size() == 1 && !NO_TARGET.equals(entry.getKey()) && this.mergeInto(entry.getValue(), message, targetMax)) {
+                  return true;
+               }
+            }
+         }
+         return false;
+      }
+
+      private boolean mergeInto(final Deque<Message> queue, final String message, final int targetMax) {
+         if (queue == null) {
+            return false;
+         }
+         final String merged = OutboundMerger.merge(queue.peekLast().message, message, targetMax);
+         if (merged == null) {
+            return false;
+         }
+         queue.pollLast();
+         queue.offerLast(new Message(merged, Utf8.encode(merged)));
+         return true;
+      }
+
+      private Message peek() {
+         return this.queues.get(this.targets.peekFirst()).peekFirst();
+      }
+
+      private void remove() {
+         final String target = this.targets.pollFirst();
+         final Deque<Message> queue = this.queues.get(target);
+         queue.pollFirst();
+         if (queue.isEmpty()) {
+            this.queues.remove(target);
+         } else {
+            this.targets.offerLast(target);
+         }
+         this.size--;
+      }
+   }
+
+   /**
+    * Target of messages without target
+    */
+   private static final String NO_TARGET = "";
+
+   /**
+    * Maximum amount of bytes taken at once, unless a single message is
+    * longer. This is the maximum payload of a TLS record.
+    */
+   public static final int MAX_BATCH_LENGTH = 16_384;
+
+   private final TokenBucket   bucket;
+   private final ServerSupport support;
+
+   /**
+    * Messages waiting to be sent, by SendPriority ordinal
+    */
+   private final FairQueue[] queues;
+
+   /**
+    * Message sent once every other message has been sent, null if none
+    */
+   private Message last;
+
+   /**
+    * If a last message has been queued, see {@link #offerLast(IrcPacket)}
+    */
+   private boolean closed;
+
+   /**
+    * Amount of queued messages
+    */
+   private int size;
+
+   /**
+    * Amount of messages taken by {@link #take(Collection)} and not yet
+    * reported as sent
+    */
+   private int unsent;
+
+   /**
+    * Builds an empty OutboundQueue, only merging JOIN and PART messages.
+    *
+    * @param floodControl the applied FloodControl
+    */
+   public OutboundQueue(final FloodControl floodControl) {
+      this(floodControl, new ServerSupport());
+   }
+
+   /**
+    * Builds an empty OutboundQueue.
+    *
+    * @param floodControl the applied FloodControl
+    * @param support      the features supported by the Server, used to
+    *                     merge messages
+    */
+   public OutboundQueue(final FloodControl floodControl, final ServerSupport support) {
+      this.bucket = new TokenBucket(floodControl, System.nanoTime());
+      this.support = support;
+      this.queues = new FairQueue[SendPriority.values().length];
+      for (int i = 0; i < this.queues.length; i++) {
+         this.queues[i] = new FairQueue();
+      }
+      this.last = null;
+      this.closed = false;
+      this.size = 0;
+      this.unsent = 0;
+   }
+
+   /**
+    * Queues a message to be sent after every already queued message of the
+    * same priority to the same target. The message may be merged into a
+    * queued message.
+    *
+    * @param message  the raw message, ending with a CRLF
+    * @param priority the priority of the message
+    */
+   public void offer(final String message, final SendPriority priority) {
+      this.offer(message, null, priority);
+   }
+
+   /**
+    * Queues an IRC Packet to be sent after every already queued message
+    * of the same priority to the same target. The IRC Packet may be merged
+    * into a queued message.
+    * <p>
+    * The cached bytes of the IRC Packet are sent, see
+    * {@link IrcPacket#getRawBytes()}.
+    *
+    * @param ircPacket the IRC Packet
+    * @param priority  the priority of the IRC Packet
+    */
+   public void offer(final IrcPacket ircPacket, final SendPriority priority) {
+      this.offer(ircPacket.getRawMessage(), ircPacket.getRawBytes(), priority);
+   }
+
+   /**
+    * Queues a message. The message is encoded, if needed, before taking
+    * the lock, so that the sending Thread never has to.
+    *
+    * @param message  the raw message, ending with a CRLF
+    * @param bytes    the encoded message, or null
+    * @param priority the priority of the message
+    */
+   private void offer(final String message, final byte[] bytes, final SendPriority priority) {
+      final int targetMax = OutboundMerger.getTargetMax(message, this.support);
+      final Message entry = new Message(message, bytes == null ? Utf8.encode(message) : bytes);
+      synchronized (this) {
+         if (this.closed) {
+            return;
+         }
+         final FairQueue queue = this.queues[priority.ordinal()];
+         if (targetMax < 2 || !queue.merge(message, targetMax)) {
+            queue.offer(entry);
+            this.size++;
+         }
+         this.notifyAll();
+      }
+   }
+
+   /**
+    * Queues an IRC Packet to be sent once every other queued message has
+    * been sent, whatever their priority. Messages queued after it are
+    * discarded, as the Server closes the connection after a QUIT.
+    * <p>
+    * Only the first last IRC Packet is kept.
+    *
+    * @param ircPacket the IRC Packet
+    */
+   public void offerLast(final IrcPacket ircPacket) {
+      final Message entry = new Message(ircPacket.getRawMessage(), ircPacket.getRawBytes());
+      synchronized (this) {
+         if (this.closed) {
+            return;
+         }
+         this.closed = true;
+         this.last = entry;
+         this.size++;
+         this.notifyAll();
+      }
+   }
+
+   /**
+    * @return the amount of queued messages
+    */
+   public synchronized int size() {
+      return this.size;
+   }
+
+   /**
+    * @param priority a priority
+    *
+    * @return the amount of queued messages of this priority
+    */
+   public synchronized int size(final SendPriority priority) {
+      return this.queues[priority.ordinal()].size;
+   }
+
+   /**
+    * @return true if no message is queued
+    */
+   public synchronized boolean isEmpty() {
+      return this.size == 0;
+   }
+
+   /**
+    * @return true if some messages are queued or being sent, see
+    * {@link #sent(int)}
+    */
+   public synchronized boolean hasAnythingToWrite() {
+      return this.size != 0 || this.unsent != 0;
+   }
+
+   /**
+    * Reports that messages taken by {@link #take(Collection)} have been
+    * sent, or failed to be sent.
+    *
+    * @param count the amount of messages
+    */
+   public synchronized void sent(final int count) {
+      this.unsent -= count;
+   }
+
+   /**
+    * Gets the time to wait before the next message can be sent.
+    *
+    * @param now the current date, from {@link System#nanoTime()}
+    *
+    * @return the time to wait in nanoseconds, 0 if the next message can be
+    * sent now, or -1 if there is nothing to send
+    */
+   public synchronized long getDelay(final long now) {
+      final Message next = this.peek();
+      return next == null ? -1 : this.bucket.getDelay(next.bytes.length, now);
+   }
+
+   /**
+    * Takes the next message if it can be sent now.
+    *
+    * @param now the current date, from {@link System#nanoTime()}
+    *
+    * @return the next message encoded in UTF-8, or null if there is nothing
+    * to send or if the next message can't be sent yet
+    */
+   public synchronized byte[] poll(final long now) {
+      final Message message = this.peek();
+      if (message == null) {
+         return null;
+      }
+      final byte[] next = message.bytes;
+      if (this.bucket.getDelay(next.length, now) > 0) {
+         return null;
+      }
+      this.bucket.consume(next.length, now);
+      this.remove();
+      return next;
+   }
+
+   /**
+    * Takes every message which can be sent now, in order, up to
+    * {@link #MAX_BATCH_LENGTH} bytes.
+    *
+    * @param messages the Collection to add the taken messages to, encoded
+    *                 in UTF-8
+    * @param now      the current date, from {@link System#nanoTime()}
+    *
+    * @return the amount of taken messages
+    */
+   public synchronized int drainTo(final Collection<byte[]> messages, final long now) {
+      int count = 0;
+      int length = 0;
+      Message message;
+      while ((message = this.peek()) != null) {
+         final byte[] next = message.bytes;
+         if (count != 0 && length + next.length > MAX_BATCH_LENGTH || this.bucket.getDelay(next.length, now) > 0) {
+            break;
+         }
+         this.bucket.consume(next.length, now);
+         this.remove();
+         messages.add(next);
+         length += next.length;
+         count++;
+      }
+      return count;
+   }
+
+   /**
+    * Waits until the next message can be sent, then takes every message
+    * which can be sent, see {@link #drainTo(Collection, long)}. The caller
+    * has to call {@link #sent(int)} once the messages have been sent.
+    *
+    * @param messages the Collection to add the taken messages to, encoded
+    *                 in UTF-8
+    *
+    * @return the amount of taken messages, at least 1
+    *
+    * @throws InterruptedException if the current Thread is interrupted
+    */
+   public synchronized int take(final Collection<byte[]> messages) throws InterruptedException {
+      while (true) {
+         final long now = System.nanoTime();
+         final long delay = this.getDelay(now);
+         if (delay == 0) {
+            final int count = this.drainTo(messages, now);
+            this.unsent += count;
+            return count;
+         } else if (delay < 0) {
+            this.wait();
+         } else {
+            TimeUnit.NANOSECONDS.timedWait(this, delay);
+         }
+      }
+   }
+
+   /**
+    * @return the queue of the highest priority having messages waiting, or
+    * null if no message is queued
+    */
+   private FairQueue next() {
+      for (final FairQueue queue : this.queues) {
+         if (queue.size != 0) {
+            return queue;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * @return the next message to send, or null if no message is queued
+    */
+   private Message peek() {
+      final FairQueue queue = this.next();
+      return queue == null ? this.last : queue.peek();
+   }
+
+   /**
+    * Removes the next message to send.
+    */
+   private void remove() {
+      final FairQueue queue = this.next();
+      if (queue == null) {
+         this.last = null;
+      } else {
+         queue.remove();
+      }
+      this.size--;
+   }
+
+   /**
+    * Checks if an encoded message is a PING, so that transports can tell
+    * when a PING is actually written.
+    *
+    * @param message the encoded message
+    *
+    * @return true if the message is a PING
+    */
+   public static boolean isPing(final byte[] message) {
+      return message.length > 5 &&
+             message[0] == 'P' && message[1] == 'I' && message[2] == 'N' && message[3] == 'G' && message[4] == ' ';
+   }
+
+   /**
+    * Gets the target of a raw message: the first parameter of a PRIVMSG or
+    * NOTICE, ignoring case.
+    *
+    * @param message the raw message
+    *
+    * @return the target of the message, or an empty String if it has none
+    */
+   /* package */ static String getTarget(final String message) {
+      int start = 0;
+      if (message.startsWith(":")) {
+         start = message.indexOf(' ') + 1;
+         if (start == 0) {
+            return NO_TARGET;
+         }
+      }
+      final int commandEnd = message.indexOf(' ', start);
+      if (commandEnd < 0) {
+         return NO_TARGET;
+      }
+      final int commandLength = commandEnd - start;
+      if (!(commandLength == 7 && message.regionMatches(true, start, "PRIVMSG", 0, 7)) &&
+          !(commandLength == 6 && message.regionMatches(true, start, "NOTICE", 0, 6))) {
+         return NO_TARGET;
+      }
+      int targetEnd = commandEnd + 1;
+      while (targetEnd < message.length() && " \r\n".indexOf(message.charAt(targetEnd)) < 0) {
+         targetEnd++;
+      }
+      return message.substring(commandEnd + 1, targetEnd).toLowerCase(Locale.ROOT);
+   }
+}
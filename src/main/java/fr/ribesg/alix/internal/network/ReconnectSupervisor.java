@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.Client;
+import fr.ribesg.alix.api.Log;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.network.ReconnectPolicy;
+import fr.ribesg.alix.internal.thread.HashedTimerWheel;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconnects a Server after the Client failed to connect to it or lost
+ * the connection, following its {@link ReconnectPolicy}.
+ * <p>
+ * Failures are counted until the Server welcomes the Client. Attempts
+ * are scheduled on a timer shared by every Server, and ran by the
+ * Client's thread pool as connecting blocks.
+ *
+ * @author Ribesg
+ * @see Server#setReconnectPolicy(ReconnectPolicy)
+ */
+public class ReconnectSupervisor {
+
+   /**
+    * Schedules attempts of every Server
+    */
+   private static final HashedTimerWheel TIMER = new HashedTimerWheel("Reconnect", 100, TimeUnit.MILLISECONDS, 512);
+
+   private final Server server;
+
+   /**
+    * Consecutive failures since the last welcome
+    */
+   private int failures;
+
+   /**
+    * The next attempt, if any
+    */
+   private HashedTimerWheel.Timeout attempt;
+
+   public ReconnectSupervisor(final Server server) {
+      this.server = server;
+   }
+
+   /**
+    * @return the amount of consecutive failures since the Server last
+    * welcomed the Client
+    */
+   public synchronized int getFailures() {
+      return this.failures;
+   }
+
+   /**
+    * @return true if an attempt is scheduled
+    */
+   public synchronized boolean isScheduled() {
+      return this.attempt != null;
+   }
+
+   /**
+    * Called when the Server welcomes the Client. Closes the circuit
+    * breaker.
+    */
+   public synchronized void onWelcome() {
+      this.failures = 0;
+   }
+
+   /**
+    * Called when the Client failed to connect or lost the connection.
+    * Schedules an attempt, unless one is already scheduled or the policy
+    * is disabled.
+    */
+   public synchronized void onFailure() {
+      final ReconnectPolicy policy = this.server.getReconnectPolicy();
+      if (policy.isDisabled() || this.attempt != null) {
+         return;
+      }
+      this.failures++;
+      final long delay = policy.getDelay(this.failures, ThreadLocalRandom.current());
+      if (policy.isOpen(this.failures)) {
+         Log.warn("Failed " + this.failures + " times in a row to connect to " + this.server.getUrl() + ':' + this.server.getPort() +
+                  ", next attempt in " + delay / 1_000 + " seconds");
+      } else {
+         Log.info("Reconnecting to " + this.server.getUrl() + ':' + this.server.getPort() + " in " + delay + " ms");
+      }
+      this.attempt = TIMER.schedule(this::onTimeout, delay, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Cancels the scheduled attempt, if any, and forgets failures.
+    */
+   public synchronized void cancel() {
+      if (this.attempt != null) {
+         this.attempt.cancel();
+         this.attempt = null;
+      }
+      this.failures = 0;
+   }
+
+   /**
+    * Ran by the timer Thread, which should not block.
+    */
+   private void onTimeout() {
+      try {
+         Client.getThreadPool().submit(this::reconnect);
+      } catch (final RejectedExecutionException e) {
+         // The Client is exiting
+         synchronized (this) {
+            this.attempt = null;
+         }
+      }
+   }
+
+   private void reconnect() {
+      synchronized (this) {
+         if (this.attempt == null) {
+            // Cancelled
+            return;
+         }
+         this.attempt = null;
+      }
+      if (this.server.isConnected() || this.server.isLeaving()) {
+         return;
+      }
+      try {
+         this.server.connect();
+      } catch (final RuntimeException e) {
+         Log.error("Failed to reconnect to " + this.server.getUrl() + ':' + this.server.getPort(), e);
+      }
+   }
+}
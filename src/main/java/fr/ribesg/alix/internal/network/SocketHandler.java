@@ -8,15 +8,15 @@ package fr.ribesg.alix.internal.network;
 import fr.ribesg.alix.api.Log;
 import fr.ribesg.alix.api.Server;
 import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.network.SendPriority;
 import fr.ribesg.alix.api.network.ssl.SSLType;
+import fr.ribesg.alix.internal.InboundQueue;
 import fr.ribesg.alix.internal.ReceivedPacketHandler;
 import fr.ribesg.alix.internal.network.ssl.SSLSocketFactory;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.Socket;
 
 /**
@@ -25,7 +25,7 @@ import java.net.Socket;
  *
  * @author Ribesg
  */
-public class SocketHandler {
+public class SocketHandler implements Transport {
 
    private final String  url;
    private final int     port;
@@ -38,6 +38,7 @@ public class SocketHandler {
    private SocketReceiver socketReceiver;
 
    private ReceivedPacketHandler handler;
+   private volatile InboundQueue inbound;
 
    public SocketHandler(final Server server, final String url, final int port) {
       this(server, url, port, SSLType.NONE);
@@ -54,6 +55,7 @@ public class SocketHandler {
       return handler;
    }
 
+   @Override
    public void connect() throws IOException {
       switch (this.sslType) {
          case NONE:
@@ -67,52 +69,65 @@ public class SocketHandler {
             break;
       }
 
-      // Prevent infinite condition on reader.readLine() in SocketReceiver
-      this.socket.setSoTimeout(1_000);
+      // Buffers a whole batch of messages, so that it is sent in one write
+      final OutputStream output = new BufferedOutputStream(this.socket.getOutputStream(), OutboundQueue.MAX_BATCH_LENGTH);
 
-      final BufferedReader reader = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), "UTF-8"));
-      final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream(), "UTF-8"));
+      this.handler = new ReceivedPacketHandler();
+      this.inbound = this.handler.newQueue(this.server);
 
-      this.handler = new ReceivedPacketHandler(this.server.getClient());
-
-      this.socketSender = new SocketSender(this.server, writer);
-      this.socketReceiver = new SocketReceiver(this.server, reader, this.handler);
+      this.socketSender = new SocketSender(this.server, output);
+      this.socketReceiver = new SocketReceiver(this.server, this.socket, this.inbound);
 
       this.socketSender.start();
       this.socketReceiver.start();
       this.handler.start();
    }
 
+   @Override
    public boolean hasAnythingToWrite() {
       return this.socketSender.hasAnythingToWrite();
    }
 
-   public void writeRaw(final String message) {
-      this.socketSender.write(message);
+   @Override
+   public int getQueueDepth(final SendPriority priority) {
+      return this.socketSender.getQueueDepth(priority);
+   }
+
+   @Override
+   public int getInboundQueueDepth() {
+      final InboundQueue inbound = this.inbound;
+      return inbound == null ? 0 : inbound.size();
    }
 
-   public void write(final IrcPacket ircPacket) {
-      this.writeRaw(ircPacket.getRawMessage());
+   @Override
+   public void writeRaw(final String message, final SendPriority priority) {
+      this.socketSender.write(message, priority);
    }
 
-   public void writeRawFirst(final String message) {
-      this.socketSender.writeFirst(message);
+   @Override
+   public void write(final IrcPacket ircPacket, final SendPriority priority) {
+      this.socketSender.write(ircPacket, priority);
    }
 
-   public void writeFirst(final IrcPacket ircPacket) {
-      this.writeRawFirst(ircPacket.getRawMessage());
+   @Override
+   public void writeLast(final IrcPacket ircPacket) {
+      this.socketSender.writeLast(ircPacket);
    }
 
+   @Override
    public void askStop() {
       this.socketSender.askStop();
       this.socketReceiver.askStop();
+      this.inbound.close();
       this.handler.askStop();
    }
 
+   @Override
    public boolean isStopped() {
-      return this.socketSender.isInterrupted() && this.socketReceiver.isInterrupted();
+      return this.socketSender.isInterrupted() && !this.socketReceiver.isAlive();
    }
 
+   @Override
    public void kill() {
       try {
          this.socketReceiver.join();
@@ -131,6 +146,7 @@ public class SocketHandler {
       } catch (final InterruptedException e) {
          Log.error("Failed to join on InternalMessageHandler", e);
       }
+      this.handler.release();
 
       try {
          this.socket.close();
@@ -7,53 +7,123 @@
 package fr.ribesg.alix.internal.network;
 import fr.ribesg.alix.api.Log;
 import fr.ribesg.alix.api.Server;
-import fr.ribesg.alix.internal.ReceivedPacketHandler;
-import fr.ribesg.alix.internal.thread.AbstractRepeatingThread;
+import fr.ribesg.alix.api.metrics.LatencyRecorder;
+import fr.ribesg.alix.api.metrics.ServerMetrics;
+import fr.ribesg.alix.internal.InboundQueue;
+import org.apache.log4j.Level;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.net.SocketTimeoutException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This class handles receiving packets.
- * TODO: All the docz
+ * <p>
+ * It blocks on the Socket until some data is available, without any
+ * timeout, and queues every line as soon as it is received. It is stopped
+ * by closing the Socket, see {@link #askStop()}. If the connection is
+ * closed or broken otherwise, the Server is told that it is lost.
+ * <p>
+ * Received bytes are split into lines by an {@link IrcLineFramer}, and
+ * queued in an {@link InboundQueue} without being decoded. When the queue
+ * is full, this Thread may wait for it to be half empty, which stops
+ * reading from the Socket, see
+ * {@link fr.ribesg.alix.api.network.OverflowPolicy}.
  *
  * @author Ribesg
  */
-public class SocketReceiver extends AbstractRepeatingThread {
+public class SocketReceiver extends Thread {
 
-   private final BufferedReader reader;
+   /**
+    * Maximum amount of bytes read at once
+    */
+   private static final int READ_SIZE = 8 * 1024;
 
-   private final Server                server;
-   private final ReceivedPacketHandler packetHandler;
+   private final Socket        socket;
+   private final InputStream   input;
+   private final IrcLineFramer framer;
 
-   /* package */ SocketReceiver(final Server server, final BufferedReader reader, final ReceivedPacketHandler packetHandler) {
-      super("S-Receiver", 10);
-      this.reader = reader;
+   private final Server          server;
+   private final InboundQueue    inbound;
+   private final ServerMetrics   metrics;
+   private final LatencyRecorder latency;
+
+   /**
+    * Queues received lines, see {@link #onLine(byte[], int, int)}
+    */
+   private final IrcLineFramer.LineConsumer lineConsumer;
+
+   /**
+    * Date of the last successful read, from {@link System#nanoTime()}
+    */
+   private long lastReadDate;
+
+   /**
+    * If this SocketReceiver has been asked to stop
+    */
+   private volatile boolean stopping;
+
+   /* package */ SocketReceiver(final Server server, final Socket socket, final InboundQueue inbound) throws IOException {
+      super("S-Receiver");
+      this.socket = socket;
+      this.input = socket.getInputStream();
+      this.framer = new IrcLineFramer(server.getMaxLineLength(), READ_SIZE);
       this.server = server;
-      this.packetHandler = packetHandler;
+      this.inbound = inbound;
+      this.metrics = server.getMetrics();
+      this.latency = this.metrics.getReceiveLatency();
+      this.lineConsumer = this::onLine;
    }
 
    @Override
-   public void work() {
-      String mes;
+   public void run() {
+      final ByteBuffer buffer = this.framer.getBuffer();
       try {
-         while ((mes = this.reader.readLine()) != null) {
-            Log.debug(server.getUrl() + ':' + server.getPort() + " - RECEIVED MESSAGE: '" + mes + "'");
-            this.packetHandler.queue(this.server, mes);
+         int read;
+         while (!this.stopping && (read = this.input.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+            this.lastReadDate = System.nanoTime();
+            this.metrics.setLastReceivedDate(this.lastReadDate);
+            buffer.position(buffer.position() + read);
+            this.framer.frame(this.lineConsumer);
+         }
+         if (!this.stopping) {
+            Log.info("Connection to " + server.getUrl() + ':' + server.getPort() + " closed by remote host");
+            this.server.connectionLost();
          }
-      } catch (final SocketTimeoutException ignored) {
-         // readLine() Timeout
       } catch (final IOException e) {
-         Log.error("IOException caught when reading from Socket", e);
+         if (!this.stopping) {
+            Log.error("IOException caught when reading from Socket", e);
+            this.server.connectionLost();
+         }
+      }
+   }
+
+   private void onLine(final byte[] buffer, final int offset, final int length) {
+      if (Log.isEnabledFor(Level.DEBUG)) {
+         Log.debug(server.getUrl() + ':' + server.getPort() + " - RECEIVED MESSAGE: '" + new String(buffer, offset, length, StandardCharsets.UTF_8) + "'");
+      }
+      try {
+         this.inbound.put(buffer, offset, length);
+      } catch (final InterruptedException e) {
+         // Asked to stop, see askStop()
+         Thread.currentThread().interrupt();
+         return;
       }
+      this.latency.record(System.nanoTime() - this.lastReadDate);
    }
 
-   /* package */ void kill() {
+   /**
+    * Asks this Thread to stop, by closing the Socket it is blocked on.
+    */
+   public void askStop() {
+      this.stopping = true;
+      this.interrupt();
       try {
-         this.reader.close();
+         this.socket.close();
       } catch (final IOException e) {
-         Log.error("Failed to close Reader stream", e);
+         Log.error("Failed to close Socket", e);
       }
    }
 }
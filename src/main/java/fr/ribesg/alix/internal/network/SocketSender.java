@@ -7,66 +7,100 @@
 package fr.ribesg.alix.internal.network;
 import fr.ribesg.alix.api.Log;
 import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.network.SendPriority;
 import fr.ribesg.alix.internal.thread.AbstractRepeatingThread;
+import org.apache.log4j.Level;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Deque;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class handles sending packets.
- * TODO: All the docz
+ * <p>
+ * Messages are sent as soon as the {@link OutboundQueue} allows it, as
+ * configured by the {@link Server#getFloodControl() FloodControl} of the
+ * Server. Every message which can be sent at once is written before a
+ * single flush.
  *
  * @author Ribesg
  */
 public class SocketSender extends AbstractRepeatingThread {
 
-   private final BufferedWriter writer;
-   private final Deque<String>  buffer;
+   private final OutputStream  output;
+   private final OutboundQueue buffer;
+
+   /**
+    * Messages being sent, encoded, written together then flushed once
+    */
+   private final List<byte[]> batch;
 
    private final Server server;
 
-   /* package */ SocketSender(final Server server, final BufferedWriter writer) {
-      super(" S-Sender ", 50);
-      this.writer = writer;
-      this.buffer = new ConcurrentLinkedDeque<>();
+   /* package */ SocketSender(final Server server, final OutputStream output) {
+      super(" S-Sender ", 0);
+      this.output = output;
+      this.buffer = new OutboundQueue(server.getFloodControl(), server.getSupport());
+      this.batch = new ArrayList<>();
       this.server = server;
    }
 
    @Override
    public void work() throws InterruptedException {
-      String mes;
+      final int count = this.buffer.take(this.batch);
+      boolean ping = false;
       try {
-         while ((mes = this.buffer.poll()) != null) {
-            Log.debug(server.getUrl() + ':' + server.getPort() +
-                      " - SENDING MESSAGE: '" + mes.replace("\n", "\\n").replace("\r", "\\r") + "'");
-            this.writer.write(mes);
-            this.writer.flush();
-            Thread.sleep(1_000);
+         for (final byte[] mes : this.batch) {
+            if (Log.isEnabledFor(Level.DEBUG)) {
+               Log.debug(server.getUrl() + ':' + server.getPort() +
+                         " - SENDING MESSAGE: '" + new String(mes, StandardCharsets.UTF_8).replace("\n", "\\n").replace("\r", "\\r") + "'");
+            }
+            this.output.write(mes);
+            ping |= OutboundQueue.isPing(mes);
+         }
+         this.output.flush();
+         if (ping) {
+            this.server.getMetrics().setLastPingSentDate(System.nanoTime());
          }
       } catch (final IOException e) {
-         Log.error("Failed to send IRC Packet", e);
+         if (!this.isInterrupted()) {
+            Log.error("Failed to send IRC Packet", e);
+            this.server.connectionLost();
+         }
+      } finally {
+         this.batch.clear();
+         this.buffer.sent(count);
       }
    }
 
-   public void write(final String message) {
-      this.buffer.offer(message);
+   public void write(final String message, final SendPriority priority) {
+      this.buffer.offer(message, priority);
+   }
+
+   public void write(final IrcPacket ircPacket, final SendPriority priority) {
+      this.buffer.offer(ircPacket, priority);
+   }
+
+   public void writeLast(final IrcPacket ircPacket) {
+      this.buffer.offerLast(ircPacket);
    }
 
-   public void writeFirst(final String message) {
-      this.buffer.offerFirst(message);
+   /* package */ int getQueueDepth(final SendPriority priority) {
+      return this.buffer.size(priority);
    }
 
    /* package */ boolean hasAnythingToWrite() {
-      return !this.buffer.isEmpty();
+      return this.buffer.hasAnythingToWrite();
    }
 
    /* package */ void kill() {
       try {
-         this.writer.close();
+         this.output.close();
       } catch (final IOException e) {
-         Log.error("Failed to close Writer stream", e);
+         Log.error("Failed to close Output stream", e);
       }
    }
 }
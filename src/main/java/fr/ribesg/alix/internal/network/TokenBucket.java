@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.network.FloodControl;
+
+/**
+ * Token bucket applying a {@link FloodControl}. Tokens are nanoseconds of
+ * budget, regained at the rate of one per nanosecond.
+ * <p>
+ * A line costing more than the capacity of the bucket can be sent once
+ * the bucket is full, leaving it in debt. This class is not thread-safe.
+ *
+ * @author Ribesg
+ */
+/* package */ class TokenBucket {
+
+   private final FloodControl control;
+   private final long         capacity;
+
+   /**
+    * Available budget, in nanoseconds, negative when in debt
+    */
+   private long available;
+
+   /**
+    * Date of the last refill, from {@link System#nanoTime()}
+    */
+   private long lastRefill;
+
+   /**
+    * Builds a full TokenBucket.
+    *
+    * @param control the applied FloodControl
+    * @param now     the current date, from {@link System#nanoTime()}
+    */
+   /* package */ TokenBucket(final FloodControl control, final long now) {
+      this.control = control;
+      this.capacity = control.getCapacity();
+      this.available = this.capacity;
+      this.lastRefill = now;
+   }
+
+   private void refill(final long now) {
+      final long elapsed = now - this.lastRefill;
+      if (elapsed > 0) {
+         this.available = this.available + elapsed >= this.capacity ? this.capacity : this.available + elapsed;
+         this.lastRefill = now;
+      }
+   }
+
+   /**
+    * Gets the time to wait before a line can be sent.
+    *
+    * @param length the length of the line in bytes
+    * @param now    the current date, from {@link System#nanoTime()}
+    *
+    * @return the time to wait in nanoseconds, 0 if the line can be sent now
+    */
+   /* package */ long getDelay(final int length, final long now) {
+      if (this.control.isDisabled()) {
+         return 0;
+      }
+      this.refill(now);
+      final long required = Math.min(this.control.getCost(length), this.capacity);
+      return Math.max(0, required - this.available);
+   }
+
+   /**
+    * Pays for a sent line.
+    *
+    * @param length the length of the line in bytes
+    * @param now    the current date, from {@link System#nanoTime()}
+    */
+   /* package */ void consume(final int length, final long now) {
+      if (!this.control.isDisabled()) {
+         this.refill(now);
+         this.available -= this.control.getCost(length);
+      }
+   }
+}
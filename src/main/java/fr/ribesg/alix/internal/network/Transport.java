@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.network.SendPriority;
+
+import java.io.IOException;
+
+/**
+ * Represents the network link between a {@link fr.ribesg.alix.api.Server}
+ * and the Client.
+ * <p>
+ * Implementations are selected with
+ * {@link fr.ribesg.alix.api.Server#setTransportType(fr.ribesg.alix.api.network.TransportType)}.
+ *
+ * @author Ribesg
+ * @see SocketHandler
+ * @see fr.ribesg.alix.internal.network.nio.SelectorSocketHandler
+ */
+public interface Transport {
+
+   /**
+    * Opens the connection. Once this method returns, received packets are
+    * handed to a {@link fr.ribesg.alix.internal.ReceivedPacketHandler} and
+    * written packets will be sent.
+    *
+    * @throws IOException if the connection could not be established
+    */
+   void connect() throws IOException;
+
+   /**
+    * @return true if some packets are still waiting to be sent, false
+    * otherwise
+    */
+   boolean hasAnythingToWrite();
+
+   /**
+    * @param priority a priority
+    *
+    * @return the amount of messages of this priority waiting to be sent
+    */
+   int getQueueDepth(final SendPriority priority);
+
+   /**
+    * @return the amount of received packets waiting to be handled
+    */
+   int getInboundQueueDepth();
+
+   /**
+    * Queues a raw message to be sent after every already queued message of
+    * the same or higher priority to the same target.
+    *
+    * @param message  the raw message, ending with a CRLF
+    * @param priority the priority of the message
+    */
+   void writeRaw(final String message, final SendPriority priority);
+
+   /**
+    * Queues an IRC Packet to be sent after every already queued packet of
+    * the same or higher priority to the same target.
+    *
+    * @param ircPacket the IRC Packet to send
+    * @param priority  the priority of the IRC Packet
+    */
+   void write(final IrcPacket ircPacket, final SendPriority priority);
+
+   /**
+    * Queues an IRC Packet to be sent after every other queued packet,
+    * whatever their priority. Packets queued after it are discarded.
+    *
+    * @param ircPacket the IRC Packet to send last, like a QUIT
+    */
+   void writeLast(final IrcPacket ircPacket);
+
+   /**
+    * Asks this Transport to stop. This is not blocking.
+    */
+   void askStop();
+
+   /**
+    * @return true if this Transport stopped after a call to
+    * {@link #askStop()}, false otherwise
+    */
+   boolean isStopped();
+
+   /**
+    * Releases every resource held by this Transport. This may block.
+    */
+   void kill();
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+/**
+ * UTF-8 encoding of Strings into existing byte arrays, without any
+ * intermediate buffer or CharsetEncoder.
+ * <p>
+ * Unpaired surrogates are encoded as '?', like
+ * {@link String#getBytes(java.nio.charset.Charset)} does.
+ *
+ * @author Ribesg
+ */
+public final class Utf8 {
+
+   private Utf8() {}
+
+   /**
+    * @param string a String
+    *
+    * @return the length of the String encoded in UTF-8
+    */
+   public static int length(final String string) {
+      final int length = string.length();
+      int result = length;
+      for (int i = 0; i < length; i++) {
+         final char c = string.charAt(i);
+         if (c >= 0x80) {
+            if (c < 0x800) {
+               result++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+               // 4 bytes for the surrogate pair, already counted 2 chars
+               result += 2;
+               i++;
+            } else if (Character.isSurrogate(c)) {
+               // Encoded as '?'
+            } else {
+               result += 2;
+            }
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Encodes a String in UTF-8.
+    *
+    * @param string the String
+    * @param dest   the destination array, with at least
+    *               {@link #length(String)} bytes left after the offset
+    * @param offset the index of the first written byte
+    *
+    * @return the index following the last written byte
+    */
+   public static int encode(final String string, final byte[] dest, final int offset) {
+      final int length = string.length();
+      int pos = offset;
+      for (int i = 0; i < length; i++) {
+         final char c = string.charAt(i);
+         if (c < 0x80) {
+            dest[pos++] = (byte) c;
+         } else if (c < 0x800) {
+            dest[pos++] = (byte) (0xC0 | c >> 6);
+            dest[pos++] = (byte) (0x80 | c & 0x3F);
+         } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+            final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+            dest[pos++] = (byte) (0xF0 | codePoint >> 18);
+            dest[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+            dest[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+            dest[pos++] = (byte) (0x80 | codePoint & 0x3F);
+         } else if (Character.isSurrogate(c)) {
+            dest[pos++] = '?';
+         } else {
+            dest[pos++] = (byte) (0xE0 | c >> 12);
+            dest[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+            dest[pos++] = (byte) (0x80 | c & 0x3F);
+         }
+      }
+      return pos;
+   }
+
+   /**
+    * Encodes a String in UTF-8.
+    *
+    * @param string the String
+    *
+    * @return the encoded String
+    */
+   public static byte[] encode(final String string) {
+      final byte[] result = new byte[length(string)];
+      encode(string, result, 0);
+      return result;
+   }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network.nio;
+
+import fr.ribesg.alix.api.Log;
+import fr.ribesg.alix.internal.ReceivedPacketHandler;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A Thread multiplexing multiple {@link SelectorSocketHandler} on a single
+ * Selector.
+ * <p>
+ * Every {@link SelectorSocketHandler} state is only modified from this
+ * Thread, other Threads have to use {@link #execute(Runnable)}.
+ *
+ * @author Ribesg
+ */
+public class SelectorLoop extends Thread {
+
+   /**
+    * The Selector
+    */
+   private final Selector selector;
+
+   /**
+    * Tasks submitted by other Threads, ran by this Thread before each select
+    */
+   private final Queue<Runnable> tasks;
+
+   /**
+    * Connections handled by this loop, only accessed by this Thread
+    */
+   private final Set<SelectorSocketHandler> connections;
+
+   /**
+    * Copy of {@link #connections}, safe to iterate while connections are
+    * registered or unregistered
+    */
+   private SelectorSocketHandler[] connectionsArray;
+
+   /**
+    * The handler of every packet received by the connections of this loop
+    */
+   private final ReceivedPacketHandler packetHandler;
+
+   /**
+    * Builds and starts a SelectorLoop.
+    *
+    * @param id the id of this loop, used in Thread names
+    *
+    * @throws IOException if the Selector could not be opened
+    */
+   /* package */ SelectorLoop(final int id) throws IOException {
+      super("Selector-" + id);
+      this.setDaemon(true);
+      this.selector = Selector.open();
+      this.tasks = new ConcurrentLinkedQueue<>();
+      this.connections = new HashSet<>();
+      this.connectionsArray = new SelectorSocketHandler[0];
+      this.packetHandler = new ReceivedPacketHandler();
+      this.packetHandler.setDaemon(true);
+      this.packetHandler.start();
+      this.start();
+   }
+
+   /**
+    * @return the handler of every packet received by the connections of
+    * this loop
+    */
+   public ReceivedPacketHandler getPacketHandler() {
+      return this.packetHandler;
+   }
+
+   /**
+    * Runs a task on this loop's Thread.
+    *
+    * @param task the task to run
+    */
+   public void execute(final Runnable task) {
+      this.tasks.add(task);
+      this.selector.wakeup();
+   }
+
+   /**
+    * Wakes up this loop so that it checks if connections have something
+    * to write.
+    */
+   public void wakeup() {
+      this.selector.wakeup();
+   }
+
+   /**
+    * Registers a connected SocketChannel to this loop.
+    * Should only be called from this loop's Thread.
+    *
+    * @param connection the connection to register
+    *
+    * @return the SelectionKey of the connection
+    *
+    * @throws IOException if the channel could not be registered
+    */
+   /* package */ SelectionKey register(final SelectorSocketHandler connection) throws IOException {
+      final SelectionKey key = connection.getChannel().register(this.selector, SelectionKey.OP_READ, connection);
+      this.connections.add(connection);
+      this.connectionsArray = this.connections.toArray(new SelectorSocketHandler[this.connections.size()]);
+      return key;
+   }
+
+   /**
+    * Forgets about a connection.
+    * Should only be called from this loop's Thread.
+    *
+    * @param connection the connection to forget
+    */
+   /* package */ void unregister(final SelectorSocketHandler connection) {
+      if (this.connections.remove(connection)) {
+         this.connectionsArray = this.connections.toArray(new SelectorSocketHandler[this.connections.size()]);
+      }
+   }
+
+   @Override
+   public void run() {
+      while (!this.isInterrupted()) {
+         try {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+               task.run();
+            }
+
+            long now = System.nanoTime();
+            long timeout = -1;
+            for (final SelectorSocketHandler connection : this.connectionsArray) {
+               final long delay = connection.getWriteDelay(now);
+               if (delay >= 0 && (timeout < 0 || delay < timeout)) {
+                  timeout = delay;
+               }
+            }
+
+            if (timeout < 0) {
+               this.selector.select();
+            } else if (timeout == 0) {
+               this.selector.selectNow();
+            } else {
+               this.selector.select(timeout);
+            }
+
+            final Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+               final SelectionKey key = it.next();
+               it.remove();
+               final SelectorSocketHandler connection = (SelectorSocketHandler) key.attachment();
+               try {
+                  if (key.isReadable()) {
+                     connection.onReadable();
+                  }
+                  if (key.isValid() && key.isWritable()) {
+                     connection.onWritable();
+                  }
+               } catch (final CancelledKeyException ignored) {
+                  // Connection closed meanwhile
+               }
+            }
+
+            now = System.nanoTime();
+            for (final SelectorSocketHandler connection : this.connectionsArray) {
+               if (connection.getWriteDelay(now) == 0) {
+                  connection.onWritable();
+               }
+            }
+         } catch (final Throwable t) {
+            Log.error("Error in " + this.getName() + " loop", t);
+         }
+      }
+   }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network.nio;
+
+import java.io.IOException;
+
+/**
+ * Holds the {@link SelectorLoop}s shared by every
+ * {@link SelectorSocketHandler}.
+ * <p>
+ * Loops are created lazily, and connections are spread over them in a
+ * round-robin fashion.
+ *
+ * @author Ribesg
+ */
+public final class SelectorPool {
+
+   /**
+    * Amount of SelectorLoops
+    */
+   private static final int LOOP_COUNT = Math.max(1, Integer.getInteger("alix.selectorThreads", 1));
+
+   /**
+    * The SelectorLoops, created lazily
+    */
+   private static final SelectorLoop[] LOOPS = new SelectorLoop[LOOP_COUNT];
+
+   /**
+    * Index of the next SelectorLoop to use
+    */
+   private static int next = 0;
+
+   /**
+    * Gets the SelectorLoop a new connection should use.
+    *
+    * @return a SelectorLoop
+    *
+    * @throws IOException if a Selector could not be opened
+    */
+   public static synchronized SelectorLoop next() throws IOException {
+      final int i = next;
+      next = (next + 1) % LOOP_COUNT;
+      if (LOOPS[i] == null) {
+         LOOPS[i] = new SelectorLoop(i);
+      }
+      return LOOPS[i];
+   }
+
+   private SelectorPool() {}
+}
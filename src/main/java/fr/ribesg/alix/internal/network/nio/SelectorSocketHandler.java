@@ -0,0 +1,592 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network.nio;
+
+import fr.ribesg.alix.api.Log;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.metrics.LatencyRecorder;
+import fr.ribesg.alix.api.network.SendPriority;
+import fr.ribesg.alix.api.network.ssl.SSLType;
+import fr.ribesg.alix.internal.InboundQueue;
+import fr.ribesg.alix.internal.network.IrcLineFramer;
+import fr.ribesg.alix.internal.network.OutboundQueue;
+import fr.ribesg.alix.internal.network.Transport;
+import fr.ribesg.alix.internal.network.ssl.SSLSocketFactory;
+import org.apache.log4j.Level;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Transport} using a non-blocking SocketChannel handled by a
+ * shared {@link SelectorLoop}.
+ * <p>
+ * Connecting (and the SSL handshake, if any) is done in the calling Thread,
+ * everything else happens in the SelectorLoop's Thread.
+ * <p>
+ * As the SelectorLoop is shared, it never waits for the queue of received
+ * packets: when it is full, lines which could not be queued are kept
+ * aside and reading from this connection is suspended until the queue is
+ * half empty.
+ *
+ * @author Ribesg
+ */
+public class SelectorSocketHandler implements Transport {
+
+   /**
+    * Maximum amount of bytes read at once, without SSL
+    */
+   private static final int READ_SIZE = 16 * 1024;
+
+   private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+   private final String  url;
+   private final int     port;
+   private final SSLType sslType;
+
+   private final Server          server;
+   private final LatencyRecorder latency;
+
+   /**
+    * Queues received lines, see {@link #onLine(byte[], int, int)}
+    */
+   private final IrcLineFramer.LineConsumer lineConsumer;
+
+   /**
+    * Messages waiting to be sent
+    */
+   private final OutboundQueue buffer;
+
+   /**
+    * Messages being sent, encoded, written together
+    */
+   private final List<byte[]> batch;
+
+   /**
+    * Lines which could not be queued because the queue was full, only used
+    * by the SelectorLoop's Thread
+    */
+   private final Deque<byte[]> backlog;
+
+   private SelectorLoop  loop;
+   private SocketChannel channel;
+   private SelectionKey  key;
+
+   /**
+    * SSL Engine, null if this connection doesn't use SSL
+    */
+   private SSLEngine engine;
+
+   /**
+    * Received network bytes not yet unwrapped, only used with SSL
+    */
+   private ByteBuffer netIn;
+
+   /**
+    * Received packets waiting to be handled
+    */
+   private volatile InboundQueue inbound;
+
+   /**
+    * If reading is suspended until {@link #backlog} is queued, only used by
+    * the SelectorLoop's Thread
+    */
+   private boolean readSuspended;
+
+   /**
+    * Splits received bytes into lines, its buffer holds received bytes
+    * not yet handled
+    */
+   private IrcLineFramer framer;
+
+   /**
+    * Date of the last read, from {@link System#nanoTime()}
+    */
+   private long lastReadDate;
+
+   /**
+    * Bytes to send, in read mode
+    */
+   private ByteBuffer appOut;
+
+   /**
+    * Direct buffer reused to send batches of messages, see
+    * {@link #onWritable()}
+    */
+   private ByteBuffer writeBuffer;
+
+   /**
+    * Wrapped bytes to send, in read mode, only used with SSL
+    */
+   private ByteBuffer netOut;
+
+   /**
+    * If some bytes could not be written yet
+    */
+   private volatile boolean writing;
+
+   /**
+    * If the SSL Engine can't wrap pending bytes until it unwraps something,
+    * like during a renegotiation, only used by the SelectorLoop's Thread
+    */
+   private boolean wrapStalled;
+
+   /**
+    * If this connection has been closed
+    */
+   private volatile boolean closed;
+
+   /**
+    * If this connection has been asked to close, see {@link #askStop()}
+    */
+   private volatile boolean stopping;
+
+   public SelectorSocketHandler(final Server server, final String url, final int port, final SSLType sslType) {
+      this.url = url;
+      this.port = port;
+      this.server = server;
+      this.latency = server.getMetrics().getReceiveLatency();
+      this.sslType = sslType;
+      this.buffer = new OutboundQueue(server.getFloodControl(), server.getSupport());
+      this.batch = new ArrayList<>();
+      this.backlog = new ArrayDeque<>();
+      this.lineConsumer = this::onLine;
+   }
+
+   /* package */ SocketChannel getChannel() {
+      return this.channel;
+   }
+
+   @Override
+   public void connect() throws IOException {
+      this.channel = SocketChannel.open(new InetSocketAddress(this.url, this.port));
+      switch (this.sslType) {
+         case NONE:
+            this.engine = null;
+            break;
+         case TRUSTING:
+            this.engine = SSLSocketFactory.getTrustingSSLEngine(this.url, this.port);
+            break;
+         case SECURED:
+            this.engine = SSLSocketFactory.getSecuredSSLEngine(this.url, this.port);
+            break;
+      }
+
+      this.writeBuffer = ByteBuffer.allocateDirect(OutboundQueue.MAX_BATCH_LENGTH);
+      if (this.engine == null) {
+         this.framer = new IrcLineFramer(this.server.getMaxLineLength(), READ_SIZE);
+         this.appOut = ByteBuffer.allocate(0);
+      } else {
+         this.netIn = ByteBuffer.allocate(this.engine.getSession().getPacketBufferSize());
+         this.framer = new IrcLineFramer(this.server.getMaxLineLength(), this.engine.getSession().getApplicationBufferSize());
+         this.appOut = ByteBuffer.allocate(0);
+         this.netOut = ByteBuffer.allocate(this.engine.getSession().getPacketBufferSize());
+         this.netOut.flip();
+         try {
+            this.handshake();
+         } catch (final IOException e) {
+            this.channel.close();
+            throw e;
+         }
+      }
+
+      this.channel.configureBlocking(false);
+      this.loop = SelectorPool.next();
+      this.inbound = this.loop.getPacketHandler().newQueue(this.server);
+      this.loop.execute(() -> {
+         try {
+            this.key = this.loop.register(this);
+            // Application data may have been received along with the last
+            // SSL handshake records, no read event would announce it
+            this.handleReceived();
+         } catch (final IOException e) {
+            Log.error("Failed to register connection to " + this.url + ':' + this.port, e);
+            this.close();
+         }
+      });
+   }
+
+   /**
+    * Blocking SSL handshake, ran before the channel is made non-blocking.
+    *
+    * @throws IOException if the handshake fails
+    */
+   private void handshake() throws IOException {
+      this.engine.beginHandshake();
+      HandshakeStatus status = this.engine.getHandshakeStatus();
+      while (status != HandshakeStatus.FINISHED && status != HandshakeStatus.NOT_HANDSHAKING) {
+         final SSLEngineResult result;
+         if (status == HandshakeStatus.NEED_TASK) {
+            this.runDelegatedTasks();
+            status = this.engine.getHandshakeStatus();
+         } else if (status == HandshakeStatus.NEED_WRAP) {
+            this.netOut.clear();
+            result = this.engine.wrap(EMPTY, this.netOut);
+            this.netOut.flip();
+            while (this.netOut.hasRemaining()) {
+               this.channel.write(this.netOut);
+            }
+            status = result.getHandshakeStatus();
+         } else {
+            this.netIn.flip();
+            result = this.engine.unwrap(this.netIn, this.framer.getBuffer());
+            this.netIn.compact();
+            if (result.getStatus() == Status.BUFFER_UNDERFLOW && this.channel.read(this.netIn) < 0) {
+               throw new EOFException("Connection closed during SSL handshake");
+            } else if (result.getStatus() == Status.CLOSED) {
+               throw new EOFException("SSL Engine closed during SSL handshake");
+            }
+            status = result.getHandshakeStatus();
+         }
+      }
+   }
+
+   private void runDelegatedTasks() {
+      Runnable task;
+      while ((task = this.engine.getDelegatedTask()) != null) {
+         task.run();
+      }
+   }
+
+   /**
+    * Called by the SelectorLoop when the channel has something to read.
+    */
+   /* package */ void onReadable() {
+      try {
+         this.lastReadDate = System.nanoTime();
+         final int read = this.channel.read(this.engine == null ? this.framer.getBuffer() : this.netIn);
+         if (read > 0) {
+            this.server.getMetrics().setLastReceivedDate(this.lastReadDate);
+         }
+         this.handleReceived();
+         if (read < 0) {
+            Log.info("Connection to " + this.url + ':' + this.port + " closed by remote host");
+            this.close();
+         }
+      } catch (final IOException e) {
+         Log.error("IOException caught when reading from Socket", e);
+         this.close();
+      }
+   }
+
+   /**
+    * Unwraps and frames the received bytes, queuing every complete line.
+    *
+    * @throws IOException if the SSL Engine fails
+    */
+   private void handleReceived() throws IOException {
+      if (this.engine != null) {
+         HandshakeStatus status;
+         do {
+            this.unwrap();
+            status = this.engine.getHandshakeStatus();
+            if (status == HandshakeStatus.NEED_WRAP || this.wrapStalled) {
+               this.flush();
+            }
+            // Wrapping may have let the SSL Engine unwrap what's left
+         } while (status == HandshakeStatus.NEED_WRAP &&
+                  this.engine.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP &&
+                  this.netIn.position() > 0);
+      }
+      this.framer.frame(this.lineConsumer);
+      if (!this.backlog.isEmpty() && !this.readSuspended) {
+         this.suspendReading();
+      }
+   }
+
+   /**
+    * Unwraps as much received network bytes as possible. Stops if the SSL
+    * Engine needs to wrap something first.
+    *
+    * @throws IOException if the SSL Engine fails
+    */
+   private void unwrap() throws IOException {
+      this.netIn.flip();
+      try {
+         while (this.netIn.hasRemaining()) {
+            final SSLEngineResult result = this.engine.unwrap(this.netIn, this.framer.getBuffer());
+            if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+               this.runDelegatedTasks();
+            }
+            if (result.getStatus() == Status.BUFFER_OVERFLOW) {
+               // Framing always leaves room for a full SSL record
+               this.framer.frame(this.lineConsumer);
+            } else if (result.getStatus() != Status.OK) {
+               break;
+            } else if (result.bytesConsumed() == 0 && result.bytesProduced() == 0 &&
+                       result.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+               // No progress, the SSL Engine needs to wrap first
+               break;
+            }
+         }
+      } finally {
+         this.netIn.compact();
+      }
+   }
+
+   /**
+    * Queues a received line.
+    */
+   private void onLine(final byte[] buffer, final int offset, final int length) {
+      if (Log.isEnabledFor(Level.DEBUG)) {
+         Log.debug(this.url + ':' + this.port + " - RECEIVED MESSAGE: '" + new String(buffer, offset, length, StandardCharsets.UTF_8) + "'");
+      }
+      if (!this.backlog.isEmpty() || !this.inbound.offer(buffer, offset, length)) {
+         this.backlog.add(Arrays.copyOfRange(buffer, offset, offset + length));
+      }
+      this.latency.record(System.nanoTime() - this.lastReadDate);
+   }
+
+   /**
+    * Stops reading from the channel until the backlog is queued.
+    */
+   private void suspendReading() {
+      this.readSuspended = true;
+      this.updateInterestOps();
+      this.inbound.onSpace(() -> this.loop.execute(this::resumeReading));
+   }
+
+   /**
+    * Queues the backlog, then reads from the channel again if it is empty.
+    * Called by the SelectorLoop once the queue is half empty.
+    */
+   private void resumeReading() {
+      if (this.closed) {
+         return;
+      }
+      byte[] line;
+      while ((line = this.backlog.peek()) != null && this.inbound.offer(line, 0, line.length)) {
+         this.backlog.poll();
+      }
+      if (this.backlog.isEmpty()) {
+         this.readSuspended = false;
+         this.updateInterestOps();
+      } else {
+         this.inbound.onSpace(() -> this.loop.execute(this::resumeReading));
+      }
+   }
+
+   /**
+    * Gets the time to wait before this connection can write something.
+    *
+    * @param now the current date, from {@link System#nanoTime()}
+    *
+    * @return the time to wait in milliseconds, 0 if this connection can
+    * write now, or -1 if it has nothing to write or is waiting for the
+    * channel to be writable
+    */
+   /* package */ long getWriteDelay(final long now) {
+      if (this.closed || this.writing) {
+         return -1;
+      } else {
+         final long delay = this.buffer.getDelay(now);
+         return delay <= 0 ? delay : TimeUnit.NANOSECONDS.toMillis(delay + 999_999);
+      }
+   }
+
+   /**
+    * Called by the SelectorLoop when the channel can be written to or when
+    * the next message can be sent. Every message which can be sent is
+    * copied into a reused direct buffer, already encoded, and written at
+    * once.
+    */
+   /* package */ void onWritable() {
+      try {
+         if (this.flush() && !this.closed) {
+            if (this.buffer.drainTo(this.batch, System.nanoTime()) != 0) {
+               int length = 0;
+               for (final byte[] mes : this.batch) {
+                  length += mes.length;
+               }
+               // Only a single message can be longer than the direct buffer
+               this.appOut = length <= this.writeBuffer.capacity() ? this.writeBuffer : ByteBuffer.allocate(length);
+               this.appOut.clear();
+               boolean ping = false;
+               for (final byte[] mes : this.batch) {
+                  if (Log.isEnabledFor(Level.DEBUG)) {
+                     Log.debug(this.url + ':' + this.port +
+                               " - SENDING MESSAGE: '" + new String(mes, StandardCharsets.UTF_8).replace("\n", "\\n").replace("\r", "\\r") + "'");
+                  }
+                  this.appOut.put(mes);
+                  ping |= OutboundQueue.isPing(mes);
+               }
+               this.appOut.flip();
+               this.batch.clear();
+               this.flush();
+               if (ping) {
+                  this.server.getMetrics().setLastPingSentDate(System.nanoTime());
+               }
+            }
+         }
+      } catch (final IOException e) {
+         Log.error("Failed to send IRC Packet", e);
+         this.close();
+      }
+   }
+
+   /**
+    * Writes as much pending bytes as possible. With SSL, stops if the SSL
+    * Engine needs to unwrap something first: pending bytes are then
+    * written once something is received, see {@link #handleReceived()}.
+    *
+    * @return true if every pending byte has been written, false otherwise
+    *
+    * @throws IOException if writing fails
+    */
+   private boolean flush() throws IOException {
+      if (this.engine == null) {
+         this.channel.write(this.appOut);
+         this.writing = this.appOut.hasRemaining();
+      } else {
+         this.wrapStalled = false;
+         while (true) {
+            if (this.netOut.hasRemaining()) {
+               this.channel.write(this.netOut);
+               if (this.netOut.hasRemaining()) {
+                  break;
+               }
+            }
+            if (!this.appOut.hasRemaining() && this.engine.getHandshakeStatus() != HandshakeStatus.NEED_WRAP) {
+               break;
+            }
+            this.netOut.clear();
+            final SSLEngineResult result = this.engine.wrap(this.appOut, this.netOut);
+            this.netOut.flip();
+            if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+               this.runDelegatedTasks();
+            }
+            if (result.getStatus() == Status.CLOSED) {
+               break;
+            } else if (result.bytesConsumed() == 0 && result.bytesProduced() == 0 &&
+                       result.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+               // No progress, the SSL Engine needs to unwrap first
+               this.wrapStalled = true;
+               break;
+            }
+         }
+         this.writing = this.netOut.hasRemaining() || this.appOut.hasRemaining();
+      }
+      this.updateInterestOps();
+      return !this.writing;
+   }
+
+   private void updateInterestOps() {
+      if (this.key != null && this.key.isValid()) {
+         // While the SSL Engine waits to unwrap, the channel being writable changes nothing
+         final boolean waitWritable = this.writing && !this.wrapStalled;
+         this.key.interestOps((this.readSuspended ? 0 : SelectionKey.OP_READ) | (waitWritable ? SelectionKey.OP_WRITE : 0));
+      }
+   }
+
+   /**
+    * Closes this connection. Should be called from the SelectorLoop's
+    * Thread. The Server is told that the connection is lost if this
+    * Transport was not asked to stop.
+    */
+   private void close() {
+      if (this.closed) {
+         return;
+      }
+      this.closed = true;
+      if (this.engine != null) {
+         this.engine.closeOutbound();
+         try {
+            this.flush();
+         } catch (final IOException ignored) {
+            // Best effort close_notify
+         }
+      }
+      if (this.key != null) {
+         this.key.cancel();
+      }
+      try {
+         this.channel.close();
+      } catch (final IOException e) {
+         Log.error("Failed to close SocketChannel", e);
+      }
+      this.loop.unregister(this);
+      this.backlog.clear();
+      this.inbound.close();
+      if (!this.stopping) {
+         this.server.connectionLost();
+      }
+   }
+
+   @Override
+   public boolean hasAnythingToWrite() {
+      return !this.closed && (this.writing || this.buffer.hasAnythingToWrite());
+   }
+
+   @Override
+   public int getQueueDepth(final SendPriority priority) {
+      return this.buffer.size(priority);
+   }
+
+   @Override
+   public int getInboundQueueDepth() {
+      final InboundQueue inbound = this.inbound;
+      return inbound == null ? 0 : inbound.size();
+   }
+
+   @Override
+   public void writeRaw(final String message, final SendPriority priority) {
+      this.buffer.offer(message, priority);
+      this.loop.wakeup();
+   }
+
+   @Override
+   public void write(final IrcPacket ircPacket, final SendPriority priority) {
+      this.buffer.offer(ircPacket, priority);
+      this.loop.wakeup();
+   }
+
+   @Override
+   public void writeLast(final IrcPacket ircPacket) {
+      this.buffer.offerLast(ircPacket);
+      this.loop.wakeup();
+   }
+
+   @Override
+   public void askStop() {
+      this.stopping = true;
+      this.loop.execute(this::close);
+   }
+
+   @Override
+   public boolean isStopped() {
+      return this.closed;
+   }
+
+   @Override
+   public void kill() {
+      this.stopping = true;
+      if (!this.closed) {
+         try {
+            this.channel.close();
+         } catch (final IOException e) {
+            Log.error("Failed to close SocketChannel", e);
+         }
+         this.loop.execute(this::close);
+      }
+   }
+}
@@ -6,7 +6,9 @@
 
 package fr.ribesg.alix.internal.network.ssl;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
@@ -31,43 +33,114 @@ public class SSLSocketFactory {
     */
    public static Socket getTrustingSSLSocket(final String url, final int port) throws SSLException {
       try {
-         final SSLContext sslContext = SSLContext.getInstance("SSL");
-         sslContext.init(null, new TrustManager[] {
-            new X509TrustManager() {
+         final javax.net.ssl.SSLSocketFactory factory = getTrustingSSLContext().getSocketFactory();
+         final SSLSocket resultSocket = (SSLSocket) factory.createSocket(url, port);
+         resultSocket.setEnabledCipherSuites(filterCipherSuites(resultSocket.getEnabledCipherSuites()));
+         resultSocket.startHandshake();
+         return resultSocket;
+      } catch (Exception e) {
+         throw new SSLException("Failed to create SSL socket", e);
+      }
+   }
+
+   /**
+    * Creates a Trusting client-mode SSL Engine: accepts any certificate.
+    * Use with caution.
+    * <p>
+    * The handshake is not started.
+    *
+    * @param url  the url to connect to
+    * @param port the port to connect to
+    *
+    * @return a SSL Engine
+    *
+    * @throws SSLException if something went wrong
+    */
+   public static SSLEngine getTrustingSSLEngine(final String url, final int port) throws SSLException {
+      try {
+         final SSLEngine engine = getTrustingSSLContext().createSSLEngine(url, port);
+         engine.setUseClientMode(true);
+         engine.setEnabledCipherSuites(filterCipherSuites(engine.getEnabledCipherSuites()));
+         return engine;
+      } catch (Exception e) {
+         throw new SSLException("Failed to create SSL engine", e);
+      }
+   }
+
+   /**
+    * Creates a Secured client-mode SSL Engine: the certificate of the
+    * Server has to be trusted by the default trust store of the JVM and to
+    * match the url.
+    * <p>
+    * The handshake is not started.
+    *
+    * @param url  the url to connect to
+    * @param port the port to connect to
+    *
+    * @return a SSL Engine
+    *
+    * @throws SSLException if something went wrong
+    */
+   public static SSLEngine getSecuredSSLEngine(final String url, final int port) throws SSLException {
+      try {
+         final SSLEngine engine = SSLContext.getDefault().createSSLEngine(url, port);
+         engine.setUseClientMode(true);
+         final SSLParameters parameters = engine.getSSLParameters();
+         parameters.setEndpointIdentificationAlgorithm("HTTPS");
+         parameters.setCipherSuites(filterCipherSuites(engine.getEnabledCipherSuites()));
+         engine.setSSLParameters(parameters);
+         return engine;
+      } catch (Exception e) {
+         throw new SSLException("Failed to create SSL engine", e);
+      }
+   }
 
-               @Override
-               public void checkClientTrusted(final X509Certificate[] x509Certificates, final String s) throws CertificateException {
-                  // No Exception = Accept all
-               }
+   /**
+    * Builds a SSL Context trusting any certificate.
+    *
+    * @return a trusting SSL Context
+    *
+    * @throws Exception if something went wrong
+    */
+   private static SSLContext getTrustingSSLContext() throws Exception {
+      final SSLContext sslContext = SSLContext.getInstance("SSL");
+      sslContext.init(null, new TrustManager[] {
+         new X509TrustManager() {
 
-               @Override
-               public void checkServerTrusted(final X509Certificate[] x509Certificates, final String s) throws CertificateException {
-                  // No Exception = Accept all
-               }
+            @Override
+            public void checkClientTrusted(final X509Certificate[] x509Certificates, final String s) throws CertificateException {
+               // No Exception = Accept all
+            }
 
-               @Override
-               public X509Certificate[] getAcceptedIssuers() {
-                  return null;
-               }
+            @Override
+            public void checkServerTrusted(final X509Certificate[] x509Certificates, final String s) throws CertificateException {
+               // No Exception = Accept all
             }
-         }, null);
-         final javax.net.ssl.SSLSocketFactory factory = sslContext.getSocketFactory();
-         final SSLSocket resultSocket = (SSLSocket) factory.createSocket(url, port);
 
-         // Disable DHE because it doesn't work for some reason
-         final List<String> ciphers = new ArrayList<>();
-         for (final String s : resultSocket.getEnabledCipherSuites()) {
-            if (!s.contains("DHE")) {
-               ciphers.add(s);
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+               return null;
             }
          }
-         resultSocket.setEnabledCipherSuites(ciphers.toArray(new String[ciphers.size()]));
+      }, null);
+      return sslContext;
+   }
 
-         resultSocket.startHandshake();
-         return resultSocket;
-      } catch (Exception e) {
-         throw new SSLException("Failed to create SSL socket", e);
+   /**
+    * Disable DHE because it doesn't work for some reason
+    *
+    * @param cipherSuites the enabled cipher suites
+    *
+    * @return the provided cipher suites, without DHE ones
+    */
+   private static String[] filterCipherSuites(final String[] cipherSuites) {
+      final List<String> ciphers = new ArrayList<>();
+      for (final String s : cipherSuites) {
+         if (!s.contains("DHE")) {
+            ciphers.add(s);
+         }
       }
+      return ciphers.toArray(new String[ciphers.size()]);
    }
 
    /**
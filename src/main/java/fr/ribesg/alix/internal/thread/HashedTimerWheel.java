@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.thread;
+
+import fr.ribesg.alix.api.Log;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks after a delay using a hashed timing wheel.
+ * <p>
+ * The wheel is an array of buckets, each bucket holding the timeouts
+ * expiring during one tick, modulo the wheel length. Scheduling and
+ * cancelling a timeout are O(1) for the calling Thread, which only queues
+ * the timeout. The wheel Thread moves queued timeouts into their bucket
+ * and expires the current bucket once per tick, so tasks run at most one
+ * tick late.
+ * <p>
+ * Tasks are ran by the wheel Thread, so they should not block for long.
+ */
+public class HashedTimerWheel {
+
+   private static final int STATE_PENDING   = 0;
+   private static final int STATE_CANCELLED = 1;
+   private static final int STATE_EXPIRED   = 2;
+
+   /**
+    * A scheduled task, which can be cancelled until it runs.
+    */
+   public final class Timeout {
+
+      private final Runnable      task;
+      private final AtomicInteger state;
+
+      /**
+       * Deadline, in nanoseconds since the wheel start
+       */
+      private final long deadline;
+
+      /**
+       * Amount of full wheel turns left before expiration, only used by
+       * the wheel Thread
+       */
+      private long remainingRounds;
+
+      private Timeout prev;
+      private Timeout next;
+      private Bucket  bucket;
+
+      private Timeout(final Runnable task, final long deadline) {
+         this.task = task;
+         this.state = new AtomicInteger(STATE_PENDING);
+         this.deadline = deadline;
+      }
+
+      /**
+       * Cancels this Timeout.
+       *
+       * @return true if the task will not run, false if it already ran
+       */
+      public boolean cancel() {
+         if (this.state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+            HashedTimerWheel.this.cancelled.add(this);
+            return true;
+         }
+         return this.state.get() == STATE_CANCELLED;
+      }
+
+      /**
+       * @return true if this Timeout has been cancelled
+       */
+      public boolean isCancelled() {
+         return this.state.get() == STATE_CANCELLED;
+      }
+
+      /**
+       * @return true if the task of this Timeout ran or is running
+       */
+      public boolean isExpired() {
+         return this.state.get() == STATE_EXPIRED;
+      }
+
+      private void expire() {
+         if (this.state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+            try {
+               this.task.run();
+            } catch (final Throwable t) {
+               Log.error("Scheduled task threw an error: " + t.getMessage(), t);
+            }
+         }
+      }
+   }
+
+   /**
+    * Doubly linked list of the Timeouts of a wheel slot, only used by the
+    * wheel Thread
+    */
+   private static final class Bucket {
+
+      private Timeout head;
+      private Timeout tail;
+
+      private void add(final Timeout timeout) {
+         timeout.bucket = this;
+         if (this.head == null) {
+            this.head = this.tail = timeout;
+         } else {
+            this.tail.next = timeout;
+            timeout.prev = this.tail;
+            this.tail = timeout;
+         }
+      }
+
+      private Timeout remove(final Timeout timeout) {
+         final Timeout next = timeout.next;
+         if (timeout.prev != null) {
+            timeout.prev.next = next;
+         } else {
+            this.head = next;
+         }
+         if (next != null) {
+            next.prev = timeout.prev;
+         } else {
+            this.tail = timeout.prev;
+         }
+         timeout.prev = null;
+         timeout.next = null;
+         timeout.bucket = null;
+         return next;
+      }
+
+      private void expire(final long now) {
+         Timeout timeout = this.head;
+         while (timeout != null) {
+            if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+               final Timeout next = this.remove(timeout);
+               timeout.expire();
+               timeout = next;
+            } else if (timeout.isCancelled()) {
+               timeout = this.remove(timeout);
+            } else {
+               timeout.remainingRounds--;
+               timeout = timeout.next;
+            }
+         }
+      }
+   }
+
+   private final long     tickDuration;
+   private final Bucket[] wheel;
+   private final int      mask;
+
+   /**
+    * Start date of the wheel, from {@link System#nanoTime()}
+    */
+   private final long startTime;
+
+   /**
+    * Timeouts scheduled but not yet in their bucket
+    */
+   private final Queue<Timeout> pending;
+
+   /**
+    * Timeouts cancelled but maybe still in their bucket
+    */
+   private final Queue<Timeout> cancelled;
+
+   private final Thread worker;
+
+   /**
+    * Amount of ticks elapsed, only used by the wheel Thread
+    */
+   private long tick;
+
+   /**
+    * Builds and starts a HashedTimerWheel.
+    *
+    * @param name          the name of the wheel Thread
+    * @param tickDuration  the duration of a tick
+    * @param unit          the unit of tickDuration
+    * @param ticksPerWheel the amount of buckets, rounded up to a power of 2
+    */
+   public HashedTimerWheel(final String name, final long tickDuration, final TimeUnit unit, final int ticksPerWheel) {
+      if (tickDuration <= 0) {
+         throw new IllegalArgumentException("Invalid tick duration: " + tickDuration);
+      }
+      if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+         throw new IllegalArgumentException("Invalid amount of ticks per wheel: " + ticksPerWheel);
+      }
+      this.tickDuration = unit.toNanos(tickDuration);
+      int length = 1;
+      while (length < ticksPerWheel) {
+         length <<= 1;
+      }
+      this.wheel = new Bucket[length];
+      for (int i = 0; i < length; i++) {
+         this.wheel[i] = new Bucket();
+      }
+      this.mask = length - 1;
+      this.pending = new ConcurrentLinkedQueue<>();
+      this.cancelled = new ConcurrentLinkedQueue<>();
+      this.startTime = System.nanoTime();
+      this.worker = new Thread(this::run, name);
+      this.worker.setDaemon(true);
+      this.worker.start();
+   }
+
+   /**
+    * Schedules a task.
+    *
+    * @param task  the task
+    * @param delay the delay after which the task should run
+    * @param unit  the unit of delay
+    *
+    * @return the Timeout of the task, which can be cancelled
+    */
+   public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+      final long nanos = Math.max(0, unit.toNanos(delay));
+      long deadline = System.nanoTime() - this.startTime + nanos;
+      if (deadline < 0) {
+         deadline = Long.MAX_VALUE;
+      }
+      final Timeout timeout = new Timeout(task, deadline);
+      this.pending.add(timeout);
+      return timeout;
+   }
+
+   /**
+    * Stops the wheel Thread. Pending tasks will never run.
+    */
+   public void stop() {
+      this.worker.interrupt();
+   }
+
+   private void run() {
+      try {
+         while (!Thread.currentThread().isInterrupted()) {
+            final long now = this.waitForNextTick();
+            this.removeCancelled();
+            this.transferPending();
+            this.wheel[(int) (this.tick & this.mask)].expire(now);
+            this.tick++;
+         }
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * @return the current time, in nanoseconds since the wheel start
+    */
+   private long waitForNextTick() throws InterruptedException {
+      final long deadline = this.tickDuration * (this.tick + 1);
+      while (true) {
+         final long now = System.nanoTime() - this.startTime;
+         final long sleepTime = deadline - now;
+         if (sleepTime <= 0) {
+            return now;
+         }
+         TimeUnit.NANOSECONDS.sleep(sleepTime);
+      }
+   }
+
+   private void removeCancelled() {
+      Timeout timeout;
+      while ((timeout = this.cancelled.poll()) != null) {
+         if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+         }
+      }
+   }
+
+   private void transferPending() {
+      Timeout timeout;
+      while ((timeout = this.pending.poll()) != null) {
+         if (!timeout.isCancelled()) {
+            final long expirationTick = Math.max(timeout.deadline / this.tickDuration, this.tick);
+            timeout.remainingRounds = (expirationTick - this.tick) / this.wheel.length;
+            this.wheel[(int) (expirationTick & this.mask)].add(timeout);
+         }
+      }
+   }
+}
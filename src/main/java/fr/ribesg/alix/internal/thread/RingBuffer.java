@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.thread;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free queue for a single producer Thread and a single
+ * consumer Thread.
+ * <p>
+ * Elements are stored in an array used as a ring, indexed by two ever
+ * increasing sequences: the next one to write, only written by the
+ * producer, and the next one to read, only written by the consumer. Each
+ * side caches the other's sequence, and only reads it again when the ring
+ * looks full or empty.
+ * <p>
+ * This class does not block, waiting is up to its users.
+ *
+ * @param <E> the type of elements
+ *
+ * @author Ribesg
+ */
+public final class RingBuffer<E> {
+
+   private final Object[] ring;
+   private final int      mask;
+
+   /**
+    * Sequence of the next element to write
+    */
+   private final AtomicLong tail;
+
+   /**
+    * Sequence of the next element to read
+    */
+   private final AtomicLong head;
+
+   /**
+    * Last read value of {@link #head}, only used by the producer
+    */
+   private long cachedHead;
+
+   /**
+    * Last read value of {@link #tail}, only used by the consumer
+    */
+   private long cachedTail;
+
+   /**
+    * Builds a RingBuffer.
+    *
+    * @param capacity the maximum amount of elements, rounded up to a power
+    *                 of 2
+    */
+   public RingBuffer(final int capacity) {
+      if (capacity <= 0 || capacity > 1 << 30) {
+         throw new IllegalArgumentException("Invalid capacity: " + capacity);
+      }
+      int length = 1;
+      while (length < capacity) {
+         length <<= 1;
+      }
+      this.ring = new Object[length];
+      this.mask = length - 1;
+      this.tail = new AtomicLong();
+      this.head = new AtomicLong();
+   }
+
+   /**
+    * @return the maximum amount of elements
+    */
+   public int capacity() {
+      return this.ring.length;
+   }
+
+   /**
+    * Adds an element. Should only be called by the producer.
+    *
+    * @param element the element
+    *
+    * @return true if the element was added, false if the ring is full
+    */
+   public boolean offer(final E element) {
+      final long tail = this.tail.get();
+      if (tail - this.cachedHead >= this.ring.length) {
+         this.cachedHead = this.head.get();
+         if (tail - this.cachedHead >= this.ring.length) {
+            return false;
+         }
+      }
+      this.ring[(int) (tail & this.mask)] = element;
+      // Volatile write, so that a consumer about to wait sees it
+      this.tail.set(tail + 1);
+      return true;
+   }
+
+   /**
+    * Removes an element. Should only be called by the consumer.
+    *
+    * @return the oldest element, or null if the ring is empty
+    */
+   @SuppressWarnings("unchecked")
+   public E poll() {
+      final long head = this.head.get();
+      if (head >= this.cachedTail) {
+         this.cachedTail = this.tail.get();
+         if (head >= this.cachedTail) {
+            return null;
+         }
+      }
+      final int index = (int) (head & this.mask);
+      final E element = (E) this.ring[index];
+      this.ring[index] = null;
+      // Volatile write, so that a producer about to wait sees it
+      this.head.set(head + 1);
+      return element;
+   }
+
+   /**
+    * @return the amount of elements, which may already have changed
+    */
+   public int size() {
+      final long head = this.head.get();
+      return (int) Math.max(0, Math.min(this.ring.length, this.tail.get() - head));
+   }
+
+   /**
+    * @return true if the ring is empty, which may already have changed
+    */
+   public boolean isEmpty() {
+      return this.tail.get() == this.head.get();
+   }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.thread;
+
+import fr.ribesg.alix.api.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Gives access to virtual Threads when running on Java 21 or later, while
+ * Alix is still compiled for Java 8.
+ * <p>
+ * Everything is looked up once with reflection. On older Java versions,
+ * {@link #isSupported()} returns false and the other methods throw an
+ * UnsupportedOperationException.
+ *
+ * @author Ribesg
+ */
+public final class VirtualThreads {
+
+   /**
+    * Thread.ofVirtual(), null if not supported
+    */
+   private static final Method OF_VIRTUAL;
+
+   /**
+    * Thread.Builder#name(String, long)
+    */
+   private static final Method NAME;
+
+   /**
+    * Thread.Builder#factory()
+    */
+   private static final Method FACTORY;
+
+   /**
+    * Thread#isVirtual()
+    */
+   private static final Method IS_VIRTUAL;
+
+   /**
+    * Executors.newThreadPerTaskExecutor(ThreadFactory)
+    */
+   private static final Method THREAD_PER_TASK;
+
+   static {
+      Method ofVirtual = null, name = null, factory = null, isVirtual = null, threadPerTask = null;
+      try {
+         ofVirtual = Thread.class.getMethod("ofVirtual");
+         final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+         name = builder.getMethod("name", String.class, long.class);
+         factory = builder.getMethod("factory");
+         isVirtual = Thread.class.getMethod("isVirtual");
+         threadPerTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+         // Preview in Java 19 and 20, only usable with --enable-preview
+         ofVirtual.invoke(null);
+      } catch (final ReflectiveOperationException | RuntimeException e) {
+         ofVirtual = null;
+      }
+      OF_VIRTUAL = ofVirtual;
+      NAME = name;
+      FACTORY = factory;
+      IS_VIRTUAL = isVirtual;
+      THREAD_PER_TASK = threadPerTask;
+   }
+
+   /**
+    * @return true if virtual Threads can be used, false otherwise
+    */
+   public static boolean isSupported() {
+      return OF_VIRTUAL != null;
+   }
+
+   /**
+    * Builds a factory of virtual Threads.
+    *
+    * @param name the prefix of the names of the Threads, followed by a
+    *             counter
+    *
+    * @return a factory of virtual Threads
+    */
+   public static ThreadFactory newFactory(final String name) {
+      checkSupported();
+      try {
+         final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name + '-', 1L);
+         return (ThreadFactory) FACTORY.invoke(builder);
+      } catch (final IllegalAccessException | InvocationTargetException e) {
+         throw new UnsupportedOperationException("Failed to build virtual Thread factory", e);
+      }
+   }
+
+   /**
+    * Builds an ExecutorService running each task on a new virtual Thread.
+    *
+    * @param name the prefix of the names of the Threads, followed by a
+    *             counter
+    *
+    * @return an ExecutorService running each task on a new virtual Thread
+    */
+   public static ExecutorService newExecutor(final String name) {
+      final ThreadFactory factory = newFactory(name);
+      try {
+         return (ExecutorService) THREAD_PER_TASK.invoke(null, factory);
+      } catch (final IllegalAccessException | InvocationTargetException e) {
+         throw new UnsupportedOperationException("Failed to build virtual Thread executor", e);
+      }
+   }
+
+   /**
+    * @param thread a Thread
+    *
+    * @return true if the Thread is a virtual Thread, false otherwise
+    */
+   public static boolean isVirtual(final Thread thread) {
+      if (!isSupported()) {
+         return false;
+      }
+      try {
+         return (boolean) IS_VIRTUAL.invoke(thread);
+      } catch (final IllegalAccessException | InvocationTargetException e) {
+         Log.error("Failed to check if Thread is virtual", e);
+         return false;
+      }
+   }
+
+   private static void checkSupported() {
+      if (!isSupported()) {
+         throw new UnsupportedOperationException("Virtual Threads require Java 21 or later, running " + System.getProperty("java.version"));
+      }
+   }
+
+   private VirtualThreads() {}
+}
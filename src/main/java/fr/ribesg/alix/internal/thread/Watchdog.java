@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.thread;
+
+import fr.ribesg.alix.api.Log;
+import org.apache.log4j.Level;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports tasks running for longer than a latency budget, while they are
+ * still running, with the stack trace of their Thread.
+ * <p>
+ * Each Thread running watched tasks gets its own {@link Slot}, in which it
+ * writes the task it is running. This Thread checks every slot
+ * periodically, so watching a task only costs a few volatile writes.
+ * Tasks may be nested, like an EventHandler calling an Event: the
+ * innermost task is watched, then the outer task again once it is done.
+ *
+ * @author Ribesg
+ */
+public final class Watchdog extends AbstractRepeatingThread {
+
+   /**
+    * The task ran by a Thread, if any.
+    */
+   public static final class Slot {
+
+      private final Thread thread;
+
+      /**
+       * Nested running tasks and their start dates, outermost first, only
+       * used by the Slot's Thread
+       */
+      private Object[] tasks;
+      private long[]   starts;
+      private int      depth;
+
+      /**
+       * The innermost running task, null if none
+       */
+      private volatile Object task;
+
+      /**
+       * Start date of the innermost running task, from
+       * {@link System#nanoTime()}
+       */
+      private volatile long start;
+
+      /**
+       * Start date of the last reported task, only used by the Watchdog
+       */
+      private long reported;
+
+      private Slot(final Thread thread) {
+         this.thread = thread;
+         this.tasks = new Object[4];
+         this.starts = new long[4];
+      }
+
+      /**
+       * Tells the Watchdog that a task is starting, maybe while another
+       * task is running.
+       *
+       * @param task the task, described by its toString() method
+       */
+      public void enter(final Object task) {
+         if (this.depth == this.tasks.length) {
+            this.tasks = Arrays.copyOf(this.tasks, this.depth * 2);
+            this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+         }
+         final long start = System.nanoTime();
+         this.tasks[this.depth] = task;
+         this.starts[this.depth] = start;
+         this.depth++;
+         this.watch(task, start);
+      }
+
+      /**
+       * Tells the Watchdog that the innermost task is done. The task it
+       * interrupted, if any, is watched again.
+       *
+       * @return the duration of the task, in nanoseconds
+       */
+      public long exit() {
+         final int depth = --this.depth;
+         final long duration = System.nanoTime() - this.starts[depth];
+         this.tasks[depth] = null;
+         if (depth == 0) {
+            this.task = null;
+         } else {
+            this.watch(this.tasks[depth - 1], this.starts[depth - 1]);
+         }
+         return duration;
+      }
+
+      /**
+       * Changes the watched task. The task is written last, see
+       * {@link Watchdog#work()}.
+       */
+      private void watch(final Object task, final long start) {
+         this.task = null;
+         this.start = start;
+         this.task = task;
+      }
+   }
+
+   /**
+    * Maximum amount of stack frames logged at the DEBUG level
+    */
+   private static final int MAX_FRAMES = 16;
+
+   private final Set<Slot>         slots;
+   private final ThreadLocal<Slot> local;
+
+   /**
+    * Latency budget, in nanoseconds
+    */
+   private volatile long budget;
+
+   /**
+    * Builds and starts a Watchdog.
+    *
+    * @param name     the name of this Thread
+    * @param loopTime the delay between each check, in milliseconds
+    * @param budget   the latency budget, in milliseconds
+    */
+   public Watchdog(final String name, final int loopTime, final long budget) {
+      super(name, loopTime);
+      this.slots = ConcurrentHashMap.newKeySet();
+      this.local = ThreadLocal.withInitial(() -> {
+         final Slot slot = new Slot(Thread.currentThread());
+         this.slots.add(slot);
+         return slot;
+      });
+      this.budget = TimeUnit.MILLISECONDS.toNanos(budget);
+      this.setDaemon(true);
+      this.start();
+   }
+
+   /**
+    * @return the Slot of the current Thread
+    */
+   public Slot slot() {
+      return this.local.get();
+   }
+
+   /**
+    * @return the latency budget, in nanoseconds
+    */
+   public long getBudget() {
+      return this.budget;
+   }
+
+   /**
+    * @param budget the latency budget, in milliseconds
+    */
+   public void setBudget(final long budget) {
+      this.budget = TimeUnit.MILLISECONDS.toNanos(budget);
+   }
+
+   @Override
+   protected void work() {
+      final long now = System.nanoTime();
+      final Iterator<Slot> it = this.slots.iterator();
+      while (it.hasNext()) {
+         final Slot slot = it.next();
+         final Object task = slot.task;
+         final long start = slot.start;
+         if (task != slot.task) {
+            // Changed meanwhile, start may not be the start of task
+            continue;
+         }
+         if (task != null && now - start > this.budget && slot.reported != start) {
+            slot.reported = start;
+            final StackTraceElement[] trace = slot.thread.getStackTrace();
+            Log.warn(task + " has been running for " + TimeUnit.NANOSECONDS.toMillis(now - start) + " ms on Thread " +
+                     slot.thread.getName() + (trace.length > 0 ? ", at " + trace[0] : ""));
+            if (Log.isEnabledFor(Level.DEBUG)) {
+               final StringBuilder message = new StringBuilder("Stack trace of ").append(slot.thread.getName());
+               for (int i = 0; i < Math.min(trace.length, MAX_FRAMES); i++) {
+                  message.append("\n\tat ").append(trace[i]);
+               }
+               Log.debug(message.toString());
+            }
+         } else if (task == null && !slot.thread.isAlive()) {
+            it.remove();
+         }
+      }
+   }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api;
+
+import fr.ribesg.alix.api.callback.Callback;
+import fr.ribesg.alix.api.event.Event;
+import fr.ribesg.alix.api.event.EventHandler;
+import fr.ribesg.alix.api.event.EventHandlerExecution;
+import fr.ribesg.alix.api.event.EventHandlerPriority;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.internal.PacketPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventManagerTest {
+
+   private static final Server DUMMY_SERVER = new Server(null, "dummy", "localhost", 0);
+
+   public static class TestEvent extends Event {
+
+      final List<String> calls = new ArrayList<>();
+   }
+
+   public static class SubTestEvent extends TestEvent {}
+
+   public static class SuperHandler {
+
+      @EventHandler(priority = EventHandlerPriority.HIGH)
+      public void onEvent(final Event event) {
+         if (event instanceof TestEvent) {
+            ((TestEvent) event).calls.add("super");
+         }
+      }
+   }
+
+   public static class LowHandler {
+
+      @EventHandler(priority = EventHandlerPriority.LOW)
+      public void onTestEvent(final TestEvent event) {
+         event.calls.add("low");
+      }
+   }
+
+   public static class HighHandler {
+
+      @EventHandler(priority = EventHandlerPriority.HIGH)
+      public void onTestEvent(final TestEvent event) {
+         event.calls.add("high");
+      }
+   }
+
+   public static class ConsumingHandler {
+
+      @EventHandler(priority = EventHandlerPriority.HIGH)
+      public void onTestEvent(final TestEvent event) {
+         event.calls.add("consuming");
+         event.consume();
+      }
+   }
+
+   public static class AllHandler {
+
+      @EventHandler(ignoreConsumed = false)
+      public void onTestEvent(final TestEvent event) {
+         event.calls.add("all");
+      }
+   }
+
+   /**
+    * Not public, can't be compiled with the LambdaMetafactory
+    */
+   private static class FailingHandler {
+
+      @EventHandler(priority = EventHandlerPriority.HIGH)
+      public void onTestEvent(final TestEvent event) {
+         event.calls.add("failing");
+         throw new IllegalStateException("Expected");
+      }
+   }
+
+   @Test
+   public void testDispatch() {
+      final LowHandler low = new LowHandler();
+      final HighHandler high = new HighHandler();
+      final FailingHandler failing = new FailingHandler();
+      EventManager.register(low);
+      EventManager.register(failing);
+      EventManager.register(high);
+      try {
+         final TestEvent event = new TestEvent();
+         EventManager.call(event);
+         Assert.assertEquals(Arrays.asList("failing", "high", "low"), event.calls);
+      } finally {
+         EventManager.unregister(low);
+         EventManager.unregister(failing);
+         EventManager.unregister(high);
+      }
+
+      final TestEvent event = new TestEvent();
+      EventManager.call(event);
+      Assert.assertTrue(event.calls.isEmpty());
+   }
+
+   @Test
+   public void testHierarchy() {
+      final LowHandler low = new LowHandler();
+      EventManager.register(low);
+      try {
+         final SubTestEvent before = new SubTestEvent();
+         EventManager.call(before);
+         Assert.assertEquals(Arrays.asList("low"), before.calls);
+
+         final SuperHandler handler = new SuperHandler();
+         EventManager.register(handler);
+         try {
+            final SubTestEvent event = new SubTestEvent();
+            EventManager.call(event);
+            Assert.assertEquals(Arrays.asList("super", "low"), event.calls);
+         } finally {
+            EventManager.unregister(handler);
+         }
+
+         final SubTestEvent after = new SubTestEvent();
+         EventManager.call(after);
+         Assert.assertEquals(Arrays.asList("low"), after.calls);
+      } finally {
+         EventManager.unregister(low);
+      }
+   }
+
+   @Test
+   public void testIgnoreConsumed() {
+      final ConsumingHandler consuming = new ConsumingHandler();
+      final LowHandler low = new LowHandler();
+      final AllHandler all = new AllHandler();
+      EventManager.register(consuming);
+      EventManager.register(low);
+      EventManager.register(all);
+      try {
+         final long skipped = EventManager.getSkippedInvocationCount();
+         final TestEvent event = new TestEvent();
+         EventManager.call(event);
+         Assert.assertEquals(Arrays.asList("consuming", "all"), event.calls);
+         Assert.assertEquals(skipped + 1, EventManager.getSkippedInvocationCount());
+      } finally {
+         EventManager.unregister(consuming);
+         EventManager.unregister(low);
+         EventManager.unregister(all);
+      }
+   }
+
+   public static class PacketHandler {
+
+      final List<String> calls = new ArrayList<>();
+
+      @EventHandler(priority = EventHandlerPriority.INTERNAL)
+      public void onReceivedPacket(final ReceivedPacketEvent event) {
+         this.calls.add("handler");
+      }
+   }
+
+   private static Callback callback(final List<String> calls, final String name, final EventHandlerPriority priority, final boolean done, final String... codes) {
+      return new Callback(priority, codes) {
+
+         @Override
+         public boolean onReceivedPacket(final ReceivedPacketEvent event) {
+            calls.add(name + ':' + event.getPacket().getRawCommandString());
+            return done;
+         }
+      };
+   }
+
+   @Test
+   public void testCallbackRouting() {
+      final PacketHandler handler = new PacketHandler();
+      final List<String> calls = handler.calls;
+      final Callback names = callback(calls, "names", EventHandlerPriority.LOW, false, "353", "366");
+      final Callback any = callback(calls, "any", EventHandlerPriority.HIGH, false);
+      final Callback once = callback(calls, "once", EventHandlerPriority.LOW, true, "PING", "366");
+      EventManager.register(handler);
+      EventManager.register(names);
+      EventManager.register(any);
+      EventManager.register(once);
+      try {
+         EventManager.call(new ReceivedPacketEvent(DUMMY_SERVER, IrcPacket.parseMessage("PING :server")));
+         EventManager.call(new ReceivedPacketEvent(DUMMY_SERVER, IrcPacket.parseMessage(":server 353 nick = #chan :nick")));
+         EventManager.call(new ReceivedPacketEvent(DUMMY_SERVER, IrcPacket.parseMessage(":server 366 nick #chan :End")));
+         Assert.assertEquals(Arrays.asList(
+            "any:PING", "handler", "once:PING",
+            "any:353", "handler", "names:353",
+            "any:366", "handler", "names:366"
+         ), calls);
+         Assert.assertFalse(once.isEnabled());
+      } finally {
+         EventManager.unregister(handler);
+         EventManager.unregister(names);
+         EventManager.unregister(any);
+      }
+
+      calls.clear();
+      EventManager.call(new ReceivedPacketEvent(DUMMY_SERVER, IrcPacket.parseMessage(":server 366 nick #chan :End")));
+      Assert.assertTrue(calls.isEmpty());
+   }
+
+   @Test
+   public void testCallbackTimeout() throws InterruptedException {
+      // Initializes logging, which may be slow
+      EventManager.call(new TestEvent());
+
+      final CountDownLatch timedOut = new CountDownLatch(1);
+      final List<String> calls = new ArrayList<>();
+      final Callback slow = new Callback(50, "PONG") {
+
+         @Override
+         public boolean onReceivedPacket(final ReceivedPacketEvent event) {
+            return true;
+         }
+
+         @Override
+         public void onTimeout() {
+            timedOut.countDown();
+         }
+      };
+      final Callback done = new Callback(100, "PING") {
+
+         @Override
+         public boolean onReceivedPacket(final ReceivedPacketEvent event) {
+            return true;
+         }
+
+         @Override
+         public void onTimeout() {
+            calls.add("timeout");
+         }
+      };
+      EventManager.register(slow);
+      EventManager.register(done);
+      EventManager.call(new ReceivedPacketEvent(DUMMY_SERVER, IrcPacket.parseMessage("PING :server")));
+
+      Assert.assertTrue(timedOut.await(1, TimeUnit.SECONDS));
+      Assert.assertFalse(slow.isEnabled());
+      Thread.sleep(200);
+      Assert.assertTrue(calls.isEmpty());
+   }
+
+   public static class KeyedEvent extends Event {
+
+      final String         key;
+      final int            value;
+      final CountDownLatch done;
+
+      public KeyedEvent(final String key, final int value, final CountDownLatch done) {
+         this.key = key;
+         this.value = value;
+         this.done = done;
+      }
+
+      @Override
+      public Object getOrderingKey() {
+         return this.key;
+      }
+   }
+
+   public static class ExecutionHandler {
+
+      final List<Thread>  threads = Collections.synchronizedList(new ArrayList<>());
+      final List<Integer> ordered = Collections.synchronizedList(new ArrayList<>());
+
+      @EventHandler(execution = EventHandlerExecution.ASYNC)
+      public void onAsync(final KeyedEvent event) {
+         this.threads.add(Thread.currentThread());
+         event.done.countDown();
+      }
+
+      @EventHandler(execution = EventHandlerExecution.ORDERED)
+      public void onOrdered(final KeyedEvent event) {
+         this.threads.add(Thread.currentThread());
+         if ("#a".equals(event.key)) {
+            this.ordered.add(event.value);
+         }
+         event.done.countDown();
+      }
+   }
+
+   @Test(timeout = 10_000)
+   public void testExecution() throws InterruptedException {
+      final ExecutionHandler handler = new ExecutionHandler();
+      EventManager.register(handler);
+      try {
+         final CountDownLatch done = new CountDownLatch(2 * 2 * 500);
+         for (int i = 0; i < 500; i++) {
+            EventManager.call(new KeyedEvent("#a", i, done));
+            EventManager.call(new KeyedEvent("#b", i, done));
+         }
+         done.await();
+      } finally {
+         EventManager.unregister(handler);
+      }
+      Assert.assertFalse(handler.threads.contains(Thread.currentThread()));
+      Assert.assertEquals(500, handler.ordered.size());
+      for (int i = 0; i < 500; i++) {
+         Assert.assertEquals(i, handler.ordered.get(i).intValue());
+      }
+   }
+
+   public static class AsyncPacketHandler {
+
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch done    = new CountDownLatch(1);
+      volatile String trail;
+
+      @EventHandler(execution = EventHandlerExecution.ASYNC, ignoreConsumed = false)
+      public void onReceivedPacket(final ReceivedPacketEvent event) throws InterruptedException {
+         this.release.await();
+         this.trail = event.getPacket().getTrail();
+         this.done.countDown();
+      }
+   }
+
+   @Test(timeout = 10_000)
+   public void testPooledExecution() throws InterruptedException {
+      final PacketPool pool = new PacketPool(DUMMY_SERVER, 4);
+      final AsyncPacketHandler handler = new AsyncPacketHandler();
+      EventManager.register(handler);
+      try {
+         final byte[] line = "PRIVMSG #a :x".getBytes(StandardCharsets.UTF_8);
+         final ReceivedPacketEvent event = pool.acquire(line, 0, line.length);
+         EventManager.call(event);
+         event.release();
+         // Retained until the handler is done
+         Assert.assertEquals(0, pool.size());
+         handler.release.countDown();
+         handler.done.await();
+         Assert.assertEquals("x", handler.trail);
+         while (pool.size() == 0) {
+            Thread.sleep(1);
+         }
+      } finally {
+         EventManager.unregister(handler);
+      }
+   }
+
+   public static class SlowHandler {
+
+      @EventHandler
+      public void onTestEvent(final TestEvent event) {
+         try {
+            Thread.sleep(100);
+         } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         event.calls.add("slow");
+      }
+   }
+
+   public static class NestingEvent extends Event {
+
+      TestEvent nested;
+   }
+
+   public static class SlowNestingHandler {
+
+      @EventHandler
+      public void onNestingEvent(final NestingEvent event) {
+         try {
+            Thread.sleep(100);
+         } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         // Fast nested call, after the outer handler used its budget
+         event.nested = new TestEvent();
+         EventManager.call(event.nested);
+      }
+   }
+
+   @Test
+   public void testLatencyBudget() {
+      final long budget = EventManager.getLatencyBudget();
+      final long slow = EventManager.getSlowInvocationCount();
+      final SlowHandler handler = new SlowHandler();
+      EventManager.setLatencyBudget(20);
+      EventManager.register(handler);
+      try {
+         final TestEvent event = new TestEvent();
+         EventManager.call(event);
+         Assert.assertEquals(Arrays.asList("slow"), event.calls);
+         Assert.assertEquals(slow + 1, EventManager.getSlowInvocationCount());
+      } finally {
+         EventManager.unregister(handler);
+      }
+
+      final SlowNestingHandler nestingHandler = new SlowNestingHandler();
+      final LowHandler lowHandler = new LowHandler();
+      EventManager.register(nestingHandler);
+      EventManager.register(lowHandler);
+      try {
+         final NestingEvent event = new NestingEvent();
+         EventManager.call(event);
+         Assert.assertEquals(Arrays.asList("low"), event.nested.calls);
+         // The outer handler is still watched once the nested call is done
+         Assert.assertEquals(slow + 2, EventManager.getSlowInvocationCount());
+      } finally {
+         EventManager.unregister(nestingHandler);
+         EventManager.unregister(lowHandler);
+         EventManager.setLatencyBudget(budget);
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testUnregisterUnknown() {
+      EventManager.unregister(new LowHandler());
+   }
+}
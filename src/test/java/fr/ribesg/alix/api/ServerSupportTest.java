@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ServerSupportTest {
+
+   @Test
+   public void testUpdate() {
+      final ServerSupport support = new ServerSupport();
+      support.update(IrcPacket.parseMessage(":irc.test 005 Alix CHANTYPES=# EXCEPTS network=Test :are supported by this server"));
+      Assert.assertEquals("#", support.get("CHANTYPES"));
+      Assert.assertEquals("", support.get("excepts"));
+      Assert.assertEquals("Test", support.get("NETWORK"));
+      Assert.assertNull(support.get("INVEX"));
+      support.update(IrcPacket.parseMessage(":irc.test 005 Alix -EXCEPTS :are supported by this server"));
+      Assert.assertFalse(support.has("EXCEPTS"));
+      Assert.assertTrue(support.has("CHANTYPES"));
+      support.clear();
+      Assert.assertFalse(support.has("CHANTYPES"));
+   }
+
+   @Test
+   public void testTargetMax() {
+      final ServerSupport support = new ServerSupport();
+      Assert.assertEquals(1, support.getTargetMax("PRIVMSG"));
+      Assert.assertEquals(ServerSupport.UNLIMITED, support.getTargetMax("JOIN"));
+      Assert.assertEquals(1, support.getTargetMax("KICK"));
+
+      support.update(IrcPacket.parseMessage(":irc.test 005 Alix MAXTARGETS=3 :are supported by this server"));
+      Assert.assertEquals(3, support.getTargetMax("notice"));
+
+      support.update(IrcPacket.parseMessage(":irc.test 005 Alix TARGMAX=NAMES:1,JOIN:10,PRIVMSG:4,ACCEPT: :are supported by this server"));
+      Assert.assertEquals(4, support.getTargetMax("PRIVMSG"));
+      Assert.assertEquals(3, support.getTargetMax("NOTICE"));
+      Assert.assertEquals(10, support.getTargetMax("JOIN"));
+      Assert.assertEquals(ServerSupport.UNLIMITED, support.getTargetMax("ACCEPT"));
+      Assert.assertEquals(ServerSupport.UNLIMITED, support.getTargetMax("PART"));
+   }
+}
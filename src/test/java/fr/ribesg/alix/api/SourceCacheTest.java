@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api;
+
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SourceCacheTest {
+
+   private static final Server DUMMY_SERVER = new Server(null, null, null, 0);
+
+   @Test
+   public void testSharedSource() {
+      final SourceCache cache = new SourceCache(DUMMY_SERVER, 16);
+      final Source source = cache.get("Ribesg!Ribesg@ribesg.fr");
+      Assert.assertEquals("Ribesg", source.getName());
+      Assert.assertEquals("Ribesg", source.getUserName());
+      Assert.assertEquals("ribesg.fr", source.getHostName());
+      Assert.assertSame(source, cache.get("Ribesg!Ribesg@ribesg.fr"));
+      Assert.assertEquals(1, cache.getHits());
+      Assert.assertEquals(1, cache.getMisses());
+   }
+
+   @Test
+   public void testPacketUsesServerCache() {
+      final IrcPacket packet = IrcPacket.parseMessage(":Ribesg!Ribesg@ribesg.fr PRIVMSG #alix :Hi");
+      Assert.assertSame(packet.getPrefixAsSource(DUMMY_SERVER), DUMMY_SERVER.getSourceCache().get("Ribesg!Ribesg@ribesg.fr"));
+   }
+
+   @Test
+   public void testEviction() {
+      final SourceCache cache = new SourceCache(DUMMY_SERVER, 2);
+      final Source a = cache.get("a!a@a");
+      cache.get("b!b@b");
+      cache.get("a!a@a");
+      cache.get("c!c@c");
+      Assert.assertEquals(2, cache.size());
+      Assert.assertSame(a, cache.get("a!a@a"));
+      Assert.assertEquals(3, cache.getMisses());
+   }
+
+   @Test
+   public void testInvalidate() {
+      final SourceCache cache = new SourceCache(DUMMY_SERVER, 16);
+      final Source source = cache.get("Ribesg!Ribesg@ribesg.fr");
+      cache.get("Other!Other@ribesg.fr");
+      cache.invalidate("Ribesg");
+      Assert.assertEquals(1, cache.size());
+      Assert.assertNotSame(source, cache.get("Ribesg!Ribesg@ribesg.fr"));
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testImmutable() {
+      new SourceCache(DUMMY_SERVER, 16).get("Ribesg").setName("Other");
+   }
+}
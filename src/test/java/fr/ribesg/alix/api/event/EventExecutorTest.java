@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.event;
+
+import fr.ribesg.alix.internal.thread.VirtualThreads;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EventExecutorTest {
+
+   private EventExecutor executor;
+
+   @Before
+   public void setUp() {
+      this.executor = new EventExecutor("Test", 4);
+   }
+
+   @After
+   public void tearDown() throws InterruptedException {
+      this.executor.shutdown();
+      Assert.assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+   }
+
+   private static void await(final CountDownLatch latch) {
+      try {
+         latch.await();
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @Test(timeout = 10_000)
+   public void testOrderPerKey() throws InterruptedException {
+      final List<List<Integer>> results = new ArrayList<>();
+      for (int k = 0; k < 8; k++) {
+         results.add(Collections.synchronizedList(new ArrayList<>()));
+      }
+      final CountDownLatch done = new CountDownLatch(8 * 1_000);
+      for (int i = 0; i < 1_000; i++) {
+         for (int k = 0; k < 8; k++) {
+            final int key = k, value = i;
+            this.executor.execute("#chan" + k, () -> {
+               results.get(key).add(value);
+               done.countDown();
+            });
+         }
+      }
+      done.await();
+      for (final List<Integer> result : results) {
+         Assert.assertEquals(1_000, result.size());
+         for (int i = 0; i < 1_000; i++) {
+            Assert.assertEquals(i, result.get(i).intValue());
+         }
+      }
+      Assert.assertEquals(0, this.executor.getQueued());
+   }
+
+   @Test(timeout = 10_000)
+   public void testParallelKeys() throws InterruptedException {
+      // Would never complete if both keys were ran by a single Thread
+      final CountDownLatch both = new CountDownLatch(2);
+      final CountDownLatch done = new CountDownLatch(2);
+      for (final String key : new String[]{"#a", "#b"}) {
+         this.executor.execute(key, () -> {
+            both.countDown();
+            await(both);
+            done.countDown();
+         });
+      }
+      done.await();
+   }
+
+   @Test(timeout = 10_000)
+   public void testDiscard() throws InterruptedException {
+      this.executor.setMaxQueuedPerKey(2);
+      final List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      this.executor.execute("#a", () -> {
+         running.countDown();
+         await(release);
+      });
+      running.await();
+
+      this.executor.setRejectionPolicy(RejectionPolicy.DISCARD_NEWEST);
+      for (int i = 0; i < 4; i++) {
+         final int value = i;
+         this.executor.execute("#a", () -> result.add(value));
+      }
+      Assert.assertEquals(2, this.executor.getRejected());
+
+      this.executor.setRejectionPolicy(RejectionPolicy.DISCARD_OLDEST);
+      this.executor.execute("#a", () -> result.add(4));
+      Assert.assertEquals(3, this.executor.getRejected());
+      Assert.assertEquals(2, this.executor.getQueued());
+
+      // Other keys are not limited by a full key
+      final CountDownLatch other = new CountDownLatch(1);
+      this.executor.execute("#b", other::countDown);
+      other.await();
+
+      release.countDown();
+      final CountDownLatch last = new CountDownLatch(1);
+      this.executor.setRejectionPolicy(RejectionPolicy.BLOCK);
+      this.executor.execute("#a", last::countDown);
+      last.await();
+      Assert.assertEquals(2, result.size());
+      Assert.assertEquals(Integer.valueOf(1), result.get(0));
+      Assert.assertEquals(Integer.valueOf(4), result.get(1));
+   }
+
+   @Test(timeout = 10_000)
+   public void testBlock() throws InterruptedException {
+      this.executor.setMaxQueued(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      this.executor.execute("#a", () -> await(release));
+      this.executor.execute("#a", () -> {});
+      final Thread submitter = new Thread(() -> this.executor.execute("#b", () -> {}));
+      submitter.start();
+      submitter.join(200);
+      Assert.assertTrue(submitter.isAlive());
+      release.countDown();
+      submitter.join();
+      Assert.assertEquals(0, this.executor.getRejected());
+   }
+
+   @Test(timeout = 10_000)
+   public void testVirtualThreads() throws InterruptedException {
+      if (!VirtualThreads.isSupported()) {
+         try {
+            this.executor.setVirtualThreads(true);
+            Assert.fail();
+         } catch (final UnsupportedOperationException expected) {
+            Assert.assertFalse(this.executor.isVirtualThreads());
+         }
+         return;
+      }
+      this.executor.setVirtualThreads(true);
+      Assert.assertTrue(this.executor.isVirtualThreads());
+
+      // Way more blocked tasks than platform Threads
+      final AtomicInteger platform = new AtomicInteger();
+      final CountDownLatch done = new CountDownLatch(1_000);
+      for (int i = 0; i < 1_000; i++) {
+         this.executor.execute("#chan" + i, () -> {
+            if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+               platform.incrementAndGet();
+            }
+            try {
+               Thread.sleep(1_000);
+            } catch (final InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+            done.countDown();
+         });
+      }
+      Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(0, platform.get());
+
+      // Still in order for each key
+      final List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+      final CountDownLatch ordered = new CountDownLatch(1_000);
+      for (int i = 0; i < 1_000; i++) {
+         final int value = i;
+         this.executor.execute("#a", () -> {
+            result.add(value);
+            ordered.countDown();
+         });
+      }
+      ordered.await();
+      for (int i = 0; i < 1_000; i++) {
+         Assert.assertEquals(i, result.get(i).intValue());
+      }
+
+      this.executor.setVirtualThreads(false);
+      Assert.assertFalse(this.executor.isVirtualThreads());
+   }
+}
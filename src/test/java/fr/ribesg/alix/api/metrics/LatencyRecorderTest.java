@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+   @Test
+   public void testEmpty() {
+      final LatencyRecorder recorder = new LatencyRecorder();
+      Assert.assertEquals(0, recorder.getCount());
+      Assert.assertEquals(0, recorder.getPercentile(99));
+      Assert.assertEquals(0, recorder.getMean(), 0);
+   }
+
+   @Test
+   public void testPercentiles() {
+      final LatencyRecorder recorder = new LatencyRecorder();
+      for (int i = 1; i <= 1_000; i++) {
+         recorder.record(i * 1_000L);
+      }
+      Assert.assertEquals(1_000, recorder.getCount());
+      Assert.assertEquals(1_000_000, recorder.getMax());
+      Assert.assertEquals(500_500, recorder.getMean(), 0.001);
+      assertClose(500_000, recorder.getPercentile(50));
+      assertClose(990_000, recorder.getPercentile(99));
+      Assert.assertEquals(1_000_000, recorder.getPercentile(100));
+
+      recorder.reset();
+      Assert.assertEquals(0, recorder.getCount());
+      Assert.assertEquals(0, recorder.getMax());
+   }
+
+   @Test
+   public void testSmallValues() {
+      final LatencyRecorder recorder = new LatencyRecorder();
+      for (int i = 0; i < 16; i++) {
+         recorder.record(i);
+      }
+      recorder.record(-5);
+      Assert.assertEquals(0, recorder.getPercentile(1));
+      Assert.assertEquals(15, recorder.getPercentile(100));
+   }
+
+   private static void assertClose(final long expected, final long actual) {
+      Assert.assertTrue("Expected ~" + expected + ", got " + actual, Math.abs(expected - actual) <= expected / 8);
+   }
+}
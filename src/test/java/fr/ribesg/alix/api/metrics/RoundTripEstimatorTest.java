@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RoundTripEstimatorTest {
+
+   private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   @Test
+   public void testEmpty() {
+      final RoundTripEstimator estimator = new RoundTripEstimator();
+      Assert.assertEquals(0, estimator.getCount());
+      Assert.assertEquals(RoundTripEstimator.INITIAL_TIMEOUT, estimator.getTimeout());
+   }
+
+   @Test
+   public void testSmoothing() {
+      final RoundTripEstimator estimator = new RoundTripEstimator();
+      estimator.record(16_000 * MS);
+      Assert.assertEquals(16_000 * MS, estimator.getSmoothed());
+      Assert.assertEquals(8_000 * MS, estimator.getVariation());
+      Assert.assertEquals(48_000 * MS, estimator.getTimeout());
+
+      estimator.record(32_000 * MS);
+      Assert.assertEquals(32_000 * MS, estimator.getLast());
+      Assert.assertEquals(18_000 * MS, estimator.getSmoothed());
+      Assert.assertEquals(10_000 * MS, estimator.getVariation());
+
+      // A stable round-trip time converges, and so does the timeout
+      for (int i = 0; i < 100; i++) {
+         estimator.record(20_000 * MS);
+      }
+      Assert.assertEquals(20_000 * MS, estimator.getSmoothed(), MS);
+      Assert.assertEquals(0, estimator.getVariation(), MS);
+      Assert.assertEquals(RoundTripEstimator.MIN_TIMEOUT, estimator.getTimeout());
+
+      estimator.reset();
+      Assert.assertEquals(0, estimator.getCount());
+      Assert.assertEquals(RoundTripEstimator.INITIAL_TIMEOUT, estimator.getTimeout());
+   }
+
+   @Test
+   public void testMinTimeout() {
+      // A fast network doesn't make lagging Servers look lost
+      final RoundTripEstimator estimator = new RoundTripEstimator();
+      estimator.record(50 * MS);
+      Assert.assertEquals(RoundTripEstimator.MIN_TIMEOUT, estimator.getTimeout());
+   }
+
+   @Test
+   public void testMaxTimeout() {
+      final RoundTripEstimator estimator = new RoundTripEstimator();
+      estimator.record(TimeUnit.MINUTES.toNanos(5));
+      Assert.assertEquals(RoundTripEstimator.MAX_TIMEOUT, estimator.getTimeout());
+   }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.api.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ReconnectPolicyTest {
+
+   @Test
+   public void testBackoff() {
+      final ReconnectPolicy policy = new ReconnectPolicy(1_000, 10_000, 10, 60_000);
+      final Random random = new Random(42);
+      final long[] expected = {1_000, 2_000, 4_000, 8_000, 10_000, 10_000};
+      for (int failures = 1; failures <= expected.length; failures++) {
+         for (int i = 0; i < 100; i++) {
+            final long delay = policy.getDelay(failures, random);
+            Assert.assertTrue(delay + " after " + failures + " failures", delay >= expected[failures - 1] / 2 && delay <= expected[failures - 1]);
+         }
+      }
+   }
+
+   @Test
+   public void testJitter() {
+      final ReconnectPolicy policy = new ReconnectPolicy(1_000, 10_000, 10, 60_000);
+      final Random random = new Random(42);
+      final long first = policy.getDelay(1, random);
+      boolean different = false;
+      for (int i = 0; i < 10 && !different; i++) {
+         different = policy.getDelay(1, random) != first;
+      }
+      Assert.assertTrue(different);
+   }
+
+   @Test
+   public void testCircuitBreaker() {
+      final ReconnectPolicy policy = new ReconnectPolicy(1_000, 10_000, 3, 60_000);
+      final Random random = new Random(42);
+      Assert.assertFalse(policy.isOpen(2));
+      Assert.assertTrue(policy.isOpen(3));
+      Assert.assertEquals(60_000, policy.getDelay(3, random));
+      Assert.assertEquals(60_000, policy.getDelay(100, random));
+   }
+
+   @Test
+   public void testLongBackoff() {
+      final ReconnectPolicy policy = new ReconnectPolicy(1, Long.MAX_VALUE, Integer.MAX_VALUE, 0);
+      Assert.assertTrue(policy.getDelay(1_000, new Random(42)) > 0);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalid() {
+      new ReconnectPolicy(1_000, 500, 3, 60_000);
+   }
+}
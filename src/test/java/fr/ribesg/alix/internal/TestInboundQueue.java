@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal;
+
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.network.OverflowPolicy;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestInboundQueue {
+
+   private Server                server;
+   private ReceivedPacketHandler handler;
+
+   @Before
+   public void setUp() {
+      this.server = new Server(null, "dummy", "localhost", 0);
+      this.server.setInboundCapacity(4);
+      // Never started, the queues are polled by the tests
+      this.handler = new ReceivedPacketHandler();
+   }
+
+   private static boolean offer(final InboundQueue queue, final String line) {
+      final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      return queue.offer(bytes, 0, bytes.length);
+   }
+
+   private static String poll(final InboundQueue queue) {
+      final ReceivedPacketEvent event = queue.poll();
+      return event == null ? null : event.getPacket().getRawCommandString() + ' ' + event.getPacket().getTrail();
+   }
+
+   @Test
+   public void testBlock() {
+      final InboundQueue queue = this.handler.newQueue(this.server);
+      for (int i = 0; i < 4; i++) {
+         Assert.assertTrue(offer(queue, "PRIVMSG #a :" + i));
+      }
+      Assert.assertFalse(offer(queue, "PRIVMSG #a :4"));
+      Assert.assertEquals(4, queue.size());
+      Assert.assertEquals(1, this.server.getMetrics().getReaderStalls());
+
+      final AtomicInteger space = new AtomicInteger();
+      queue.onSpace(space::incrementAndGet);
+      Assert.assertEquals("PRIVMSG 0", poll(queue));
+      Assert.assertEquals(0, space.get());
+      Assert.assertEquals("PRIVMSG 1", poll(queue));
+      Assert.assertEquals(1, space.get());
+      Assert.assertEquals("PRIVMSG 2", poll(queue));
+      Assert.assertEquals(1, space.get());
+   }
+
+   @Test
+   public void testDrop() {
+      this.server.setOverflowPolicy(OverflowPolicy.DROP);
+      final InboundQueue queue = this.handler.newQueue(this.server);
+      for (int i = 0; i < 4; i++) {
+         Assert.assertTrue(offer(queue, "PING :" + i));
+      }
+      Assert.assertTrue(offer(queue, ":bob!b@h PRIVMSG #a :dropped"));
+      Assert.assertTrue(offer(queue, ":bob!b@h JOIN #a"));
+      Assert.assertFalse(offer(queue, "PING :4"));
+      Assert.assertEquals(2, this.server.getMetrics().getDroppedPackets());
+      for (int i = 0; i < 4; i++) {
+         Assert.assertEquals("PING " + i, poll(queue));
+      }
+      Assert.assertNull(queue.poll());
+   }
+
+   @Test
+   public void testSpill() {
+      this.server.setOverflowPolicy(OverflowPolicy.SPILL);
+      final InboundQueue queue = this.handler.newQueue(this.server);
+      try {
+         for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(offer(queue, "PRIVMSG #a :" + i));
+         }
+         Assert.assertEquals(10, queue.size());
+         Assert.assertEquals(6, this.server.getMetrics().getSpilledPackets());
+         for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("PRIVMSG " + i, poll(queue));
+         }
+         // Still in order while the spill file is not empty
+         Assert.assertTrue(offer(queue, "PRIVMSG #a :10"));
+         for (int i = 5; i <= 10; i++) {
+            Assert.assertEquals("PRIVMSG " + i, poll(queue));
+         }
+         Assert.assertNull(queue.poll());
+      } finally {
+         queue.release();
+      }
+   }
+
+   @Test
+   public void testClose() {
+      final InboundQueue queue = this.handler.newQueue(this.server);
+      Assert.assertTrue(offer(queue, "PING :0"));
+      queue.close();
+      Assert.assertFalse(queue.isDone());
+      Assert.assertEquals("PING 0", poll(queue));
+      Assert.assertTrue(queue.isDone());
+   }
+
+   @Test(timeout = 10_000)
+   public void testPut() throws InterruptedException {
+      final InboundQueue queue = this.handler.newQueue(this.server);
+      final Thread producer = new Thread(() -> {
+         try {
+            for (int i = 0; i < 100; i++) {
+               final byte[] line = ("PRIVMSG #a :" + i).getBytes(StandardCharsets.UTF_8);
+               queue.put(line, 0, line.length);
+            }
+         } catch (final InterruptedException e) {
+            Assert.fail();
+         }
+      });
+      producer.start();
+      for (int i = 0; i < 100; i++) {
+         String packet;
+         while ((packet = poll(queue)) == null) {
+            Thread.yield();
+         }
+         Assert.assertEquals("PRIVMSG " + i, packet);
+      }
+      producer.join();
+   }
+}
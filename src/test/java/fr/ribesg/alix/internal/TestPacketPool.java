@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal;
+
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class TestPacketPool {
+
+   private final PacketPool pool = new PacketPool(new Server(null, "dummy", "localhost", 0), 2);
+
+   private ReceivedPacketEvent acquire(final String line) {
+      final byte[] bytes = ("garbage" + line + "garbage").getBytes(StandardCharsets.UTF_8);
+      return this.pool.acquire(bytes, 7, bytes.length - 14);
+   }
+
+   @Test
+   public void testRecycle() {
+      final ReceivedPacketEvent event = this.acquire(":bob!b@h PRIVMSG #a #b #c :Hello world");
+      Assert.assertTrue(event.isPooled());
+      final String[] parameters = event.getPacket().getParameters();
+      event.consume();
+      event.release();
+      Assert.assertEquals(1, this.pool.size());
+
+      final ReceivedPacketEvent reused = this.acquire("PING :x");
+      Assert.assertSame(event, reused);
+      Assert.assertFalse(reused.isConsumed());
+      Assert.assertEquals(0, this.pool.size());
+      Assert.assertEquals(new IrcPacket(null, "PING", "x"), reused.getPacket());
+      Assert.assertEquals("PING :x", reused.getPacket().toString());
+      // Decoded Strings are never recycled
+      Assert.assertArrayEquals(new String[]{"#a", "#b", "#c"}, parameters);
+
+      final ReceivedPacketEvent longer = this.acquire(":irc.example.net 005 nick CHANTYPES=# PREFIX=(ov)@+ NICKLEN=30 :are supported");
+      Assert.assertNotSame(event, longer);
+      longer.release();
+      reused.release();
+      Assert.assertSame(event, this.acquire(":irc.example.net 005 nick CHANTYPES=# PREFIX=(ov)@+ NICKLEN=30 :are supported"));
+      Assert.assertEquals(4, event.getPacket().getParameters().length);
+      Assert.assertEquals("irc.example.net", event.getPacket().getPrefix());
+      Assert.assertEquals("are supported", event.getPacket().getTrail());
+   }
+
+   @Test
+   public void testRetain() {
+      final ReceivedPacketEvent event = this.acquire("PING :x");
+      Assert.assertSame(event, event.retain());
+      event.release();
+      Assert.assertEquals(0, this.pool.size());
+      event.release();
+      Assert.assertEquals(1, this.pool.size());
+      try {
+         event.release();
+         Assert.fail();
+      } catch (final IllegalStateException expected) {
+         Assert.assertEquals(1, this.pool.size());
+      }
+      try {
+         event.retain();
+         Assert.fail();
+      } catch (final IllegalStateException expected) {
+         Assert.assertSame(event, this.acquire("PING :y"));
+      }
+   }
+
+   @Test
+   public void testMalformed() {
+      this.acquire("PING :x").release();
+      try {
+         this.acquire(":prefix");
+         Assert.fail();
+      } catch (final IllegalArgumentException expected) {
+         Assert.assertEquals(1, this.pool.size());
+      }
+   }
+
+   @Test
+   public void testNotPooled() {
+      final ReceivedPacketEvent event = new ReceivedPacketEvent(null, new IrcPacket("PING"));
+      Assert.assertFalse(event.isPooled());
+      event.retain().release();
+      event.release();
+   }
+
+   @Test
+   public void testCapacity() {
+      final ReceivedPacketEvent[] events = new ReceivedPacketEvent[3];
+      for (int i = 0; i < events.length; i++) {
+         events[i] = this.acquire("PING :" + i);
+      }
+      for (final ReceivedPacketEvent event : events) {
+         event.release();
+      }
+      Assert.assertEquals(2, this.pool.size());
+   }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.callback;
+
+import fr.ribesg.alix.api.EventManager;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.callback.ErrorReplyException;
+import fr.ribesg.alix.api.callback.ResponseDescriptor;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.IrcPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+public class TestResponseCallback {
+
+   private static final Server DUMMY_SERVER = new Server(null, "dummy", "localhost", 0);
+   private static final Server OTHER_SERVER = new Server(null, "other", "localhost", 0);
+
+   private static CompletableFuture<List<IrcPacket>> request(final ResponseDescriptor descriptor, final String subject) {
+      return request(DUMMY_SERVER, descriptor, subject);
+   }
+
+   private static CompletableFuture<List<IrcPacket>> request(final Server server, final ResponseDescriptor descriptor, final String subject) {
+      final ResponseCallback callback = new ResponseCallback(descriptor, subject, 10_000);
+      callback.setServer(server);
+      EventManager.register(callback);
+      return callback.getFuture();
+   }
+
+   private static void receive(final String... lines) {
+      receive(DUMMY_SERVER, lines);
+   }
+
+   private static void receive(final Server server, final String... lines) {
+      for (final String line : lines) {
+         EventManager.call(new ReceivedPacketEvent(server, IrcPacket.parseMessage(line)));
+      }
+   }
+
+   private static List<String> raw(final CompletableFuture<List<IrcPacket>> future) throws ExecutionException, InterruptedException {
+      return future.get().stream().map(IrcPacket::getRawMessage).collect(Collectors.toList());
+   }
+
+   @Test
+   public void testRequestWithoutParameters() throws InterruptedException {
+      // Built without parameters array, not connected
+      final CompletableFuture<List<IrcPacket>> future = DUMMY_SERVER.request(new IrcPacket("LUSERS"), ResponseDescriptor.WHO);
+      try {
+         future.get();
+         Assert.fail();
+      } catch (final ExecutionException e) {
+         Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+   }
+
+   @Test
+   public void testConcurrentNames() throws ExecutionException, InterruptedException {
+      final CompletableFuture<List<IrcPacket>> a = request(ResponseDescriptor.NAMES, "#a");
+      final CompletableFuture<List<IrcPacket>> b = request(ResponseDescriptor.NAMES, "#B");
+      receive(
+         ":srv 353 me = #a :me alice",
+         ":srv 353 me = #b :bob",
+         ":srv 366 me #a :End of /NAMES list.",
+         ":srv 353 me = #b :carol",
+         ":srv PRIVMSG #b :hello"
+      );
+      Assert.assertTrue(a.isDone());
+      Assert.assertFalse(b.isDone());
+      Assert.assertEquals(2, a.get().size());
+      Assert.assertEquals("#a", a.get().get(0).getParameters()[2]);
+
+      receive(":srv 366 me #b :End of /NAMES list.");
+      Assert.assertEquals(3, b.get().size());
+      Assert.assertEquals("carol", b.get().get(1).getTrail());
+   }
+
+   @Test
+   public void testRepliesWithoutSubject() throws ExecutionException, InterruptedException {
+      final CompletableFuture<List<IrcPacket>> first = request(ResponseDescriptor.WHO, "alice");
+      final CompletableFuture<List<IrcPacket>> second = request(ResponseDescriptor.WHO, "bob");
+      receive(
+         ":srv 352 me #a alice host srv alice H :0 Alice",
+         ":srv 315 me alice :End of /WHO list.",
+         ":srv 352 me * bob host srv bob H :0 Bob",
+         ":srv 315 me bob :End of /WHO list."
+      );
+      Assert.assertEquals(2, first.get().size());
+      Assert.assertEquals("alice", first.get().get(0).getParameters()[5]);
+      Assert.assertEquals(2, second.get().size());
+      Assert.assertEquals("bob", second.get().get(0).getParameters()[5]);
+   }
+
+   @Test
+   public void testOtherServer() throws ExecutionException, InterruptedException {
+      final CompletableFuture<List<IrcPacket>> names = request(ResponseDescriptor.NAMES, "#a");
+      final CompletableFuture<List<IrcPacket>> who = request(ResponseDescriptor.WHO, null);
+      receive(OTHER_SERVER,
+         ":other 353 me = #a :carol",
+         ":other 366 me #a :End of /NAMES list.",
+         ":other 352 me * carol host other carol H :0 Carol",
+         ":other 315 me carol :End of /WHO list."
+      );
+      Assert.assertFalse(names.isDone());
+      Assert.assertFalse(who.isDone());
+
+      receive(
+         ":srv 353 me = #a :me alice",
+         ":srv 366 me #a :End of /NAMES list.",
+         ":srv 352 me * alice host srv alice H :0 Alice"
+      );
+      // Terminating a request sent to another Server keeps replies without subject
+      receive(OTHER_SERVER, ":other 315 me carol :End of /WHO list.");
+      receive(":srv 315 me alice :End of /WHO list.");
+      Assert.assertEquals(2, names.get().size());
+      Assert.assertEquals("alice", names.get().get(0).getTrail().split(" ")[1]);
+      Assert.assertEquals(2, who.get().size());
+      Assert.assertEquals("alice", who.get().get(0).getParameters()[5]);
+   }
+
+   @Test
+   public void testErrorReply() throws InterruptedException {
+      final CompletableFuture<List<IrcPacket>> whois = request(ResponseDescriptor.WHOIS, "nobody");
+      receive(
+         ":srv 401 me nobody :No such nick/channel",
+         ":srv 318 me nobody :End of /WHOIS list."
+      );
+      try {
+         whois.get();
+         Assert.fail();
+      } catch (final ExecutionException e) {
+         Assert.assertTrue(e.getCause() instanceof ErrorReplyException);
+         Assert.assertEquals("401", ((ErrorReplyException) e.getCause()).getReply().getRawCommandString());
+      }
+   }
+
+   @Test
+   public void testCancel() {
+      final ResponseCallback callback = new ResponseCallback(ResponseDescriptor.NAMES, "#a", 10_000);
+      callback.setServer(DUMMY_SERVER);
+      EventManager.register(callback);
+      callback.getFuture().cancel(false);
+      Assert.assertFalse(callback.isEnabled());
+      receive(":srv 366 me #a :End of /NAMES list.");
+      Assert.assertTrue(callback.getFuture().isCancelled());
+   }
+}
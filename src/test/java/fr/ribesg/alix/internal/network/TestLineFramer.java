@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestLineFramer {
+
+   private final List<String> lines = new ArrayList<>();
+
+   private final IrcLineFramer.LineConsumer consumer = (buffer, offset, length) ->
+      this.lines.add(new String(buffer, offset, length, StandardCharsets.UTF_8));
+
+   private void receive(final IrcLineFramer framer, final String data) {
+      framer.getBuffer().put(data.getBytes(StandardCharsets.UTF_8));
+      framer.frame(this.consumer);
+   }
+
+   @Test
+   public void testLineTerminators() {
+      final IrcLineFramer framer = new IrcLineFramer(512, 64);
+      this.receive(framer, "PING :a\r\nPING :b\nPING :c\r\r\n\nPING :d\r\n");
+      Assert.assertEquals(Arrays.asList("PING :a", "PING :b", "PING :c", "PING :d"), this.lines);
+      Assert.assertEquals(0, framer.getBuffer().position());
+   }
+
+   @Test
+   public void testPartialLines() {
+      final IrcLineFramer framer = new IrcLineFramer(512, 64);
+      this.receive(framer, "PRIVMSG #a :he");
+      Assert.assertTrue(this.lines.isEmpty());
+      this.receive(framer, "llo\r");
+      this.receive(framer, "\nPING");
+      this.receive(framer, " :x\r\n");
+      Assert.assertEquals(Arrays.asList("PRIVMSG #a :hello", "PING :x"), this.lines);
+   }
+
+   @Test
+   public void testLineTooLong() {
+      final IrcLineFramer framer = new IrcLineFramer(16, 64);
+      this.receive(framer, "PRIVMSG #a :12\r\nPRIVMSG #a :123\r\nPING :a\r\n");
+      Assert.assertEquals(Arrays.asList("PRIVMSG #a :12", "PING :a"), this.lines);
+   }
+
+   @Test
+   public void testPartialLineTooLong() {
+      final IrcLineFramer framer = new IrcLineFramer(16, 64);
+      this.receive(framer, "PRIVMSG #a :1234");
+      this.receive(framer, "5678\r\nPING :a");
+      this.receive(framer, "\r\n");
+      Assert.assertEquals(Arrays.asList("PING :a"), this.lines);
+   }
+}
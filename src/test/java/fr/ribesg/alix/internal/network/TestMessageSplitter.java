@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestMessageSplitter {
+
+   @Test
+   public void testShortText() {
+      Assert.assertEquals(Collections.singletonList("hello world"), MessageSplitter.split("hello world", 100));
+      Assert.assertEquals(Collections.emptyList(), MessageSplitter.split("", 100));
+   }
+
+   @Test
+   public void testWordBoundaries() {
+      Assert.assertEquals(Arrays.asList("the quick", "brown fox", "jumps"), MessageSplitter.split("the quick brown fox jumps", 10));
+      Assert.assertEquals(Arrays.asList("abcdefghij", "klm no"), MessageSplitter.split("abcdefghijklm no", 10));
+   }
+
+   @Test
+   public void testLineBreaks() {
+      Assert.assertEquals(Arrays.asList("at Foo.bar()", "at Foo.baz()"), MessageSplitter.split("at Foo.bar()\r\n\r\nat Foo.baz()\n", 100));
+   }
+
+   @Test
+   public void testMultibyte() {
+      // 'é' is 2 bytes, '€' is 3 bytes, '😀' is 4 bytes (a surrogate pair)
+      final String text = "ééé€€😀😀é";
+      final List<String> chunks = MessageSplitter.split(text, 7);
+      Assert.assertEquals(Arrays.asList("ééé", "€€", "😀", "😀é"), chunks);
+      for (final String chunk : chunks) {
+         Assert.assertTrue(chunk.getBytes(StandardCharsets.UTF_8).length <= 7);
+      }
+      // A character is never split, even if it does not fit
+      Assert.assertEquals(Arrays.asList("😀", "😀"), MessageSplitter.split("😀😀", 2));
+   }
+}
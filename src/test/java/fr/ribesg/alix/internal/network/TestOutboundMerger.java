@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.ServerSupport;
+import fr.ribesg.alix.api.message.JoinIrcPacket;
+import fr.ribesg.alix.api.message.PrivMsgIrcPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOutboundMerger {
+
+   private static final int UNLIMITED = ServerSupport.UNLIMITED;
+
+   @Test
+   public void testGetTargetMax() {
+      final ServerSupport support = new ServerSupport();
+      Assert.assertEquals(UNLIMITED, OutboundMerger.getTargetMax("JOIN #a\r\n", support));
+      Assert.assertEquals(UNLIMITED, OutboundMerger.getTargetMax(": part #a\r\n", support));
+      Assert.assertEquals(1, OutboundMerger.getTargetMax("PRIVMSG #a :hi\r\n", support));
+      Assert.assertEquals(0, OutboundMerger.getTargetMax("NAMES #a\r\n", support));
+      Assert.assertEquals(0, OutboundMerger.getTargetMax("QUIT\r\n", support));
+   }
+
+   @Test
+   public void testJoin() {
+      Assert.assertEquals("JOIN #a,#b\r\n", OutboundMerger.merge("JOIN #a\r\n", "JOIN #b\r\n", UNLIMITED));
+      Assert.assertEquals("JOIN #b,#a key\r\n", OutboundMerger.merge(
+         new JoinIrcPacket("#a").getRawMessage(),
+         new JoinIrcPacket("#b", "key").getRawMessage(),
+         UNLIMITED));
+      Assert.assertEquals("JOIN #a,#c,#b,#d k1,k3\r\n", OutboundMerger.merge("JOIN #a,#b k1\r\n", "JOIN #c,#d k3\r\n", UNLIMITED));
+      Assert.assertNull(OutboundMerger.merge("JOIN #a\r\n", "JOIN #A\r\n", UNLIMITED));
+      Assert.assertNull(OutboundMerger.merge("JOIN #a\r\n", "JOIN 0\r\n", UNLIMITED));
+      Assert.assertNull(OutboundMerger.merge("JOIN #a,#b\r\n", "JOIN #c\r\n", 2));
+   }
+
+   @Test
+   public void testMessages() {
+      Assert.assertEquals("PRIVMSG #a,bob :hi there\r\n", OutboundMerger.merge(
+         new PrivMsgIrcPacket("#a", "hi there").getRawMessage(),
+         new PrivMsgIrcPacket("bob", "hi there").getRawMessage(),
+         2));
+      Assert.assertNull(OutboundMerger.merge("PRIVMSG #a :hi\r\n", "PRIVMSG #b :ho\r\n", UNLIMITED));
+      Assert.assertNull(OutboundMerger.merge("PRIVMSG #a :hi\r\n", "NOTICE #b :hi\r\n", UNLIMITED));
+      Assert.assertEquals("PART #a,#b :bye\r\n", OutboundMerger.merge("PART #a :bye\r\n", "PART #b :bye\r\n", UNLIMITED));
+      Assert.assertNull(OutboundMerger.merge("PART #a :bye\r\n", "PART #b\r\n", UNLIMITED));
+   }
+
+   @Test
+   public void testLineLength() {
+      final StringBuilder builder = new StringBuilder("JOIN #");
+      while (builder.length() < 508) {
+         builder.append('a');
+      }
+      final String longJoin = builder.append("\r\n").toString();
+      // 508 + 3 + 2 bytes
+      Assert.assertNull(OutboundMerger.merge(longJoin, "JOIN #b\r\n", UNLIMITED));
+      Assert.assertNotNull(OutboundMerger.merge(longJoin, "JOIN #\r\n", UNLIMITED));
+   }
+}
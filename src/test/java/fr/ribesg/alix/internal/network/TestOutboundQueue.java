@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import fr.ribesg.alix.api.ServerSupport;
+import fr.ribesg.alix.api.message.IrcPacket;
+import fr.ribesg.alix.api.message.PingIrcPacket;
+import fr.ribesg.alix.api.message.PongIrcPacket;
+import fr.ribesg.alix.api.network.FloodControl;
+import fr.ribesg.alix.api.network.SendPriority;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class TestOutboundQueue {
+
+   private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+   private static List<String> drain(final OutboundQueue queue, final long now) {
+      final List<String> messages = new ArrayList<>();
+      byte[] message;
+      while ((message = queue.poll(now)) != null) {
+         messages.add(new String(message, StandardCharsets.UTF_8).trim());
+      }
+      return messages;
+   }
+
+   private static List<String> decode(final List<byte[]> messages) {
+      return messages.stream().map(m -> new String(m, StandardCharsets.UTF_8)).collect(Collectors.toList());
+   }
+
+   @Test
+   public void testGetTarget() {
+      Assert.assertEquals("#chan", OutboundQueue.getTarget("PRIVMSG #Chan :hello\r\n"));
+      Assert.assertEquals("bob", OutboundQueue.getTarget(": notice Bob :hello\r\n"));
+      Assert.assertEquals("#a,#b", OutboundQueue.getTarget(":me!u@h PRIVMSG #a,#b :hi\r\n"));
+      Assert.assertEquals("", OutboundQueue.getTarget("JOIN #chan\r\n"));
+      Assert.assertEquals("", OutboundQueue.getTarget("QUIT\r\n"));
+   }
+
+   @Test
+   public void testIsPing() {
+      Assert.assertTrue(OutboundQueue.isPing(new PingIrcPacket("12345").getRawBytes()));
+      Assert.assertFalse(OutboundQueue.isPing(new PongIrcPacket("12345").getRawBytes()));
+      Assert.assertFalse(OutboundQueue.isPing("PRIVMSG #a :PING x\r\n".getBytes(StandardCharsets.UTF_8)));
+   }
+
+   @Test
+   public void testFairness() {
+      final OutboundQueue queue = new OutboundQueue(FloodControl.NONE);
+      for (int i = 0; i < 3; i++) {
+         queue.offer("PRIVMSG #busy :" + i + "\r\n", SendPriority.INTERACTIVE);
+      }
+      queue.offer("PRIVMSG #quiet :a\r\n", SendPriority.INTERACTIVE);
+      queue.offer("JOIN #other\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #quiet :b\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PONG :1\r\n", SendPriority.CONTROL);
+      Assert.assertEquals(7, queue.size());
+      Assert.assertEquals(Arrays.asList(
+         "PONG :1",
+         "PRIVMSG #busy :0", "PRIVMSG #quiet :a", "JOIN #other",
+         "PRIVMSG #busy :1", "PRIVMSG #quiet :b",
+         "PRIVMSG #busy :2"
+      ), drain(queue, System.nanoTime()));
+      Assert.assertTrue(queue.isEmpty());
+      Assert.assertEquals(-1, queue.getDelay(System.nanoTime()));
+   }
+
+   @Test
+   public void testPriorities() {
+      final OutboundQueue queue = new OutboundQueue(FloodControl.NONE);
+      queue.offer("PRIVMSG #log :0\r\n", SendPriority.BULK);
+      queue.offer("PRIVMSG #chan :hi\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #log :1\r\n", SendPriority.BULK);
+      queue.offer("PONG :1\r\n", SendPriority.CONTROL);
+      queue.offer("NICK Alix\r\n", SendPriority.CONTROL);
+      queue.offer("PONG :2\r\n", SendPriority.CONTROL);
+      Assert.assertEquals(3, queue.size(SendPriority.CONTROL));
+      Assert.assertEquals(1, queue.size(SendPriority.INTERACTIVE));
+      Assert.assertEquals(2, queue.size(SendPriority.BULK));
+      Assert.assertEquals(Arrays.asList(
+         "PONG :1", "NICK Alix", "PONG :2",
+         "PRIVMSG #chan :hi",
+         "PRIVMSG #log :0", "PRIVMSG #log :1"
+      ), drain(queue, System.nanoTime()));
+      for (final SendPriority priority : SendPriority.values()) {
+         Assert.assertEquals(0, queue.size(priority));
+      }
+   }
+
+   @Test
+   public void testLast() {
+      final OutboundQueue queue = new OutboundQueue(FloodControl.NONE);
+      for (int i = 0; i < 3; i++) {
+         queue.offer("PRIVMSG #a :" + i + "\r\n", SendPriority.BULK);
+         queue.offer("PRIVMSG #b :" + i + "\r\n", SendPriority.BULK);
+      }
+      queue.offerLast(new IrcPacket(null, "QUIT", "Bye"));
+      queue.offer("PRIVMSG #c :late\r\n", SendPriority.INTERACTIVE);
+      queue.offerLast(new IrcPacket(null, "QUIT", "Again"));
+      Assert.assertEquals(7, queue.size());
+      Assert.assertEquals(Arrays.asList(
+         "PRIVMSG #a :0", "PRIVMSG #b :0",
+         "PRIVMSG #a :1", "PRIVMSG #b :1",
+         "PRIVMSG #a :2", "PRIVMSG #b :2",
+         "QUIT :Bye"
+      ), drain(queue, System.nanoTime()));
+      Assert.assertFalse(queue.hasAnythingToWrite());
+   }
+
+   @Test
+   public void testHigherPriorityOvertakesDelayedLines() {
+      final OutboundQueue queue = new OutboundQueue(new FloodControl(1, 1_000, 0));
+      final long now = System.nanoTime();
+      queue.offer("PRIVMSG #log :0\r\n", SendPriority.BULK);
+      queue.offer("PRIVMSG #log :1\r\n", SendPriority.BULK);
+      Assert.assertEquals(Arrays.asList("PRIVMSG #log :0"), drain(queue, now));
+      queue.offer("PONG :1\r\n", SendPriority.CONTROL);
+      Assert.assertEquals(Arrays.asList("PONG :1"), drain(queue, now + SECOND));
+      Assert.assertEquals(Arrays.asList("PRIVMSG #log :1"), drain(queue, now + 2 * SECOND));
+   }
+
+   @Test
+   public void testMerge() {
+      final ServerSupport support = new ServerSupport();
+      support.update(IrcPacket.parseMessage(":irc.test 005 Alix TARGMAX=PRIVMSG:2 :are supported by this server"));
+      final OutboundQueue queue = new OutboundQueue(FloodControl.NONE, support);
+      queue.offer("JOIN #a\r\n", SendPriority.INTERACTIVE);
+      queue.offer("NAMES #a\r\n", SendPriority.INTERACTIVE);
+      queue.offer("JOIN #b\r\n", SendPriority.INTERACTIVE);
+      queue.offer("JOIN #c key\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #a :hi\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #b :hi\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #c :hi\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #a :bye\r\n", SendPriority.INTERACTIVE);
+      // Would be sent before the second message to #a
+      queue.offer("PRIVMSG #a :hi\r\n", SendPriority.BULK);
+      queue.offer("PRIVMSG #b :bye\r\n", SendPriority.INTERACTIVE);
+      Assert.assertEquals(Arrays.asList(
+         "JOIN #a", "PRIVMSG #a,#b :hi", "PRIVMSG #c :hi", "PRIVMSG #b :bye",
+         "NAMES #a", "PRIVMSG #a :bye",
+         "JOIN #c,#b key",
+         "PRIVMSG #a :hi"
+      ), drain(queue, System.nanoTime()));
+   }
+
+   @Test
+   public void testIrcPacket() {
+      final OutboundQueue queue = new OutboundQueue(FloodControl.NONE);
+      final PongIrcPacket pong = new PongIrcPacket("irc.test");
+      queue.offer(pong, SendPriority.CONTROL);
+      queue.offer(pong, SendPriority.CONTROL);
+      // The cached bytes are sent as is
+      Assert.assertSame(pong.getRawBytes(), queue.poll(System.nanoTime()));
+      Assert.assertSame(pong.getRawBytes(), queue.poll(System.nanoTime()));
+   }
+
+   @Test
+   public void testBurstThenRate() {
+      final OutboundQueue queue = new OutboundQueue(new FloodControl(3, 1_000, 0));
+      final long now = System.nanoTime();
+      for (int i = 0; i < 5; i++) {
+         queue.offer("PRIVMSG #chan :" + i + "\r\n", SendPriority.INTERACTIVE);
+      }
+      Assert.assertEquals(3, drain(queue, now).size());
+      Assert.assertTrue(queue.getDelay(now) > SECOND / 2);
+      Assert.assertEquals(1, drain(queue, now + SECOND).size());
+      Assert.assertEquals(1, drain(queue, now + 2 * SECOND).size());
+      Assert.assertTrue(queue.isEmpty());
+   }
+
+   @Test
+   public void testBatch() throws InterruptedException {
+      final OutboundQueue queue = new OutboundQueue(new FloodControl(3, 1_000, 0));
+      for (int i = 0; i < 5; i++) {
+         queue.offer("MODE #chan" + i + "\r\n", SendPriority.INTERACTIVE);
+      }
+      final List<byte[]> batch = new ArrayList<>();
+      Assert.assertEquals(3, queue.take(batch));
+      Assert.assertEquals(Arrays.asList("MODE #chan0\r\n", "MODE #chan1\r\n", "MODE #chan2\r\n"), decode(batch));
+      Assert.assertEquals(2, queue.size());
+      queue.sent(3);
+      Assert.assertTrue(queue.hasAnythingToWrite());
+      batch.clear();
+      Assert.assertEquals(0, queue.drainTo(batch, System.nanoTime()));
+      Assert.assertTrue(batch.isEmpty());
+   }
+
+   @Test
+   public void testBatchLength() {
+      final OutboundQueue queue = new OutboundQueue(FloodControl.NONE);
+      final StringBuilder builder = new StringBuilder("PRIVMSG #chan :");
+      while (builder.length() < 1_022) {
+         builder.append('x');
+      }
+      final String line = builder.append("\r\n").toString();
+      final int perBatch = OutboundQueue.MAX_BATCH_LENGTH / line.length();
+      for (int i = 0; i < perBatch + 1; i++) {
+         queue.offer(line, SendPriority.BULK);
+      }
+      final List<byte[]> batch = new ArrayList<>();
+      Assert.assertEquals(perBatch, queue.drainTo(batch, System.nanoTime()));
+      Assert.assertEquals(1, queue.drainTo(batch, System.nanoTime()));
+      Assert.assertTrue(queue.isEmpty());
+   }
+
+   @Test
+   public void testByteCost() {
+      final OutboundQueue queue = new OutboundQueue(new FloodControl(4, 1_000, 100));
+      final long now = System.nanoTime();
+      final StringBuilder builder = new StringBuilder("PRIVMSG #chan :");
+      while (builder.length() < 98) {
+         builder.append('x');
+      }
+      final String line = builder.append("\r\n").toString();
+      for (int i = 0; i < 3; i++) {
+         queue.offer(line, SendPriority.INTERACTIVE);
+      }
+      // Each 100 bytes line costs 2 line delays
+      Assert.assertEquals(2, drain(queue, now).size());
+      Assert.assertEquals(0, drain(queue, now + SECOND).size());
+      Assert.assertEquals(1, drain(queue, now + 2 * SECOND).size());
+   }
+
+   @Test
+   public void testLineLongerThanBurst() {
+      final OutboundQueue queue = new OutboundQueue(new FloodControl(1, 1_000, 10));
+      final long now = System.nanoTime();
+      queue.offer("PRIVMSG #chan :this line costs more than the whole bucket\r\n", SendPriority.INTERACTIVE);
+      queue.offer("PRIVMSG #chan :and so does this one\r\n", SendPriority.INTERACTIVE);
+      Assert.assertEquals(1, drain(queue, now).size());
+      Assert.assertEquals(0, drain(queue, now + 2 * SECOND).size());
+   }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class TestUtf8 {
+
+   @Test
+   public void testLength() {
+      Assert.assertEquals(5, Utf8.length("hello"));
+      Assert.assertEquals(6, Utf8.length("héllo"));
+      Assert.assertEquals(3, Utf8.length("€"));
+      Assert.assertEquals(4, Utf8.length("😀"));
+   }
+
+   @Test
+   public void testEncode() {
+      for (final String string : new String[] {"", "hello", "héllo €uro", "😀 smile", "\ud800 unpaired", "trailing \udbff"}) {
+         Assert.assertArrayEquals(string, string.getBytes(StandardCharsets.UTF_8), Utf8.encode(string));
+         Assert.assertEquals(string, string.getBytes(StandardCharsets.UTF_8).length, Utf8.length(string));
+      }
+   }
+}
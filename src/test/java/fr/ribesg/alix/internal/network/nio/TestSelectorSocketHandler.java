@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.network.nio;
+
+import fr.ribesg.alix.api.Client;
+import fr.ribesg.alix.api.EventManager;
+import fr.ribesg.alix.api.Server;
+import fr.ribesg.alix.api.event.ClientLostConnectionEvent;
+import fr.ribesg.alix.api.event.EventHandler;
+import fr.ribesg.alix.api.event.ReceivedPacketEvent;
+import fr.ribesg.alix.api.message.PrivMsgIrcPacket;
+import fr.ribesg.alix.api.network.FloodControl;
+import fr.ribesg.alix.api.network.ReconnectPolicy;
+import fr.ribesg.alix.api.network.TransportType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TestSelectorSocketHandler {
+
+   private static final long TIMEOUT = 5_000;
+
+   public static class TestClient extends Client {
+
+      public TestClient() {
+         super("AlixTestBot");
+      }
+
+      @Override
+      protected boolean load() {
+         return false;
+      }
+   }
+
+   public static class Listener {
+
+      private final Server server;
+
+      final BlockingQueue<String> trails = new LinkedBlockingQueue<>();
+
+      final CountDownLatch lost = new CountDownLatch(1);
+
+      /**
+       * Blocks the handling of received packets while not null
+       */
+      volatile CountDownLatch gate;
+
+      Listener(final Server server) {
+         this.server = server;
+      }
+
+      @EventHandler(ignoreConsumed = false)
+      public void onReceivedPacket(final ReceivedPacketEvent event) throws InterruptedException {
+         if (event.getSource() == this.server) {
+            final CountDownLatch gate = this.gate;
+            if (gate != null) {
+               gate.await();
+            }
+            this.trails.add(event.getPacket().getTrail());
+         }
+      }
+
+      @EventHandler
+      public void onClientLostConnection(final ClientLostConnectionEvent event) {
+         if (event.getServer() == this.server) {
+            this.lost.countDown();
+         }
+      }
+   }
+
+   private ServerSocket   serverSocket;
+   private Server         server;
+   private Listener       listener;
+   private Socket         remote;
+   private BufferedReader remoteIn;
+   private OutputStream   remoteOut;
+
+   @Before
+   public void setUp() throws IOException {
+      this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+      this.serverSocket.setSoTimeout((int) TIMEOUT);
+      this.server = new Server(new TestClient(), "Local", "127.0.0.1", this.serverSocket.getLocalPort());
+      this.server.setTransportType(TransportType.SELECTOR);
+      this.server.setFloodControl(FloodControl.NONE);
+      this.server.setReconnectPolicy(ReconnectPolicy.NONE);
+      this.listener = new Listener(this.server);
+      EventManager.register(this.listener);
+   }
+
+   @After
+   public void tearDown() throws IOException {
+      EventManager.unregister(this.listener, true);
+      if (this.remote != null) {
+         this.remote.close();
+      }
+      this.serverSocket.close();
+   }
+
+   /**
+    * Connects the Server to the local ServerSocket, and reads its
+    * registration.
+    */
+   private void connect() throws IOException {
+      this.server.connect();
+      this.remote = this.serverSocket.accept();
+      this.remote.setSoTimeout((int) TIMEOUT);
+      this.remoteIn = new BufferedReader(new InputStreamReader(this.remote.getInputStream(), StandardCharsets.UTF_8));
+      this.remoteOut = this.remote.getOutputStream();
+      Assert.assertEquals("NICK AlixTestBot", this.remoteIn.readLine());
+      Assert.assertTrue(this.remoteIn.readLine().startsWith("USER "));
+   }
+
+   private void remoteWrite(final String data) throws IOException {
+      this.remoteOut.write(data.getBytes(StandardCharsets.UTF_8));
+      this.remoteOut.flush();
+   }
+
+   private String nextTrail() throws InterruptedException {
+      final String trail = this.listener.trails.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+      Assert.assertNotNull("No packet received", trail);
+      return trail;
+   }
+
+   /**
+    * Disconnects the Server, which should send its QUIT last.
+    */
+   private void disconnect() throws IOException {
+      this.server.setConnected(true);
+      this.server.disconnect("bye");
+      Assert.assertEquals("QUIT :bye", this.remoteIn.readLine());
+      Assert.assertNull(this.remoteIn.readLine());
+      Assert.assertEquals(1, this.listener.lost.getCount());
+   }
+
+   @Test
+   public void testSendAndReceive() throws IOException, InterruptedException {
+      this.connect();
+
+      this.remoteWrite(":srv NOTICE AlixTestBot :Hello\r\n:srv NOTICE AlixTestBot :H\u00e9llo\n");
+      Assert.assertEquals("Hello", this.nextTrail());
+      Assert.assertEquals("H\u00e9llo", this.nextTrail());
+
+      for (int i = 0; i < 100; i++) {
+         this.server.send(new PrivMsgIrcPacket("#a", "Message " + i));
+      }
+      for (int i = 0; i < 100; i++) {
+         Assert.assertEquals("PRIVMSG #a :Message " + i, this.remoteIn.readLine());
+      }
+
+      this.disconnect();
+   }
+
+   @Test
+   public void testSplitLine() throws IOException, InterruptedException {
+      this.connect();
+
+      this.remoteWrite(":srv NOTICE AlixTestBot :Hel");
+      Assert.assertNull(this.listener.trails.poll(200, TimeUnit.MILLISECONDS));
+      this.remoteWrite("lo\r");
+      Assert.assertEquals("Hello", this.nextTrail());
+      // The rest of the CRLF is not an empty line
+      this.remoteWrite("\n:srv NOTICE AlixTestBot :World\r\n");
+      Assert.assertEquals("World", this.nextTrail());
+      Assert.assertTrue(this.listener.trails.isEmpty());
+
+      this.disconnect();
+   }
+
+   @Test
+   public void testSuspendReading() throws IOException, InterruptedException {
+      this.server.setInboundCapacity(4);
+      this.listener.gate = new CountDownLatch(1);
+      this.connect();
+
+      final StringBuilder lines = new StringBuilder();
+      for (int i = 0; i < 1_000; i++) {
+         lines.append(":srv NOTICE AlixTestBot :").append(i).append("\r\n");
+      }
+      this.remoteWrite(lines.toString());
+
+      // The queue is full, lines are kept aside and reading is suspended
+      final long end = System.currentTimeMillis() + TIMEOUT;
+      while (this.server.getMetrics().getReaderStalls() == 0 && System.currentTimeMillis() < end) {
+         Thread.sleep(10);
+      }
+      Assert.assertNotEquals(0, this.server.getMetrics().getReaderStalls());
+      Assert.assertTrue(this.server.getInboundQueueDepth() <= 4);
+
+      // Reading resumes once the queue has space, nothing is lost
+      this.listener.gate.countDown();
+      for (int i = 0; i < 1_000; i++) {
+         Assert.assertEquals(Integer.toString(i), this.nextTrail());
+      }
+      Assert.assertEquals(0, this.server.getMetrics().getDroppedPackets());
+
+      this.remoteWrite(":srv NOTICE AlixTestBot :After\r\n");
+      Assert.assertEquals("After", this.nextTrail());
+
+      this.disconnect();
+   }
+
+   @Test
+   public void testRemoteClose() throws IOException, InterruptedException {
+      this.connect();
+      this.server.setConnected(true);
+
+      this.remoteWrite(":srv NOTICE AlixTestBot :Bye\r\n");
+      this.remote.close();
+      Assert.assertEquals("Bye", this.nextTrail());
+
+      Assert.assertTrue(this.listener.lost.await(TIMEOUT, TimeUnit.MILLISECONDS));
+      Assert.assertFalse(this.server.isConnected());
+      Assert.assertEquals(1, this.server.getMetrics().getLostConnections());
+   }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.thread;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestHashedTimerWheel {
+
+   private final HashedTimerWheel wheel = new HashedTimerWheel("Test-Wheel", 10, TimeUnit.MILLISECONDS, 8);
+
+   @After
+   public void stopWheel() {
+      this.wheel.stop();
+   }
+
+   @Test
+   public void testExpiration() throws InterruptedException {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final long start = System.nanoTime();
+      final HashedTimerWheel.Timeout timeout = this.wheel.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+      Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+      Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+      Assert.assertTrue(timeout.isExpired());
+      Assert.assertFalse(timeout.cancel());
+   }
+
+   @Test
+   public void testSeveralRounds() throws InterruptedException {
+      // 8 buckets of 10ms, so this timeout waits for 2 full rounds
+      final CountDownLatch latch = new CountDownLatch(1);
+      final long start = System.nanoTime();
+      this.wheel.schedule(latch::countDown, 250, TimeUnit.MILLISECONDS);
+      Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+      Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+   }
+
+   @Test
+   public void testCancel() throws InterruptedException {
+      final AtomicBoolean ran = new AtomicBoolean();
+      final HashedTimerWheel.Timeout cancelled = this.wheel.schedule(() -> ran.set(true), 30, TimeUnit.MILLISECONDS);
+      final CountDownLatch latch = new CountDownLatch(1);
+      this.wheel.schedule(latch::countDown, 60, TimeUnit.MILLISECONDS);
+      Assert.assertTrue(cancelled.cancel());
+      Assert.assertTrue(cancelled.isCancelled());
+      Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+      Assert.assertFalse(ran.get());
+      Assert.assertFalse(cancelled.isExpired());
+   }
+}
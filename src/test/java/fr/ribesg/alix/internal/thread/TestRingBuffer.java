@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012-2014 Ribesg - www.ribesg.fr
+ * This file is under GPLv3 -> http://www.gnu.org/licenses/gpl-3.0.txt
+ * Please contact me at ribesg[at]yahoo.fr if you improve this file!
+ */
+
+package fr.ribesg.alix.internal.thread;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRingBuffer {
+
+   @Test
+   public void testCapacity() {
+      Assert.assertEquals(1, new RingBuffer<>(1).capacity());
+      Assert.assertEquals(8, new RingBuffer<>(5).capacity());
+      Assert.assertEquals(1024, new RingBuffer<>(1024).capacity());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidCapacity() {
+      new RingBuffer<>(0);
+   }
+
+   @Test
+   public void testOfferPoll() {
+      final RingBuffer<Integer> ring = new RingBuffer<>(4);
+      Assert.assertTrue(ring.isEmpty());
+      Assert.assertNull(ring.poll());
+      for (int i = 0; i < 4; i++) {
+         Assert.assertTrue(ring.offer(i));
+      }
+      Assert.assertFalse(ring.offer(4));
+      Assert.assertEquals(4, ring.size());
+      Assert.assertEquals(Integer.valueOf(0), ring.poll());
+      Assert.assertTrue(ring.offer(4));
+      for (int i = 1; i <= 4; i++) {
+         Assert.assertEquals(Integer.valueOf(i), ring.poll());
+      }
+      Assert.assertNull(ring.poll());
+      Assert.assertTrue(ring.isEmpty());
+   }
+
+   @Test
+   public void testWrapAround() {
+      final RingBuffer<Integer> ring = new RingBuffer<>(2);
+      for (int i = 0; i < 100; i++) {
+         Assert.assertTrue(ring.offer(i));
+         Assert.assertTrue(ring.offer(-i));
+         Assert.assertEquals(Integer.valueOf(i), ring.poll());
+         Assert.assertEquals(Integer.valueOf(-i), ring.poll());
+      }
+      Assert.assertEquals(0, ring.size());
+   }
+
+   @Test(timeout = 10_000)
+   public void testConcurrent() throws InterruptedException {
+      final int count = 1_000_000;
+      final RingBuffer<Integer> ring = new RingBuffer<>(64);
+      final Thread producer = new Thread(() -> {
+         for (int i = 0; i < count; i++) {
+            while (!ring.offer(i)) {
+               Thread.yield();
+            }
+         }
+      });
+      producer.start();
+      for (int i = 0; i < count; i++) {
+         Integer value;
+         while ((value = ring.poll()) == null) {
+            Thread.yield();
+         }
+         Assert.assertEquals(i, value.intValue());
+      }
+      producer.join();
+      Assert.assertTrue(ring.isEmpty());
+   }
+}
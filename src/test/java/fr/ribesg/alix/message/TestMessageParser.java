@@ -16,6 +16,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -39,6 +40,21 @@ public class TestMessageParser {
       Assert.assertArrayEquals("Parameters doesn't match", awaitedIrcPacket.getParameters(), ircPacket.getParameters());
    }
 
+   @Test
+   public void testParseBytes() {
+      final byte[] bytes = ("xx" + this.ircPacketString + "\r\n").getBytes(StandardCharsets.UTF_8);
+      final IrcPacket ircPacket = IrcPacket.parseMessage(bytes, 2, bytes.length - 4);
+      Assert.assertEquals("Prefix doesn't match", awaitedIrcPacket.getPrefix(), ircPacket.getPrefix());
+      Assert.assertEquals("Command doesn't match", awaitedIrcPacket.getRawCommandString(), ircPacket.getRawCommandString());
+      Assert.assertEquals("Trail doesn't match", awaitedIrcPacket.getTrail(), ircPacket.getTrail());
+      Assert.assertArrayEquals("Parameters doesn't match", awaitedIrcPacket.getParameters(), ircPacket.getParameters());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMalformed() {
+      IrcPacket.parseMessage(":" + this.ircPacketString.replace(" ", ""));
+   }
+
    @Parameters
    public static Collection<Object[]> data() {
       final Collection<Object[]> data = new ArrayList<>();
@@ -58,6 +74,18 @@ public class TestMessageParser {
          new IrcPacket("irc.xxxx.fr", Reply.RPL_NAMREPLY.getIntCodeAsString(), "BooBot @boozaa", "BooBot", "=", "#boozaa"),
          ":irc.xxxx.fr 353 BooBot =   #boozaa :BooBot @boozaa"
       });
+      data.add(new Object[] {
+         new IrcPacket("Ribesg!~Ribesg@host", Command.JOIN.name(), "#alix"),
+         ":Ribesg!~Ribesg@host JOIN :#alix"
+      });
+      data.add(new Object[] {
+         new IrcPacket(null, Command.MODE.name(), null, "#alix", "+b", "*!*@a:b"),
+         "MODE #alix +b *!*@a:b"
+      });
+      data.add(new Object[] {
+         new IrcPacket(null, Command.PRIVMSG.name(), "", "#alix"),
+         "PRIVMSG #alix :"
+      });
       return data;
    }
 }
\ No newline at end of file